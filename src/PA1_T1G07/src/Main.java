@@ -1,4 +1,5 @@
 import cc.ControlCenter;
+import common.Configuration;
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -25,7 +26,7 @@ public class Main {
         
         /* Launch Farm Infrastructure */
         try {
-            runProcess("java -cp " + System.getProperty("user.dir") + "/build/classes fi.FarmInfrastructure");
+            runProcess("java" + Configuration.toCommandLine() + " -cp " + System.getProperty("user.dir") + "/build/classes fi.FarmInfrastructure");
         } catch (Exception e) {
             e.printStackTrace();
         }
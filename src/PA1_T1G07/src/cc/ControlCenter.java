@@ -1,7 +1,16 @@
 package cc;
 import cc.utils.CCMessageProcessor;
+import cc.utils.ShardCoordinator;
+import common.Configuration;
+import common.FarmGridBuilder;
+import common.FarmGridRenderer;
+import common.Message;
+import common.MessageType;
 import common.SocketClient;
-import common.SocketServer;
+import common.NioSocketServer;
+import common.WireFormat;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.swing.JTextField;
 
 /**
@@ -11,17 +20,22 @@ import javax.swing.JTextField;
 public class ControlCenter extends javax.swing.JFrame implements UiAndMainControlsCC{
 
     /**
-     * Communication client to send messages to FI's server.
+     * Communication clients to send messages to the servers of the FIs (one per shard).
      */
-    private SocketClient fiClient;
+    private volatile SocketClient[] fiClients;
     /**
-     * Communication server to receive messages from FI's client.
+     * Communication server to receive messages from FI's clients.
+     * Being non-blocking, it serves every shard, each naming itself when connecting.
      */
-    private SocketServer ccServer;
+    private NioSocketServer ccServer;
     /**
      * Communication thread to process CC's server messages.
      */
     private Thread serverThread;
+    /**
+     * Coordinator folding the messages of the shards into the messages of a single farm.
+     */
+    private ShardCoordinator coordinator;
 
     /**
      * Auxiliary array to manage swing interface text fields.
@@ -39,19 +53,92 @@ public class ControlCenter extends javax.swing.JFrame implements UiAndMainContro
      * Auxiliary array to manage swing interface text fields.
      */
     private JTextField[] granaryTextFields;
+    /**
+     * Auxiliary array to manage swing interface text fields (one per collection lane).
+     */
+    private JTextField[] collectingTextFields;
+    /**
+     * Auxiliary array to manage swing interface text fields (one per storing bay).
+     */
+    private JTextField[] storingTextFields;
+    /**
+     * View model presenting the farmers' positions and the corn cobs, repainted on the Event Dispatch Thread.
+     */
+    private FarmGridRenderer grid;
 
     /**
-     * Number of farmers available during the simulation.
+     * Servers (host:port) of the Farm Infrastructures coordinated by the Control Center, each owning a shard of the farm
+     * (-Dharvest.fi.hosts, comma separated). Every shard connects to the same server of the CC, naming itself by its index.
+     */
+    public static final String[] fiHosts = Configuration.getString("fi.hosts", "localhost:7777").split(",");
+    /**
+     * Port of the CC's server (-Dharvest.cc.port, by default 6666).
+     */
+    public static final int ccPort = Configuration.getInt("cc.port", 6666);
+    /**
+     * Number of farmers of the team driven by the Control Center (-Dharvest.team.size, must match the Farm Infrastructure).
+     */
+    public static final int teamSize = Math.max(1, Configuration.getInt("team.size", 5));
+    /**
+     * Number of teams harvesting on the farm (-Dharvest.teams, must match the Farm Infrastructure).
+     */
+    public static final int teams = Math.max(1, Configuration.getInt("teams", 1));
+    /**
+     * Number of Farm Infrastructures (shards) coordinated by the Control Center.
+     */
+    public static final int shards = fiHosts.length;
+    /**
+     * Number of farmers of each shard (of all teams).
+     */
+    public static final int shardFarmers = teamSize * teams;
+    /**
+     * Number of farmers presented on the farm (of all shards).
+     */
+    public static final int farmers = shardFarmers * shards;
+    /**
+     * Length/size of the path (number of positions farmers need to cross, -Dharvest.path.length).
      */
-    public static final int teamSize = 5;
+    public static final int pathSize = Math.max(1, Configuration.getInt("path.length", 10));
     /**
-     * Length/size of the path (number of positions farmers need to cross).
+     * Number of positions of each column of the path of each shard (-Dharvest.path.width), never smaller than the number of
+     * farmers of the shard.
      */
-    public static final int pathSize = 10;
+    public static final int shardPathWidth = Math.max(shardFarmers, Configuration.getInt("path.width", shardFarmers));
+    /**
+     * Number of positions of each column of the path presented (of all shards).
+     */
+    public static final int pathWidth = shardPathWidth * shards;
+    /**
+     * Number of collection lanes of the granary (-Dharvest.granary.lanes in each Farm Infrastructure, by default the team size).
+     */
+    public static final int granaryLanes = Math.max(1, Configuration.getInt("granary.lanes", teamSize)) * shards;
+    /**
+     * Number of storing bays of the storehouse (-Dharvest.storehouse.bays in each Farm Infrastructure, by default the team size).
+     */
+    public static final int storehouseBays = Math.max(1, Configuration.getInt("storehouse.bays", teamSize)) * shards;
     /**
      * Maximum response delay.
      */
     public static final int maxDelay = 100;
+    /**
+     * Whether the Prepare button starts an autonomous harvest (-Dharvest.cc.autonomous): the Farm Infrastructure runs the
+     * harvest runs back-to-back and the Control Center only observes, being able to stop the harvest or end the simulation.
+     */
+    public static final boolean autonomous = Configuration.getBoolean("cc.autonomous", false);
+    /**
+     * Number of corn cobs in the storehouse at which an autonomous harvest ends (-Dharvest.cc.target, 0 to harvest until the
+     * granary is empty).
+     */
+    public static final long autonomousTarget = Configuration.getLong("cc.target", 0);
+    /**
+     * Number of corn cobs initially in the granary of each shard (-Dharvest.granary.cobs in each Farm Infrastructure, by
+     * default 50).
+     */
+    public static final long initialGranaryCornCobs = Math.max(0, Configuration.getLong("granary.cobs", 50));
+    /**
+     * Maximum number of corn cobs each farmer carries (-Dharvest.farmer.capacity in each Farm Infrastructure, by default 50).
+     */
+    public static final int farmerCapacity = Math.max(1, Configuration.getInt("farmer.capacity", 50));
 
     /**
      * Class construction. Initializes swing components and starts sockets.
@@ -59,8 +146,13 @@ public class ControlCenter extends javax.swing.JFrame implements UiAndMainContro
     public ControlCenter() {
         this.setTitle("Control Center");
         initComponents();
+        this.numFarmers.setModel(new javax.swing.SpinnerNumberModel(teamSize, Math.min(2, teamSize), teamSize, 1));
+        this.numCornCobs.setModel(new javax.swing.SpinnerNumberModel(Math.min(10, farmerCapacity), 0, farmerCapacity, 1));
+        this.cobsLabel1.setText("/" + farmerCapacity);
         groupTextFields();
-        this.ccServer = new SocketServer(6666, new CCMessageProcessor(this));
+        this.granaryCornCobs.setText(String.valueOf(initialGranaryCornCobs * shards));
+        this.coordinator = new ShardCoordinator(shards, initialGranaryCornCobs, new CCMessageProcessor(this));
+        this.ccServer = new NioSocketServer(ccPort, (String peer) -> this.coordinator.processorOf(peer));
         this.serverThread = new Thread(ccServer);
         this.serverThread.start();
     }
@@ -994,8 +1086,15 @@ public class ControlCenter extends javax.swing.JFrame implements UiAndMainContro
         this.maxStep.setEnabled(false);
 
         // Send message to FI to place farmer IDs in respective Storehouse positions
-        fiClient.send("prepareOrder;" + this.numFarmers.getValue() + ";" + this.numCornCobs.getValue() + ";"
-                + this.maxStep.getValue() + ";" + this.timeout.getValue());
+        // (or to run the harvest runs back-to-back until the autonomous harvest ends)
+        if (autonomous) {
+            this.sendToFI(new Message(MessageType.AUTONOMOUS_HARVEST_ORDER, (Integer) this.numFarmers.getValue(),
+                    (Integer) this.numCornCobs.getValue(), (Integer) this.maxStep.getValue(), (Integer) this.timeout.getValue(),
+                    autonomousTarget));
+            return;
+        }
+        this.sendToFI(new Message(MessageType.PREPARE_ORDER, (Integer) this.numFarmers.getValue(),
+                (Integer) this.numCornCobs.getValue(), (Integer) this.maxStep.getValue(), (Integer) this.timeout.getValue()));
     }//GEN-LAST:event_prepareBtnMouseClicked
 
     /**
@@ -1012,7 +1111,7 @@ public class ControlCenter extends javax.swing.JFrame implements UiAndMainContro
         this.startBtn.setEnabled(false);
 
         // Send message to FI to update farmer positions (move to Path and then Granary)
-        fiClient.send("startHarvestOrder");
+        this.sendToFI(new Message(MessageType.START_HARVEST_ORDER));
     }//GEN-LAST:event_startBtnMouseClicked
 
     /**
@@ -1029,7 +1128,7 @@ public class ControlCenter extends javax.swing.JFrame implements UiAndMainContro
         this.collectBtn.setEnabled(false);
 
         // Send message to FI for farmers to grab corn cobs
-        fiClient.send("collectOrder");
+        this.sendToFI(new Message(MessageType.COLLECT_ORDER));
     }//GEN-LAST:event_collectBtnMouseClicked
 
     /**
@@ -1047,7 +1146,7 @@ public class ControlCenter extends javax.swing.JFrame implements UiAndMainContro
 
         // Send message to FI to update farmer positions (move to Storehouse and then
         // deliver corn cobs)
-        fiClient.send("returnOrder");
+        this.sendToFI(new Message(MessageType.RETURN_ORDER));
     }//GEN-LAST:event_returnBtnMouseClicked
 
     /**
@@ -1069,7 +1168,7 @@ public class ControlCenter extends javax.swing.JFrame implements UiAndMainContro
 
         // Send message to FI for farmers to immediately stop what they are doing and go
         // back to the Storehouse
-        fiClient.send("stopHarvestOrder");
+        this.sendToFI(new Message(MessageType.STOP_HARVEST_ORDER));
     }//GEN-LAST:event_stopBtnMouseClicked
 
     /**
@@ -1084,7 +1183,7 @@ public class ControlCenter extends javax.swing.JFrame implements UiAndMainContro
 
         // Send message to FI for farmers to kill themselves, close the sockets and end
         // the processes and UIs
-        fiClient.send("endSimulationOrder");
+        this.sendToFI(new Message(MessageType.END_SIMULATION_ORDER));
     }//GEN-LAST:event_exitBtnMouseClicked
 
     /**
@@ -1228,23 +1327,75 @@ public class ControlCenter extends javax.swing.JFrame implements UiAndMainContro
 
     /**
      * Auxiliary method to organize the text fields (positions) of all areas.
+     * The text fields designed in the Form Editor are used when they fit the configured dimensions; otherwise they are generated.
      */
     private void groupTextFields() {
-        storehouseTextFields = new JTextField[teamSize];
+        collectingTextFields = granaryLanes == 1 ? new JTextField[]{gc} : FarmGridBuilder.newColumn(granaryLanes);
+        storingTextFields = storehouseBays == 1 ? new JTextField[]{ss} : FarmGridBuilder.newColumn(storehouseBays);
+        if (FarmGridBuilder.fitsForm(farmers, pathSize, pathWidth)) {
+            groupFormTextFields();
+            if (granaryLanes > 1 || storehouseBays > 1) {
+                rebuildStorehousePanel();
+                rebuildGranaryPanel();
+                pack();
+            }
+        } else {
+            generateTextFields();
+        }
+        grid = new FarmGridRenderer(storehouseTextFields, standingAreaTextFields, pathTextFields, granaryTextFields,
+                collectingTextFields, storingTextFields, granaryCornCobs, storehouseCornCobs);
+    }
+
+    /**
+     * Auxiliary method to generate the text fields (positions) of all areas for the configured dimensions.
+     */
+    private void generateTextFields() {
+        storehouseTextFields = FarmGridBuilder.newColumn(farmers);
+        standingAreaTextFields = FarmGridBuilder.newColumn(farmers);
+        pathTextFields = FarmGridBuilder.newGrid(pathSize, pathWidth);
+        granaryTextFields = FarmGridBuilder.newColumn(farmers);
+        rebuildStorehousePanel();
+        FarmGridBuilder.rebuild(standingAreaPanel, standingAreaLabel, new JTextField[][]{standingAreaTextFields});
+        FarmGridBuilder.rebuild(pathPanel, PathLabel, pathTextFields);
+        rebuildGranaryPanel();
+        pack();
+    }
+
+    /**
+     * Auxiliary method to lay out the Storehouse area with the text fields of all storing bays.
+     */
+    private void rebuildStorehousePanel() {
+        FarmGridBuilder.rebuild(storehousePanel, storehouseLabel, new JTextField[][]{storehouseTextFields},
+                FarmGridBuilder.footer(storingTextFields, storehouseCornCobsLabel, storehouseCornCobs));
+    }
+
+    /**
+     * Auxiliary method to lay out the Granary area with the text fields of all collection lanes.
+     */
+    private void rebuildGranaryPanel() {
+        FarmGridBuilder.rebuild(granaryPanel, granaryLabel, new JTextField[][]{granaryTextFields},
+                FarmGridBuilder.footer(collectingTextFields, granaryCornCobsLabel, granaryCornCobs));
+    }
+
+    /**
+     * Auxiliary method to organize the text fields (positions) designed in the Form Editor.
+     */
+    private void groupFormTextFields() {
+        storehouseTextFields = new JTextField[farmers];
         storehouseTextFields[0] = sh1;
         storehouseTextFields[1] = sh2;
         storehouseTextFields[2] = sh3;
         storehouseTextFields[3] = sh4;
         storehouseTextFields[4] = sh5;
 
-        standingAreaTextFields = new JTextField[teamSize];
+        standingAreaTextFields = new JTextField[farmers];
         standingAreaTextFields[0] = sa1;
         standingAreaTextFields[1] = sa2;
         standingAreaTextFields[2] = sa3;
         standingAreaTextFields[3] = sa4;
         standingAreaTextFields[4] = sa5;
 
-        pathTextFields = new JTextField[pathSize][teamSize];
+        pathTextFields = new JTextField[pathSize][farmers];
         pathTextFields[0][0] = p01_1;
         pathTextFields[0][1] = p01_2;
         pathTextFields[0][2] = p01_3;
@@ -1296,7 +1447,7 @@ public class ControlCenter extends javax.swing.JFrame implements UiAndMainContro
         pathTextFields[9][3] = p10_4;
         pathTextFields[9][4] = p10_5;
 
-        granaryTextFields = new JTextField[teamSize];
+        granaryTextFields = new JTextField[farmers];
         granaryTextFields[0] = g1;
         granaryTextFields[1] = g2;
         granaryTextFields[2] = g3;
@@ -1305,12 +1456,38 @@ public class ControlCenter extends javax.swing.JFrame implements UiAndMainContro
     }
     
     /**
-     * Initializes the farm infrastructure socket client.
+     * Sends an order to every farm infrastructure, discarding the replies still pending from the previous order.
+     * @param message message to send.
+     */
+    private void sendToFI(Message message) {
+        this.coordinator.orderSent();
+        for (SocketClient fiClient : this.fiClients) {
+            fiClient.send(message);
+        }
+    }
+
+    /**
+     * Initializes the farm infrastructure socket clients, once every farm infrastructure is online.
+     * Connecting is left to a thread of its own, since it blocks until every farm infrastructure answers and this method
+     * is called by the thread receiving the messages of the shards.
      */
     @Override
     public void initFIClient() {
-        this.fiClient = new SocketClient("localhost", 7777);
-        this.fiClient.send("waitSimulationReady");
+        Thread connector = new Thread(() -> {
+            SocketClient[] clients = new SocketClient[shards];
+            for (int i = 0; i < shards; i++) {
+                String[] address = fiHosts[i].trim().split(":");
+                clients[i] = new SocketClient(address[0], Integer.parseInt(address[1]), WireFormat.configured());
+                if (!clients[i].isConnected()) {
+                    Logger.getLogger(ControlCenter.class.getName()).log(Level.SEVERE,
+                            "Farm Infrastructure at {0} is unreachable", fiHosts[i].trim());
+                    return;
+                }
+            }
+            this.fiClients = clients;
+            this.sendToFI(new Message(MessageType.WAIT_SIMULATION_READY));
+        }, "CC-FI-connector");
+        connector.start();
     }
     
     /**
@@ -1318,7 +1495,9 @@ public class ControlCenter extends javax.swing.JFrame implements UiAndMainContro
      */
     @Override
     public void closeSocketClient() {
-        this.fiClient.close();
+        for (SocketClient fiClient : this.fiClients) {
+            fiClient.close();
+        }
     }
 
     /**
@@ -1390,22 +1569,7 @@ public class ControlCenter extends javax.swing.JFrame implements UiAndMainContro
      */
     @Override
     public void presentFarmerInStorehouse(int farmerId, int position) {
-        clearAll(farmerId);
-        storehouseTextFields[position].setText("" + farmerId);
-    }
-
-    /**
-     * Clears the Storehouse of a specific farmer id.
-     * @param farmerId int identifying the farmer to clear from the Storehouse.
-     */
-    private void clearStorehouse(int farmerId) {
-        for (int i = 0; i < teamSize; i++) {
-            if (!(storehouseTextFields[i].getText()).equals("")
-                    && Integer.valueOf(storehouseTextFields[i].getText()) == farmerId) {
-                storehouseTextFields[i].setText("");
-                return;
-            }
-        }
+        grid.presentInStorehouse(farmerId, position);
     }
 
     /**
@@ -1415,22 +1579,7 @@ public class ControlCenter extends javax.swing.JFrame implements UiAndMainContro
      */
     @Override
     public void presentFarmerInStandingArea(int farmerId, int position) {
-        clearAll(farmerId);
-        standingAreaTextFields[position].setText("" + farmerId);
-    }
-
-    /**
-     * Clears the Standing area of a specific farmer id.
-     * @param farmerId int identifying the farmer to clear from the Standing area.
-     */
-    private void clearStandingArea(int farmerId) {
-        for (int i = 0; i < teamSize; i++) {
-            if (!(standingAreaTextFields[i].getText()).equals("")
-                    && Integer.valueOf(standingAreaTextFields[i].getText()) == farmerId) {
-                standingAreaTextFields[i].setText("");
-                return;
-            }
-        }
+        grid.presentInStandingArea(farmerId, position);
     }
 
     /**
@@ -1441,126 +1590,81 @@ public class ControlCenter extends javax.swing.JFrame implements UiAndMainContro
      */
     @Override
     public void presentFarmerInPath(int farmerId, int position, int column) {
-        clearAll(farmerId);
-        pathTextFields[column][position].setText("" + farmerId);
-    }
-
-    /**
-     * Clears the Path area of a specific farmer id.
-     * @param farmerId int identifying the farmer to clear from the Path area.
-     */
-    private void clearPath(int farmerId) {
-        for (int c = 0; c < this.pathSize; c++) {
-            for (int p = 0; p < this.teamSize; p++) {
-                int currentInt;
-                try {
-                    currentInt = Integer.valueOf(pathTextFields[c][p].getText());
-                } catch (NumberFormatException ex) {
-                    currentInt = -1;
-                }
-                if (currentInt == farmerId) {
-                    pathTextFields[c][p].setText("");
-                    return;
-                }
-            }
-        }
+        grid.presentInPath(farmerId, position, column);
     }
 
     /**
      * Presents the farmer id in the respective position of the Granary Area.
-     * @param farmerId int identifying the farmer entering the position 
-     * @param position int identifying the Granary area position
+     * @param farmerId int identifying the farmer entering the position.
+     * @param position int identifying the Granary area position.
      */
     @Override
     public void presentFarmerInGranary(int farmerId, int position) {
-        clearAll(farmerId);
-        granaryTextFields[position].setText("" + farmerId);
+        grid.presentInGranary(farmerId, position);
     }
 
     /**
-     * Clears the Granary area of a specific farmer id.
-     * @param farmerId int identifying the farmer to clear from the Granary area.
-     */
-    private void clearGranary(int farmerId) {
-        for (int i = 0; i < teamSize; i++) {
-            if (!(granaryTextFields[i].getText()).equals("")
-                    && Integer.valueOf(granaryTextFields[i].getText()) == farmerId) {
-                granaryTextFields[i].setText("");
-                return;
-            }
-        }
-    }
-
-    /**
-     * Presents the farmer id in the respective position of the Collecting Area.
-     * @param farmerId int identifying the farmer entering the position. 
+     * Presents the farmer id in the respective lane of the Collecting Area.
+     * @param farmerId int identifying the farmer entering the position.
+     * @param lane int identifying the collection lane.
      */
     @Override
-    public void presentCollectingFarmer(int farmerId) {
-        clearAll(farmerId);
-        gc.setText("" + farmerId);
+    public void presentCollectingFarmer(int farmerId, int lane) {
+        grid.presentCollecting(farmerId, lane);
     }
-
-    /**
-     * Clears the Collecting area of a specific farmer id.
-     * @param farmerId int identifying the farmer to clear from the Collecting area.
-     */
-    private void clearCollectionArea(int farmerId) {
-        if (!(gc.getText()).equals("") && Integer.valueOf(gc.getText()) == farmerId) {
-            gc.setText("");
-            return;
-        }
-    }
-
+    
     /**
-     * Presents the farmer id in the respective position of the Storing Area.
-     * @param farmerId int identifying the farmer entering the position. 
+     * Presents the farmer id in the respective bay of the Storing Area.
+     * @param farmerId int identifying the farmer entering the position.
+     * @param bay int identifying the storing bay.
      */
     @Override
-    public void presentStoringFarmer(int farmerId) {
-        clearAll(farmerId);
-        ss.setText("" + farmerId);
-    }
-
-    /**
-     * Clears the Storing area of a specific farmer id.
-     * @param farmerId int identifying the farmer to clear from the Storing area.
-     */
-    private void clearStoringArea(int farmerId) {
-        if (!(ss.getText()).equals("") && Integer.valueOf(ss.getText()) == farmerId) {
-            ss.setText("");
-            return;
-        }
+    public void presentStoringFarmer(int farmerId, int bay) {
+        grid.presentStoring(farmerId, bay);
     }
 
     /**
-     * Clears all the area of a specific farmer id.
-     * @param farmerId int identifying the farmer to clear all the areas.
+     * Updates the corn cobs number in the Granary area.
+     * @param actualNumber long representing the current corn cobs number.
      */
-    private void clearAll(int farmerId) {
-        clearStorehouse(farmerId);
-        clearStandingArea(farmerId);
-        clearPath(farmerId);
-        clearGranary(farmerId);
-        clearCollectionArea(farmerId);
-        clearStoringArea(farmerId);
+    @Override
+    public void updateGranaryCornCobs(long actualNumber) {
+        grid.updateGranaryCornCobs(actualNumber);
     }
 
     /**
-     * Updates the corn cobs number in the Granary area.
-     * @param actualNumber int representing the current corn cobs number.
+     * Updates the corn cobs number in the Storehouse area.
+     * @param actualNumber long representing the current corn cobs number.
      */
     @Override
-    public void updateGranaryCornCobs(int actualNumber) {
-        granaryCornCobs.setText(String.valueOf(actualNumber));
+    public void updateStorehouseCornCobs(long actualNumber) {
+        grid.updateStorehouseCornCobs(actualNumber);
     }
 
     /**
-     * Updates the corn cobs number in the Storehouse area.
-     * @param actualNumber int representing the current corn cobs number.
+     * Presents the contention metrics of a monitor of the Farm Infrastructure, as the tooltip of the respective farm area.
+     * Durations are the 99th percentiles, in µs.
+     * @param monitor int identifying the monitor (0 to 3 for the storehouse, standing area, path and granary).
+     * @param acquisitions int representing the number of acquisitions of the monitor's lock.
+     * @param lockWait int representing the time waited to acquire the lock.
+     * @param hold int representing the time the lock was held.
+     * @param conditionWait int representing the time waited on the monitor's conditions.
+     * @param usefulWakeups int representing the number of wake-ups after which the woken entity made progress.
+     * @param spuriousWakeups int representing the number of wake-ups after which the woken entity had to wait again.
+     * @param phase int representing the time taken by the phases of the monitor's barriers.
      */
     @Override
-    public void updateStorehouseCornCobs(int actualNumber) {
-        storehouseCornCobs.setText(String.valueOf(actualNumber));
+    public void presentMonitorMetrics(int monitor, int acquisitions, int lockWait, int hold, int conditionWait,
+            int usefulWakeups, int spuriousWakeups, int phase) {
+        javax.swing.JLabel[] areas = {storehouseLabel, standingAreaLabel, PathLabel, granaryLabel};
+        if (monitor < 0 || monitor >= areas.length) {
+            return;
+        }
+        String metrics = "acquisitions " + acquisitions + ", p99 lock wait " + lockWait + " us, hold " + hold
+                + " us, condition wait " + conditionWait + " us, phase " + phase + " us, wake-ups " + usefulWakeups
+                + " useful / " + spuriousWakeups + " spurious";
+        areas[monitor].setToolTipText(metrics);
+        Logger.getLogger(ControlCenter.class.getName()).log(Level.FINE, "[Monitor metrics] {0}: {1}",
+                new Object[]{areas[monitor].getText(), metrics});
     }
 }
@@ -9,10 +9,11 @@ public interface UiAndMainControlsCC {
     public void presentFarmerInStandingArea(int farmerId, int position);
     public void presentFarmerInPath(int farmerId, int position, int column);
     public void presentFarmerInGranary(int farmerId, int position);
-    public void presentCollectingFarmer(int farmerId);
-    public void presentStoringFarmer(int farmerId);
-    public void updateGranaryCornCobs(int actualNumber);
-    public void updateStorehouseCornCobs(int actualNumber);
+    public void presentCollectingFarmer(int farmerId, int lane);
+    public void presentStoringFarmer(int farmerId, int bay);
+    public void updateGranaryCornCobs(long actualNumber);
+    public void updateStorehouseCornCobs(long actualNumber);
+    public void presentMonitorMetrics(int monitor, int acquisitions, int lockWait, int hold, int conditionWait, int usefulWakeups, int spuriousWakeups, int phase);
     public void initFIClient();
     public void enableStartBtn();
     public void enableCollectBtn();
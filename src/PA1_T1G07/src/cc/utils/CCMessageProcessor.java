@@ -1,5 +1,6 @@
 package cc.utils;
 import cc.UiAndMainControlsCC;
+import common.Message;
 import common.MessageProcessor;
 
 /**
@@ -23,52 +24,55 @@ public class CCMessageProcessor implements MessageProcessor{
     
     /**
      * Processes the incoming messages in a sequential manner since the Control Center needs to process each message one at a time.
-     * @param message formatted message with the code of what to execute.
+     * @param message decoded message with the code of what to execute.
      */
     @Override
-    public void processMessage(String message) {
-        String[] processedMessage = message.split(";");
-        switch(processedMessage[0]){
-            case "presentInStorehouse":
-                this.cc.presentFarmerInStorehouse(Integer.valueOf(processedMessage[1]), Integer.valueOf(processedMessage[2]));
+    public void processMessage(Message message) {
+        switch(message.getType()){
+            case PRESENT_IN_STOREHOUSE:
+                this.cc.presentFarmerInStorehouse(message.getArg(0), message.getArg(1));
                 break;
-            case "presentInStanding":
-                this.cc.presentFarmerInStandingArea(Integer.valueOf(processedMessage[1]), Integer.valueOf(processedMessage[2]));
+            case PRESENT_IN_STANDING:
+                this.cc.presentFarmerInStandingArea(message.getArg(0), message.getArg(1));
                 break;
-            case "presentInPath":
-                this.cc.presentFarmerInPath(Integer.valueOf(processedMessage[1]), Integer.valueOf(processedMessage[2]), Integer.valueOf(processedMessage[3]));
+            case PRESENT_IN_PATH:
+                this.cc.presentFarmerInPath(message.getArg(0), message.getArg(1), message.getArg(2));
                 break;
-            case "presentInGranary":
-                this.cc.presentFarmerInGranary(Integer.valueOf(processedMessage[1]), Integer.valueOf(processedMessage[2]));
+            case PRESENT_IN_GRANARY:
+                this.cc.presentFarmerInGranary(message.getArg(0), message.getArg(1));
                 break;
-            case "presentInCollecting":
-                this.cc.presentCollectingFarmer(Integer.valueOf(processedMessage[1]));
+            case PRESENT_IN_COLLECTING:
+                this.cc.presentCollectingFarmer(message.getArg(0), message.getArg(1));
                 break;
-            case "presentInStoring":
-                this.cc.presentStoringFarmer(Integer.valueOf(processedMessage[1]));
+            case PRESENT_IN_STORING:
+                this.cc.presentStoringFarmer(message.getArg(0), message.getArg(1));
                 break;
-            case "updateGranaryCobs":
-                this.cc.updateGranaryCornCobs(Integer.valueOf(processedMessage[1]));
+            case UPDATE_GRANARY_COBS:
+                this.cc.updateGranaryCornCobs(message.getLongArg(0));
                 break;
-            case "updateStorehouseCobs":
-                this.cc.updateStorehouseCornCobs(Integer.valueOf(processedMessage[1]));
+            case UPDATE_STOREHOUSE_COBS:
+                this.cc.updateStorehouseCornCobs(message.getLongArg(0));
                 break;
-            case "infrastructureServerOnline":
+            case MONITOR_METRICS:
+                this.cc.presentMonitorMetrics(message.getArg(0), message.getArg(1), message.getArg(2), message.getArg(3),
+                        message.getArg(4), message.getArg(5), message.getArg(6), message.getArg(7));
+                break;
+            case INFRASTRUCTURE_SERVER_ONLINE:
                 this.cc.initFIClient();
                 break;
-            case "allFarmersrReadyToStart":
+            case ALL_FARMERS_READY_TO_START:
                 this.cc.enableStartBtn();
                 break;
-            case "allFarmersrReadyToCollect":
+            case ALL_FARMERS_READY_TO_COLLECT:
                 this.cc.enableCollectBtn();
                 break;
-            case "allFarmersrReadyToReturn":
+            case ALL_FARMERS_READY_TO_RETURN:
                 this.cc.enableReturnBtn();
                 break;
-            case "allFarmersrReadyWaiting":
+            case ALL_FARMERS_READY_WAITING:
                 this.cc.enablePrepareBtn();
                 break;
-            case "endSimulationOrder":
+            case END_SIMULATION_ORDER:
                 this.cc.closeSocketClient();
                 this.cc.close();
                 break;
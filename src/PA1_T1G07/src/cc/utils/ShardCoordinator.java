@@ -0,0 +1,149 @@
+package cc.utils;
+
+import common.Message;
+import common.MessageProcessor;
+import common.MessageType;
+import java.util.Arrays;
+
+/**
+ * Class responsible for folding the messages of several Farm Infrastructures (shards) into the messages of a single farm.
+ * Each shard names itself (by its index) when connecting to the Control Center's server, which passes its messages to the
+ * shard's message processor, given by processorOf().
+ * The presentation updates pass through (the shards already translate their farmers and positions), the corn cobs of the
+ * granary and of the storehouse are summed over all shards, and the replies to the orders (and the end of the simulation)
+ * are only passed on once every shard has sent them. A shard repeating a reply still counts once, and the replies still
+ * pending are discarded whenever the Control Center sends a new order, so that a reply to an interrupted order (for instance
+ * by a stop order) is never mistaken for a reply to the next one.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public class ShardCoordinator {
+
+    /**
+     * Message processor of the Control Center, receiving the folded messages.
+     */
+    private final MessageProcessor cc;
+    /**
+     * Number of shards.
+     */
+    private final int shards;
+    /**
+     * Last number of corn cobs in the granary of each shard.
+     */
+    private final long[] granaryCornCobs;
+    /**
+     * Last number of corn cobs in the storehouse of each shard.
+     */
+    private final long[] storehouseCornCobs;
+    /**
+     * Shards that sent each type of message still to be passed on, indexed by the type's ordinal and then by shard.
+     */
+    private final boolean[][] replied;
+    /**
+     * Number of shards that sent each type of message still to be passed on, indexed by the type's ordinal.
+     */
+    private final int[] pending = new int[MessageType.values().length];
+
+    /**
+     * Class constructor.
+     * @param shards Number of shards.
+     * @param granaryCornCobs Number of corn cobs initially in the granary of each shard.
+     * @param cc Message processor of the Control Center, receiving the folded messages.
+     */
+    public ShardCoordinator(int shards, long granaryCornCobs, MessageProcessor cc) {
+        this.shards = shards;
+        this.cc = cc;
+        this.granaryCornCobs = new long[shards];
+        this.storehouseCornCobs = new long[shards];
+        this.replied = new boolean[MessageType.values().length][shards];
+        Arrays.fill(this.granaryCornCobs, granaryCornCobs);
+    }
+
+    /**
+     * Creates the message processor of the server receiving the messages of a shard.
+     * @param shard Index of the shard.
+     * @return the message processor of the shard.
+     */
+    public MessageProcessor processorOf(int shard) {
+        return message -> this.process(shard, message);
+    }
+
+    /**
+     * Discards the replies still waiting for the other shards, before the Control Center sends a new order to every shard.
+     * The shards being online are kept, since they are not a reply to an order.
+     */
+    public synchronized void orderSent() {
+        for (MessageType type : MessageType.values()) {
+            if (type != MessageType.INFRASTRUCTURE_SERVER_ONLINE) {
+                this.pending[type.ordinal()] = 0;
+                Arrays.fill(this.replied[type.ordinal()], false);
+            }
+        }
+    }
+
+    /**
+     * Creates the message processor of a connection to the Control Center's server, from the peer named in its session.
+     * A connection naming no peer is taken as the first shard.
+     * @param peer Index of the shard, as named in the session frame (null if none).
+     * @return the message processor of the shard.
+     * @throws IllegalArgumentException if the peer is not one of the shards.
+     */
+    public MessageProcessor processorOf(String peer) {
+        int shard = peer == null ? 0 : Integer.parseInt(peer);
+        if (shard < 0 || shard >= this.shards) {
+            throw new IllegalArgumentException("Unknown shard " + peer);
+        }
+        return this.processorOf(shard);
+    }
+
+    /**
+     * Folds a message of a shard into the messages of the whole farm.
+     * Messages are passed on one at a time, whatever the shard they come from.
+     * @param shard Index of the shard.
+     * @param message message received from the shard.
+     */
+    private synchronized void process(int shard, Message message) {
+        switch (message.getType()) {
+            case UPDATE_GRANARY_COBS:
+                this.granaryCornCobs[shard] = message.getLongArg(0);
+                this.cc.processMessage(new Message(MessageType.UPDATE_GRANARY_COBS, sum(this.granaryCornCobs)));
+                break;
+            case UPDATE_STOREHOUSE_COBS:
+                this.storehouseCornCobs[shard] = message.getLongArg(0);
+                this.cc.processMessage(new Message(MessageType.UPDATE_STOREHOUSE_COBS, sum(this.storehouseCornCobs)));
+                break;
+            case INFRASTRUCTURE_SERVER_ONLINE:
+            case ALL_FARMERS_READY_TO_START:
+            case ALL_FARMERS_READY_TO_COLLECT:
+            case ALL_FARMERS_READY_TO_RETURN:
+            case ALL_FARMERS_READY_WAITING:
+            case END_SIMULATION_ORDER:
+                int type = message.getType().ordinal();
+                if (this.replied[type][shard]) {
+                    break;
+                }
+                this.replied[type][shard] = true;
+                if (++this.pending[type] == this.shards) {
+                    this.pending[type] = 0;
+                    Arrays.fill(this.replied[type], false);
+                    this.cc.processMessage(message);
+                }
+                break;
+            default:
+                this.cc.processMessage(message);
+                break;
+        }
+    }
+
+    /**
+     * Auxiliary method to sum the corn cobs of all shards.
+     * @param cornCobs corn cobs of each shard.
+     * @return the sum of the corn cobs.
+     */
+    private static long sum(long[] cornCobs) {
+        long total = 0;
+        for (long cobs : cornCobs) {
+            total += cobs;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,59 @@
+package common;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Pool of direct byte buffers of a fixed size, reused by the non-blocking socket server to avoid allocating 
+ * (and later collecting) a direct buffer for each connection or acknowledgement.
+ * The pool is not thread-safe: it is meant to be used only by the selector thread.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public class BufferPool {
+
+    /**
+     * Size (in bytes) of the buffers of the pool.
+     */
+    private final int bufferSize;
+    /**
+     * Maximum number of idle buffers kept by the pool.
+     */
+    private final int maxIdle;
+    /**
+     * Idle buffers ready to be reused.
+     */
+    private final ArrayDeque<ByteBuffer> idle = new ArrayDeque<>();
+
+    /**
+     * Class constructor.
+     * @param bufferSize size (in bytes) of the buffers of the pool.
+     * @param maxIdle maximum number of idle buffers kept by the pool.
+     */
+    public BufferPool(int bufferSize, int maxIdle) {
+        this.bufferSize = bufferSize;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Retrieves a cleared buffer, reusing an idle one when possible.
+     * @return buffer in write mode.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = idle.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool.
+     * @param buffer buffer no longer in use.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer != null && buffer.capacity() == bufferSize && idle.size() < maxIdle) {
+            idle.push(buffer);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package common;
+
+/**
+ * Auxiliary class centralizing the access to the startup configuration of the simulation.
+ * Every parameter is read from a Java system property (e.g. -Dharvest.wire.format=text) and falls back to a default value
+ * when the property is not defined or is invalid.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public final class Configuration {
+
+    /**
+     * Prefix shared by all the system properties of the simulation.
+     */
+    public static final String PREFIX = "harvest.";
+
+    /**
+     * Private constructor, since the class only provides static methods.
+     */
+    private Configuration() {
+    }
+
+    /**
+     * Retrieves a text parameter.
+     * @param key name of the parameter without the common prefix.
+     * @param defaultValue value to return when the parameter is not defined.
+     * @return the value of the parameter.
+     */
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty(PREFIX + key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return value.trim();
+    }
+
+    /**
+     * Retrieves an integer parameter.
+     * @param key name of the parameter without the common prefix.
+     * @param defaultValue value to return when the parameter is not defined or is not a valid integer.
+     * @return the value of the parameter.
+     */
+    public static int getInt(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(getString(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException ex) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Retrieves a long parameter.
+     * @param key name of the parameter without the common prefix.
+     * @param defaultValue value to return when the parameter is not defined or is not a valid long.
+     * @return the value of the parameter.
+     */
+    public static long getLong(String key, long defaultValue) {
+        try {
+            return Long.parseLong(getString(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException ex) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Retrieves a boolean parameter.
+     * @param key name of the parameter without the common prefix.
+     * @param defaultValue value to return when the parameter is not defined.
+     * @return the value of the parameter.
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(getString(key, String.valueOf(defaultValue)));
+    }
+
+    /**
+     * Builds the list of command line options that forwards the simulation parameters to a child process.
+     * @return string containing one -D option per defined simulation parameter.
+     */
+    public static String toCommandLine() {
+        StringBuilder options = new StringBuilder();
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(PREFIX)) {
+                options.append(" -D").append(name).append("=").append(System.getProperty(name));
+            }
+        }
+        return options.toString();
+    }
+
+}
@@ -0,0 +1,132 @@
+package common;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.GridLayout;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+
+/**
+ * Auxiliary class to generate the position text fields of the farm areas when the configured dimensions do not match
+ * the ones of the interfaces designed in the Form Editor (5 farmers and a path of 10 positions).
+ * Each area panel is rebuilt with its title, a scrollable grid of generated text fields and its remaining components.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public final class FarmGridBuilder {
+
+    /**
+     * Number of farmers the Form Editor interfaces were designed for.
+     */
+    public static final int FORMTEAMSIZE = 5;
+    /**
+     * Path length the Form Editor interfaces were designed for.
+     */
+    public static final int FORMPATHSIZE = 10;
+    /**
+     * Size (in pixels) of each position text field.
+     */
+    private static final int CELLSIZE = 40;
+    /**
+     * Maximum size (in pixels) of the visible part of a grid, beyond which it scrolls.
+     */
+    private static final Dimension MAXVIEWPORT = new Dimension(12 * CELLSIZE, 10 * CELLSIZE);
+
+    /**
+     * Private constructor, the class only offers static methods.
+     */
+    private FarmGridBuilder() {
+    }
+
+    /**
+     * Checks if the farm dimensions match the ones of the Form Editor interfaces.
+     * @param teamSize number of farmers.
+     * @param pathSize length of the path.
+     * @param pathWidth number of positions of each path column.
+     * @return true if the text fields designed in the Form Editor can be used.
+     */
+    public static boolean fitsForm(int teamSize, int pathSize, int pathWidth) {
+        return teamSize == FORMTEAMSIZE && pathSize == FORMPATHSIZE && pathWidth == FORMTEAMSIZE;
+    }
+
+    /**
+     * Creates the text fields of a column of positions.
+     * @param positions number of positions.
+     * @return the created text fields.
+     */
+    public static JTextField[] newColumn(int positions) {
+        JTextField[] column = new JTextField[positions];
+        for (int i = 0; i < positions; i++) {
+            column[i] = new JTextField();
+            column[i].setEnabled(false);
+            column[i].setPreferredSize(new Dimension(CELLSIZE, CELLSIZE));
+        }
+        return column;
+    }
+
+    /**
+     * Creates the text fields of a grid of positions.
+     * @param columns number of columns.
+     * @param positions number of positions of each column.
+     * @return the created text fields, indexed by column and then by position.
+     */
+    public static JTextField[][] newGrid(int columns, int positions) {
+        JTextField[][] grid = new JTextField[columns][];
+        for (int c = 0; c < columns; c++) {
+            grid[c] = newColumn(positions);
+        }
+        return grid;
+    }
+
+    /**
+     * Joins the text fields of an area's positions with other components, to be laid out in the footer of the area.
+     * @param cells text fields of the positions.
+     * @param others other components, placed after the text fields.
+     * @return the text fields followed by the other components.
+     */
+    public static JComponent[] footer(JTextField[] cells, JComponent... others) {
+        JComponent[] footer = new JComponent[cells.length + others.length];
+        System.arraycopy(cells, 0, footer, 0, cells.length);
+        System.arraycopy(others, 0, footer, cells.length, others.length);
+        return footer;
+    }
+
+    /**
+     * Replaces the content of an area panel with its title, the given columns of positions and its remaining components.
+     * @param panel area panel to rebuild.
+     * @param title label with the name of the area.
+     * @param columns text fields of the area positions, indexed by column and then by position.
+     * @param others remaining components of the area (corn cobs counters, collecting or storing positions).
+     */
+    public static void rebuild(JPanel panel, JLabel title, JTextField[][] columns, JComponent... others) {
+        int rows = columns.length == 0 ? 0 : columns[0].length;
+        JPanel grid = new JPanel(new GridLayout(rows, columns.length, 6, 6));
+        for (int r = 0; r < rows; r++) {
+            for (JTextField[] column : columns) {
+                grid.add(column[r]);
+            }
+        }
+        JScrollPane scroll = new JScrollPane(grid);
+        scroll.setBorder(null);
+        Dimension preferred = grid.getPreferredSize();
+        scroll.setPreferredSize(new Dimension(Math.min(preferred.width, MAXVIEWPORT.width) + 20,
+                Math.min(preferred.height, MAXVIEWPORT.height) + 20));
+
+        JPanel footer = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        for (JComponent other : others) {
+            if (other instanceof JTextField) {
+                other.setPreferredSize(new Dimension(CELLSIZE, CELLSIZE));
+            }
+            footer.add(other);
+        }
+
+        panel.removeAll();
+        panel.setLayout(new BorderLayout(6, 6));
+        panel.add(title, BorderLayout.NORTH);
+        panel.add(scroll, BorderLayout.CENTER);
+        panel.add(footer, BorderLayout.SOUTH);
+    }
+}
@@ -0,0 +1,276 @@
+package common;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * View model shared by the Control Center and the Farm Infrastructure interfaces to present the farmers' positions.
+ * All the position text fields of the farm are indexed as cells, and the model keeps the cell occupied by each farmer and
+ * the set of cells changed since the last repaint. Updates can be made from any thread: they only touch the model, and the
+ * text fields are repainted on the Event Dispatch Thread at most once per frame, with only the changed cells updated.
+ * Rendering cost is therefore proportional to the number of changed cells instead of the size of the grid.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public class FarmGridRenderer {
+
+    /**
+     * Text fields of every cell of the farm.
+     */
+    private final JTextField[] cells;
+    /**
+     * Index of the first Storehouse cell.
+     */
+    private final int storehouseOffset;
+    /**
+     * Index of the first Standing area cell.
+     */
+    private final int standingOffset;
+    /**
+     * Index of the first Path area cell (cells are stored column by column).
+     */
+    private final int pathOffset;
+    /**
+     * Number of positions of each Path column.
+     */
+    private final int pathWidth;
+    /**
+     * Index of the first Granary cell.
+     */
+    private final int granaryOffset;
+    /**
+     * Index of the first Collecting area cell (one per collection lane).
+     */
+    private final int collectingOffset;
+    /**
+     * Index of the first Storing area cell (one per storing bay).
+     */
+    private final int storingOffset;
+    /**
+     * Text field presenting the corn cobs in the Granary.
+     */
+    private final JTextField granaryCornCobs;
+    /**
+     * Text field presenting the corn cobs in the Storehouse.
+     */
+    private final JTextField storehouseCornCobs;
+    /**
+     * Minimum interval (in ms) between two repaints.
+     */
+    private final int frameInterval;
+
+    /**
+     * Farmer identifier occupying each cell (0 for empty cells).
+     */
+    private final int[] occupant;
+    /**
+     * Cell occupied by each farmer, indexed by the farmer identifier (-1 if the farmer is not presented).
+     */
+    private int[] farmerCell = new int[0];
+    /**
+     * Cells changed since the last repaint.
+     */
+    private final BitSet dirty = new BitSet();
+    /**
+     * Current corn cobs in the Granary (null if unchanged since the last repaint).
+     */
+    private String pendingGranaryCornCobs;
+    /**
+     * Current corn cobs in the Storehouse (null if unchanged since the last repaint).
+     */
+    private String pendingStorehouseCornCobs;
+    /**
+     * Flag signaling that a repaint is already scheduled.
+     */
+    private boolean scheduled = false;
+    /**
+     * Instant (in ms) of the last repaint.
+     */
+    private long lastRepaint = 0;
+
+    /**
+     * Class constructor.
+     * @param storehouse text fields of the Storehouse positions.
+     * @param standing text fields of the Standing area positions.
+     * @param path text fields of the Path area positions, indexed by column and then by position.
+     * @param granary text fields of the Granary positions.
+     * @param collecting text fields of the Collecting area, one per collection lane.
+     * @param storing text fields of the Storing area, one per storing bay.
+     * @param granaryCornCobs text field presenting the corn cobs in the Granary.
+     * @param storehouseCornCobs text field presenting the corn cobs in the Storehouse.
+     */
+    public FarmGridRenderer(JTextField[] storehouse, JTextField[] standing, JTextField[][] path, JTextField[] granary,
+            JTextField[] collecting, JTextField[] storing, JTextField granaryCornCobs, JTextField storehouseCornCobs) {
+        this.pathWidth = path.length == 0 ? 0 : path[0].length;
+        this.storehouseOffset = 0;
+        this.standingOffset = storehouse.length;
+        this.pathOffset = this.standingOffset + standing.length;
+        this.granaryOffset = this.pathOffset + path.length * this.pathWidth;
+        this.collectingOffset = this.granaryOffset + granary.length;
+        this.storingOffset = this.collectingOffset + collecting.length;
+        this.cells = new JTextField[this.storingOffset + storing.length];
+        System.arraycopy(storehouse, 0, this.cells, this.storehouseOffset, storehouse.length);
+        System.arraycopy(standing, 0, this.cells, this.standingOffset, standing.length);
+        for (int c = 0; c < path.length; c++) {
+            System.arraycopy(path[c], 0, this.cells, this.pathOffset + c * this.pathWidth, this.pathWidth);
+        }
+        System.arraycopy(granary, 0, this.cells, this.granaryOffset, granary.length);
+        System.arraycopy(collecting, 0, this.cells, this.collectingOffset, collecting.length);
+        System.arraycopy(storing, 0, this.cells, this.storingOffset, storing.length);
+        this.occupant = new int[this.cells.length];
+        this.granaryCornCobs = granaryCornCobs;
+        this.storehouseCornCobs = storehouseCornCobs;
+        this.frameInterval = 1000 / Math.max(1, Configuration.getInt("ui.fps", 60));
+    }
+
+    /**
+     * Presents the farmer in a position of the Storehouse.
+     * @param farmerId int identifying the farmer entering the position.
+     * @param position int identifying the Storehouse position.
+     */
+    public void presentInStorehouse(int farmerId, int position) {
+        this.moveFarmer(farmerId, this.storehouseOffset + position);
+    }
+
+    /**
+     * Presents the farmer in a position of the Standing area.
+     * @param farmerId int identifying the farmer entering the position.
+     * @param position int identifying the Standing area position.
+     */
+    public void presentInStandingArea(int farmerId, int position) {
+        this.moveFarmer(farmerId, this.standingOffset + position);
+    }
+
+    /**
+     * Presents the farmer in a position of the Path area.
+     * @param farmerId int identifying the farmer entering the position.
+     * @param position int identifying the Path area line position.
+     * @param column int identifying the Path area column position.
+     */
+    public void presentInPath(int farmerId, int position, int column) {
+        this.moveFarmer(farmerId, this.pathOffset + column * this.pathWidth + position);
+    }
+
+    /**
+     * Presents the farmer in a position of the Granary area.
+     * @param farmerId int identifying the farmer entering the position.
+     * @param position int identifying the Granary area position.
+     */
+    public void presentInGranary(int farmerId, int position) {
+        this.moveFarmer(farmerId, this.granaryOffset + position);
+    }
+
+    /**
+     * Presents the farmer in a lane of the Collecting area.
+     * @param farmerId int identifying the farmer entering the position.
+     * @param lane int identifying the collection lane.
+     */
+    public void presentCollecting(int farmerId, int lane) {
+        this.moveFarmer(farmerId, this.collectingOffset + lane);
+    }
+
+    /**
+     * Presents the farmer in a bay of the Storing area.
+     * @param farmerId int identifying the farmer entering the position.
+     * @param bay int identifying the storing bay.
+     */
+    public void presentStoring(int farmerId, int bay) {
+        this.moveFarmer(farmerId, this.storingOffset + bay);
+    }
+
+    /**
+     * Updates the corn cobs number in the Granary area.
+     * @param actualNumber long representing the current corn cobs number.
+     */
+    public synchronized void updateGranaryCornCobs(long actualNumber) {
+        this.pendingGranaryCornCobs = String.valueOf(actualNumber);
+        this.scheduleRepaint();
+    }
+
+    /**
+     * Updates the corn cobs number in the Storehouse area.
+     * @param actualNumber long representing the current corn cobs number.
+     */
+    public synchronized void updateStorehouseCornCobs(long actualNumber) {
+        this.pendingStorehouseCornCobs = String.valueOf(actualNumber);
+        this.scheduleRepaint();
+    }
+
+    /**
+     * Moves a farmer to a cell, clearing the cell he previously occupied (unless another farmer has meanwhile taken it).
+     * @param farmerId int identifying the farmer.
+     * @param cell index of the cell the farmer enters.
+     */
+    private synchronized void moveFarmer(int farmerId, int cell) {
+        if (farmerId >= this.farmerCell.length) {
+            int previousLength = this.farmerCell.length;
+            this.farmerCell = Arrays.copyOf(this.farmerCell, Math.max(farmerId + 1, previousLength * 2));
+            Arrays.fill(this.farmerCell, previousLength, this.farmerCell.length, -1);
+        }
+        int previous = this.farmerCell[farmerId];
+        if (previous >= 0 && this.occupant[previous] == farmerId) {
+            this.occupant[previous] = 0;
+            this.dirty.set(previous);
+        }
+        this.occupant[cell] = farmerId;
+        this.dirty.set(cell);
+        this.farmerCell[farmerId] = cell;
+        this.scheduleRepaint();
+    }
+
+    /**
+     * Schedules a repaint on the Event Dispatch Thread, unless one is already pending.
+     * Repaints are spaced by at least the frame interval.
+     */
+    private void scheduleRepaint() {
+        if (this.scheduled) {
+            return;
+        }
+        this.scheduled = true;
+        long delay = this.lastRepaint + this.frameInterval - System.currentTimeMillis();
+        if (delay <= 0) {
+            SwingUtilities.invokeLater(this::repaint);
+        } else {
+            Timer timer = new Timer((int) delay, event -> this.repaint());
+            timer.setRepeats(false);
+            timer.start();
+        }
+    }
+
+    /**
+     * Applies the pending changes to the text fields. Runs on the Event Dispatch Thread.
+     */
+    private void repaint() {
+        int[] changedCells;
+        String[] texts;
+        String granaryText;
+        String storehouseText;
+        synchronized (this) {
+            changedCells = new int[this.dirty.cardinality()];
+            texts = new String[changedCells.length];
+            int n = 0;
+            for (int cell = this.dirty.nextSetBit(0); cell >= 0; cell = this.dirty.nextSetBit(cell + 1)) {
+                changedCells[n] = cell;
+                texts[n++] = this.occupant[cell] == 0 ? "" : String.valueOf(this.occupant[cell]);
+            }
+            this.dirty.clear();
+            granaryText = this.pendingGranaryCornCobs;
+            storehouseText = this.pendingStorehouseCornCobs;
+            this.pendingGranaryCornCobs = null;
+            this.pendingStorehouseCornCobs = null;
+            this.scheduled = false;
+            this.lastRepaint = System.currentTimeMillis();
+        }
+        for (int i = 0; i < changedCells.length; i++) {
+            this.cells[changedCells[i]].setText(texts[i]);
+        }
+        if (granaryText != null) {
+            this.granaryCornCobs.setText(granaryText);
+        }
+        if (storehouseText != null) {
+            this.storehouseCornCobs.setText(storehouseText);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package common;
+
+import java.util.List;
+
+/**
+ * Decoded message exchanged between the Control Center and the Farm Infrastructure.
+ * A message is made of its type and the integer fields the type requires. The fields are 64-bit, so they also carry the
+ * corn cob counters of long runs.
+ * Messages of the BATCH type carry instead a sequence of other messages that travel together in a single frame.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public final class Message {
+
+    /**
+     * Separator of the messages carried by a batch in the text format.
+     */
+    private static final char BATCHSEPARATOR = '|';
+    /**
+     * Auxiliary empty array shared by the messages that are not batches.
+     */
+    private static final Message[] NOPARTS = new Message[0];
+
+    /**
+     * Type of the message.
+     */
+    private final MessageType type;
+    /**
+     * Integer fields of the message.
+     */
+    private final long[] args;
+    /**
+     * Messages carried by a batch (empty for the remaining types).
+     */
+    private final Message[] parts;
+
+    /**
+     * Class constructor.
+     * @param type type of the message.
+     * @param args integer fields of the message, as many as the type's arity.
+     */
+    public Message(MessageType type, long... args) {
+        if (args.length != type.getArity()) {
+            throw new IllegalArgumentException(type.getName() + " expects " + type.getArity() + " fields");
+        }
+        this.type = type;
+        this.args = args;
+        this.parts = NOPARTS;
+    }
+
+    /**
+     * Class constructor for batches.
+     * @param parts messages carried by the batch.
+     */
+    private Message(Message[] parts) {
+        this.type = MessageType.BATCH;
+        this.args = new long[0];
+        this.parts = parts;
+    }
+
+    /**
+     * Creates a batch carrying several messages.
+     * @param parts messages carried by the batch, in the order they must be processed.
+     * @return the batch message.
+     */
+    public static Message batch(List<Message> parts) {
+        return new Message(parts.toArray(new Message[parts.size()]));
+    }
+
+    /**
+     * Auxiliary method to retrieve the type of the message.
+     * @return type of the message.
+     */
+    public MessageType getType() {
+        return type;
+    }
+
+    /**
+     * Auxiliary method to retrieve a field of the message.
+     * @param index index of the field.
+     * @return value of the field.
+     */
+    public int getArg(int index) {
+        return (int) args[index];
+    }
+
+    /**
+     * Auxiliary method to retrieve a 64-bit field of the message, such as a corn cob counter.
+     * @param index index of the field.
+     * @return value of the field.
+     */
+    public long getLongArg(int index) {
+        return args[index];
+    }
+
+    /**
+     * Auxiliary method to retrieve the messages carried by a batch.
+     * @return messages carried by the batch, or an empty array if the message is not a batch.
+     */
+    public Message[] getParts() {
+        return parts;
+    }
+
+    /**
+     * Parses a message in the text format (name followed by the fields, separated by semicolons).
+     * Batches are written as the batch name followed by the carried messages, separated by vertical bars.
+     * @param text string containing the message.
+     * @return the decoded message.
+     */
+    public static Message parse(String text) {
+        if (text.startsWith(MessageType.BATCH.getName() + BATCHSEPARATOR)) {
+            String[] texts = text.split("\\" + BATCHSEPARATOR);
+            Message[] parts = new Message[texts.length - 1];
+            for (int i = 1; i < texts.length; i++) {
+                parts[i - 1] = parse(texts[i]);
+            }
+            return new Message(parts);
+        }
+        int end = text.indexOf(';');
+        MessageType type = MessageType.fromName(end < 0 ? text : text.substring(0, end));
+        long[] args = new long[type.getArity()];
+        for (int i = 0; i < args.length; i++) {
+            int start = end + 1;
+            end = text.indexOf(';', start);
+            args[i] = Long.parseLong(end < 0 ? text.substring(start) : text.substring(start, end));
+        }
+        return new Message(type, args);
+    }
+
+    /**
+     * Converts the message to the text format.
+     * @return string containing the message name followed by the fields, separated by semicolons.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(type.getName());
+        for (Message part : parts) {
+            text.append(BATCHSEPARATOR).append(part);
+        }
+        for (long arg : args) {
+            text.append(';').append(arg);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,179 @@
+package common;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Batching stage placed in front of a socket client to reduce the number of frames of an update stream.
+ * Update messages are gathered during a time window (or until a maximum number of messages is reached) and shipped 
+ * in a single batch frame. Updates superseded within the window are collapsed:
+ * 1. Only the last presentIn* message of each farmer is kept, since it defines where the farmer currently is.
+ * 2. Only the last value of each corn cobs counter (granary and storehouse) is kept.
+ * Any other message (e.g. the notifications enabling the CC buttons) flushes the pending batch and is sent right after it, 
+ * so the order between updates and notifications is preserved.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public class MessageBatcher {
+
+    /**
+     * Coalescing key of the granary corn cobs counter.
+     */
+    private static final int GRANARYCOBSKEY = -1;
+    /**
+     * Coalescing key of the storehouse corn cobs counter.
+     */
+    private static final int STOREHOUSECOBSKEY = -2;
+
+    /**
+     * Client through which the batches are sent.
+     */
+    private final SocketClient client;
+    /**
+     * Time window (in ms) during which updates are gathered before being sent.
+     */
+    private final long window;
+    /**
+     * Number of gathered updates (before coalescing) that forces the batch to be sent.
+     */
+    private final int maxBatchSize;
+    /**
+     * Pending updates, by coalescing key, in the order of their last update.
+     */
+    private final Map<Integer, Message> pending = new LinkedHashMap<>();
+    /**
+     * Number of updates gathered since the last batch was sent.
+     */
+    private int gathered = 0;
+    /**
+     * Flag signaling the flushing thread to end.
+     */
+    private boolean closed = false;
+    /**
+     * Thread sending the pending updates when the time window expires.
+     */
+    private final Thread flusher;
+
+    /**
+     * Class constructor.
+     * @param client client through which the batches are sent.
+     * @param window time window (in ms) during which updates are gathered; 0 disables batching.
+     * @param maxBatchSize number of gathered updates that forces the batch to be sent.
+     */
+    public MessageBatcher(SocketClient client, long window, int maxBatchSize) {
+        this.client = client;
+        this.window = window;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        if (window <= 0) {
+            this.flusher = null;
+            return;
+        }
+        this.flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flushPeriodically();
+            }
+        }, "MessageBatcher-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Sends a message through the batching stage.
+     * @param message message to send.
+     */
+    public synchronized void send(Message message) {
+        if (this.flusher == null) {
+            this.client.send(message);
+            return;
+        }
+        int key = coalescingKey(message);
+        if (key == Integer.MIN_VALUE) {
+            this.flush();
+            this.client.send(message);
+            return;
+        }
+        this.pending.remove(key);
+        this.pending.put(key, message);
+        this.gathered++;
+        if (this.pending.size() == 1) {
+            this.notifyAll();
+        }
+        if (this.gathered >= this.maxBatchSize) {
+            this.flush();
+        }
+    }
+
+    /**
+     * Sends the pending updates as a single frame.
+     */
+    public synchronized void flush() {
+        if (this.pending.isEmpty()) {
+            return;
+        }
+        if (this.pending.size() == 1) {
+            this.client.send(this.pending.values().iterator().next());
+        } else {
+            this.client.send(Message.batch(new ArrayList<>(this.pending.values())));
+        }
+        this.pending.clear();
+        this.gathered = 0;
+    }
+
+    /**
+     * Sends the pending updates and stops the flushing thread.
+     */
+    public synchronized void close() {
+        this.flush();
+        this.closed = true;
+        this.notifyAll();
+    }
+
+    /**
+     * Life-cycle of the flushing thread.
+     * The thread waits for the first update of a batch, lets the time window elapse and sends whatever is pending.
+     */
+    private synchronized void flushPeriodically() {
+        try {
+            while (!this.closed) {
+                while (this.pending.isEmpty() && !this.closed) {
+                    this.wait();
+                }
+                long deadline = System.currentTimeMillis() + this.window;
+                long remaining = this.window;
+                while (remaining > 0 && !this.pending.isEmpty() && !this.closed) {
+                    this.wait(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+                this.flush();
+            }
+        } catch (InterruptedException ex) {
+            Logger.getLogger(MessageBatcher.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Computes the key under which an update is collapsed with the updates it supersedes.
+     * @param message message to send.
+     * @return the coalescing key, or Integer.MIN_VALUE if the message must not be collapsed.
+     */
+    private static int coalescingKey(Message message) {
+        switch (message.getType()) {
+            case PRESENT_IN_STOREHOUSE:
+            case PRESENT_IN_STANDING:
+            case PRESENT_IN_PATH:
+            case PRESENT_IN_GRANARY:
+            case PRESENT_IN_COLLECTING:
+            case PRESENT_IN_STORING:
+                return message.getArg(0);
+            case UPDATE_GRANARY_COBS:
+                return GRANARYCOBSKEY;
+            case UPDATE_STOREHOUSE_COBS:
+                return STOREHOUSECOBSKEY;
+            default:
+                return Integer.MIN_VALUE;
+        }
+    }
+}
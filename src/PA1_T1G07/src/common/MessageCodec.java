@@ -0,0 +1,428 @@
+package common;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Codec shared by the Control Center and the Farm Infrastructure to write and read messages in the negotiated wire format.
+ * In the text format each message is a writeUTF string with the fields separated by semicolons.
+ * In the binary format each message is a frame made of a varint length prefix, the opcode byte and the zigzag varint encoded fields.
+ * The fields are 64-bit varints, which encode the values fitting in 32 bits with the same bytes as 32-bit varints.
+ * A batch frame holds the BATCH opcode, the varint number of carried messages and then each message without its length prefix.
+ * Each instance keeps a scratch buffer, so it must only be used by one writer at a time.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public class MessageCodec {
+
+    /**
+     * Maximum number of bytes of an encoded 64-bit varint (fields).
+     */
+    private static final int MAXVARLONGSIZE = 10;
+
+    /**
+     * Wire format used by the codec.
+     */
+    private final WireFormat format;
+    /**
+     * Auxiliary buffer where binary frames are assembled before being written.
+     */
+    private byte[] scratch = new byte[1 + 8 * MAXVARLONGSIZE];
+
+    /**
+     * Class constructor.
+     * @param format wire format used by the codec.
+     */
+    public MessageCodec(WireFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * Auxiliary method to retrieve the wire format of the codec.
+     * @return wire format used by the codec.
+     */
+    public WireFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Writes a message to a stream (without flushing it).
+     * @param message message to write.
+     * @param out stream where the message is written.
+     * @throws IOException if the message could not be written.
+     */
+    public void write(Message message, DataOutputStream out) throws IOException {
+        if (format == WireFormat.TEXT) {
+            out.writeUTF(message.toString());
+            return;
+        }
+        int length;
+        if (message.getType() == MessageType.BATCH) {
+            Message[] parts = message.getParts();
+            length = 0;
+            scratch[length++] = (byte) MessageType.BATCH.getOpcode();
+            length = putVarint(scratch, length, parts.length);
+            for (Message part : parts) {
+                length = this.putBody(part, length);
+            }
+        } else {
+            length = this.putBody(message, 0);
+        }
+        writeVarint(out, length);
+        out.write(scratch, 0, length);
+    }
+
+    /**
+     * Reads a message from a stream, blocking until it is available.
+     * @param in stream where the message is read from.
+     * @return the decoded message.
+     * @throws IOException if the message could not be read or the frame is malformed.
+     */
+    public Message read(DataInputStream in) throws IOException {
+        if (format == WireFormat.TEXT) {
+            return parseText(in.readUTF());
+        }
+        int length = readVarint(in);
+        int[] consumed = new int[1];
+        Message message;
+        MessageType type = readType(in, consumed);
+        if (type == MessageType.BATCH) {
+            int count = readVarint(in);
+            consumed[0] += varintSize(count);
+            List<Message> parts = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                parts.add(readBody(readType(in, consumed), in, consumed));
+            }
+            message = Message.batch(parts);
+        } else {
+            message = readBody(type, in, consumed);
+        }
+        if (consumed[0] != length) {
+            throw new IOException("Malformed " + type.getName() + " frame");
+        }
+        return message;
+    }
+
+    /**
+     * Decodes a message from a buffer filled by a non-blocking channel.
+     * @param buffer buffer in read mode holding the received bytes.
+     * @return the decoded message, or null if the buffer does not hold a complete frame yet (in which case its position is left unchanged).
+     * @throws IOException if the frame is malformed.
+     */
+    public Message decode(ByteBuffer buffer) throws IOException {
+        if (format == WireFormat.TEXT) {
+            String text = decodeUTF(buffer);
+            return text == null ? null : parseText(text);
+        }
+        int start = buffer.position();
+        long length = getVarint(buffer);
+        if (length < 0 || buffer.remaining() < length) {
+            buffer.position(start);
+            return null;
+        }
+        int end = buffer.position() + (int) length;
+        try {
+            Message message;
+            MessageType type = MessageType.fromOpcode(buffer.get() & 0xFF);
+            if (type == MessageType.BATCH) {
+                int count = (int) Math.max(getVarint(buffer), 0);
+                List<Message> parts = new ArrayList<>(Math.min(count, (int) length));
+                for (int i = 0; i < count; i++) {
+                    parts.add(getBody(MessageType.fromOpcode(buffer.get() & 0xFF), buffer));
+                }
+                message = Message.batch(parts);
+            } else {
+                message = getBody(type, buffer);
+            }
+            if (buffer.position() != end) {
+                throw new IOException("Malformed " + type.getName() + " frame");
+            }
+            return message;
+        } catch (IllegalArgumentException | BufferUnderflowException ex) {
+            throw new IOException("Malformed frame", ex);
+        }
+    }
+
+    /**
+     * Parses a message in the text format, reporting a malformed message the same way as a malformed binary frame.
+     * @param text string containing the message.
+     * @return the parsed message.
+     * @throws IOException if the message is malformed.
+     */
+    private static Message parseText(String text) throws IOException {
+        try {
+            return Message.parse(text);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            throw new IOException("Malformed frame", ex);
+        }
+    }
+
+    /**
+     * Decodes a writeUTF string from a buffer filled by a non-blocking channel.
+     * @param buffer buffer in read mode holding the received bytes.
+     * @return the decoded string, or null if the buffer does not hold the complete string yet (in which case its position is left unchanged).
+     * @throws IOException if the string is malformed.
+     */
+    public static String decodeUTF(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 2) {
+            return null;
+        }
+        int length = buffer.getShort(buffer.position()) & 0xFFFF;
+        if (buffer.remaining() < 2 + length) {
+            return null;
+        }
+        byte[] bytes = new byte[2 + length];
+        buffer.get(bytes);
+        return new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+    }
+
+    /**
+     * Encodes an ASCII string into a buffer in the writeUTF format.
+     * @param text string to encode, which must only contain ASCII characters.
+     * @param buffer buffer in write mode where the string is encoded.
+     */
+    public static void encodeUTF(String text, ByteBuffer buffer) {
+        buffer.putShort((short) text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    /**
+     * Encodes the opcode and the fields of a message into the scratch buffer, growing it if needed.
+     * @param message message to encode.
+     * @param offset position of the scratch buffer where the message starts.
+     * @return position of the scratch buffer after the message.
+     */
+    private int putBody(Message message, int offset) {
+        int required = offset + 1 + message.getType().getArity() * MAXVARLONGSIZE;
+        if (required > scratch.length) {
+            scratch = Arrays.copyOf(scratch, Math.max(required, scratch.length * 2));
+        }
+        scratch[offset++] = (byte) message.getType().getOpcode();
+        for (int i = 0; i < message.getType().getArity(); i++) {
+            offset = putVarLong(scratch, offset, zigzag(message.getLongArg(i)));
+        }
+        return offset;
+    }
+
+    /**
+     * Reads the opcode of a message from a stream.
+     * @param in stream where the opcode is read from.
+     * @param consumed single element array accumulating the number of bytes read.
+     * @return the type identified by the opcode.
+     * @throws IOException if the opcode could not be read or is unknown.
+     */
+    private static MessageType readType(DataInputStream in, int[] consumed) throws IOException {
+        consumed[0]++;
+        try {
+            return MessageType.fromOpcode(in.readUnsignedByte());
+        } catch (IllegalArgumentException ex) {
+            throw new IOException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Reads the fields of a message from a stream.
+     * @param type type of the message, whose opcode was already read.
+     * @param in stream where the fields are read from.
+     * @param consumed single element array accumulating the number of bytes read.
+     * @return the decoded message.
+     * @throws IOException if the fields could not be read.
+     */
+    private static Message readBody(MessageType type, DataInputStream in, int[] consumed) throws IOException {
+        long[] args = new long[type.getArity()];
+        for (int i = 0; i < args.length; i++) {
+            long raw = readVarLong(in);
+            consumed[0] += varLongSize(raw);
+            args[i] = unzigzag(raw);
+        }
+        return new Message(type, args);
+    }
+
+    /**
+     * Decodes the fields of a message from a buffer holding the complete frame.
+     * @param type type of the message, whose opcode was already read.
+     * @param buffer buffer in read mode positioned on the first field.
+     * @return the decoded message.
+     */
+    private static Message getBody(MessageType type, ByteBuffer buffer) {
+        long[] args = new long[type.getArity()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = unzigzag(getVarLong(buffer));
+        }
+        return new Message(type, args);
+    }
+
+    /**
+     * Maps signed integers to unsigned ones so that small negative values also have a short encoding.
+     * @param value signed value.
+     * @return zigzag encoded value.
+     */
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Reverts the zigzag encoding.
+     * @param value zigzag encoded value.
+     * @return signed value.
+     */
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Encodes an unsigned varint into a buffer.
+     * @param buffer buffer where the varint is encoded.
+     * @param offset position of the buffer where the varint starts.
+     * @param value value to encode.
+     * @return position of the buffer after the varint.
+     */
+    private static int putVarint(byte[] buffer, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * Encodes an unsigned 64-bit varint into a buffer.
+     * @param buffer buffer where the varint is encoded.
+     * @param offset position of the buffer where the varint starts.
+     * @param value value to encode.
+     * @return position of the buffer after the varint.
+     */
+    private static int putVarLong(byte[] buffer, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * Computes the number of bytes of an encoded unsigned varint.
+     * @param value value to encode.
+     * @return number of bytes the encoded value takes.
+     */
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+
+    /**
+     * Computes the number of bytes of an encoded unsigned 64-bit varint.
+     * @param value value to encode.
+     * @return number of bytes the encoded value takes.
+     */
+    private static int varLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+
+    /**
+     * Writes an unsigned varint to a stream.
+     * @param out stream where the varint is written.
+     * @param value value to write.
+     * @throws IOException if the value could not be written.
+     */
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Reads an unsigned varint from a stream.
+     * @param in stream where the varint is read from.
+     * @return the decoded value.
+     * @throws IOException if the value could not be read.
+     */
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 35);
+        return value;
+    }
+
+    /**
+     * Reads an unsigned varint from a buffer.
+     * @param buffer buffer in read mode positioned on the varint.
+     * @return the decoded value (as an unsigned 32-bit value), or -1 if the buffer ends before the varint does.
+     */
+    private static long getVarint(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            b = buffer.get() & 0xFF;
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 35);
+        return value & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Reads an unsigned 64-bit varint from a stream.
+     * @param in stream where the varint is read from.
+     * @return the decoded value.
+     * @throws IOException if the value could not be read.
+     */
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 70);
+        return value;
+    }
+
+    /**
+     * Reads an unsigned 64-bit varint from a buffer holding the complete frame.
+     * @param buffer buffer in read mode positioned on the varint.
+     * @return the decoded value.
+     * @throws BufferUnderflowException if the buffer ends before the varint does.
+     */
+    private static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = buffer.get() & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 70);
+        return value;
+    }
+}
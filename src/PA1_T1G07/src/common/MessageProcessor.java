@@ -6,6 +6,14 @@ package common;
  */
 public interface MessageProcessor {
 
-    void processMessage(String message);
+    void processMessage(Message message);
+
+    /**
+     * Processes a message in the text format, kept for debugging and for clients that do not negotiate the wire format.
+     * @param message string containing the message to process.
+     */
+    default void processMessage(String message) {
+        processMessage(Message.parse(message));
+    }
     
 }
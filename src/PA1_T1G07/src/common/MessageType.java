@@ -0,0 +1,132 @@
+package common;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Enumerate class containing every message exchanged between the Control Center and the Farm Infrastructure.
+ * Each type has a text name (used by the text wire format), a stable opcode (used by the binary wire format) and the 
+ * number of integer fields it carries.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public enum MessageType {
+    // Messages sent by the Farm Infrastructure
+    PRESENT_IN_STOREHOUSE(1, "presentInStorehouse", 2),
+    PRESENT_IN_STANDING(2, "presentInStanding", 2),
+    PRESENT_IN_PATH(3, "presentInPath", 3),
+    PRESENT_IN_GRANARY(4, "presentInGranary", 2),
+    PRESENT_IN_COLLECTING(5, "presentInCollecting", 2),
+    PRESENT_IN_STORING(6, "presentInStoring", 2),
+    UPDATE_GRANARY_COBS(7, "updateGranaryCobs", 1),
+    UPDATE_STOREHOUSE_COBS(8, "updateStorehouseCobs", 1),
+    INFRASTRUCTURE_SERVER_ONLINE(9, "infrastructureServerOnline", 0),
+    ALL_FARMERS_READY_TO_START(10, "allFarmersrReadyToStart", 0),
+    ALL_FARMERS_READY_TO_COLLECT(11, "allFarmersrReadyToCollect", 0),
+    ALL_FARMERS_READY_TO_RETURN(12, "allFarmersrReadyToReturn", 0),
+    ALL_FARMERS_READY_WAITING(13, "allFarmersrReadyWaiting", 0),
+    MONITOR_METRICS(14, "monitorMetrics", 8),
+    // Messages sent by the Control Center
+    WAIT_SIMULATION_READY(20, "waitSimulationReady", 0),
+    PREPARE_ORDER(21, "prepareOrder", 4),
+    START_HARVEST_ORDER(22, "startHarvestOrder", 0),
+    COLLECT_ORDER(23, "collectOrder", 0),
+    RETURN_ORDER(24, "returnOrder", 0),
+    STOP_HARVEST_ORDER(25, "stopHarvestOrder", 0),
+    AUTONOMOUS_HARVEST_ORDER(26, "autonomousHarvestOrder", 5),
+    // Messages sent by both entities
+    END_SIMULATION_ORDER(30, "endSimulationOrder", 0),
+    BATCH(40, "batch", 0);
+
+    /**
+     * Auxiliary array to find a type by its opcode.
+     */
+    private static final MessageType[] BY_OPCODE = new MessageType[128];
+    /**
+     * Auxiliary map to find a type by its text name.
+     */
+    private static final Map<String, MessageType> BY_NAME = new HashMap<>();
+
+    static {
+        for (MessageType type : values()) {
+            BY_OPCODE[type.opcode] = type;
+            BY_NAME.put(type.name, type);
+        }
+    }
+
+    /**
+     * Opcode identifying the type in the binary wire format.
+     */
+    private final int opcode;
+    /**
+     * Name identifying the type in the text wire format.
+     */
+    private final String name;
+    /**
+     * Number of integer fields carried by messages of this type.
+     */
+    private final int arity;
+
+    /**
+     * Enumerate constructor.
+     * @param opcode opcode identifying the type in the binary wire format.
+     * @param name name identifying the type in the text wire format.
+     * @param arity number of integer fields carried by messages of this type.
+     */
+    private MessageType(int opcode, String name, int arity) {
+        this.opcode = opcode;
+        this.name = name;
+        this.arity = arity;
+    }
+
+    /**
+     * Auxiliary method to retrieve the opcode of the type.
+     * @return opcode identifying the type in the binary wire format.
+     */
+    public int getOpcode() {
+        return opcode;
+    }
+
+    /**
+     * Auxiliary method to retrieve the text name of the type.
+     * @return name identifying the type in the text wire format.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Auxiliary method to retrieve the number of fields of the type.
+     * @return number of integer fields carried by messages of this type.
+     */
+    public int getArity() {
+        return arity;
+    }
+
+    /**
+     * Finds the type identified by an opcode.
+     * @param opcode opcode read from a binary frame.
+     * @return the type identified by the opcode.
+     * @throws IllegalArgumentException if the opcode is unknown.
+     */
+    public static MessageType fromOpcode(int opcode) {
+        MessageType type = (opcode >= 0 && opcode < BY_OPCODE.length) ? BY_OPCODE[opcode] : null;
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown opcode " + opcode);
+        }
+        return type;
+    }
+
+    /**
+     * Finds the type identified by a text name.
+     * @param name name read from a text message.
+     * @return the type identified by the name.
+     * @throws IllegalArgumentException if the name is unknown.
+     */
+    public static MessageType fromName(String name) {
+        MessageType type = BY_NAME.get(name);
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown message " + name);
+        }
+        return type;
+    }
+}
@@ -0,0 +1,312 @@
+package common;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Non-blocking socket server able to serve many clients at the same time with a single thread.
+ * It follows the same contract and wire protocol as SocketServer (session negotiation, text or binary frames, per-message
+ * or cumulative acknowledgements), but every connection is multiplexed by a java.nio Selector, with per-connection framing
+ * and pooled direct buffers.
+ * Each connection may name its peer in the session frame, so that the messages of each peer are passed to their own
+ * message processor.
+ * A connection sending a malformed frame, or whose message fails to be processed, is closed without affecting the others.
+ * The server ends once an endSimulationOrder has been received and every connection has been closed.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public class NioSocketServer implements Runnable {
+
+    /**
+     * Size (in bytes) of the read buffer of each connection, enough to hold the largest writeUTF frame.
+     */
+    private static final int READBUFFERSIZE = 2 + 65535;
+    /**
+     * Size (in bytes) of the buffers holding the acknowledgements.
+     */
+    private static final int ACKBUFFERSIZE = 64;
+
+    /**
+     * Internal class holding the state of one client connection.
+     */
+    private class Connection {
+
+        /**
+         * Channel of the connection.
+         */
+        private final SocketChannel channel;
+        /**
+         * Buffer accumulating the received bytes until they form complete frames.
+         */
+        private final ByteBuffer input;
+        /**
+         * Acknowledgements waiting to be written.
+         */
+        private final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+        /**
+         * Codec of the negotiated wire format (null until the first frame is received).
+         */
+        private MessageCodec codec;
+        /**
+         * Message processor of the connection's peer (null until the first frame is received).
+         */
+        private MessageProcessor mp;
+        /**
+         * Flag signaling a pipelined session (cumulative acknowledgements).
+         */
+        private boolean pipelined = false;
+        /**
+         * Number of frames processed so far.
+         */
+        private long processed = 0;
+        /**
+         * Number of frames acknowledged so far.
+         */
+        private long acknowledged = 0;
+        /**
+         * Flag signaling that the client has ordered the end of the simulation.
+         */
+        private boolean ended = false;
+
+        /**
+         * Class constructor.
+         * @param channel channel of the connection.
+         */
+        public Connection(SocketChannel channel) {
+            this.channel = channel;
+            this.input = readPool.acquire();
+        }
+
+        /**
+         * Reads the available bytes and processes every complete frame.
+         * @return false if the connection must be closed.
+         * @throws IOException if the channel could not be read or a frame is malformed.
+         */
+        public boolean read() throws IOException {
+            if (this.channel.read(this.input) < 0) {
+                return false;
+            }
+            this.input.flip();
+            try {
+                while (!this.ended) {
+                    Message message;
+                    if (this.codec == null) {
+                        String firstFrame = MessageCodec.decodeUTF(this.input);
+                        if (firstFrame == null) {
+                            break;
+                        }
+                        if (firstFrame.startsWith(SocketClient.SESSION_PREFIX)) {
+                            String[] session = firstFrame.split(";");
+                            this.pipelined = session[1].equals(SocketClient.PIPELINED);
+                            this.codec = new MessageCodec(WireFormat.valueOf(session[2].toUpperCase()));
+                            this.mp = processors.apply(session.length > 3 ? session[3] : null);
+                            continue;
+                        }
+                        this.codec = new MessageCodec(WireFormat.TEXT);
+                        this.mp = processors.apply(null);
+                        message = Message.parse(firstFrame);
+                    } else {
+                        message = this.codec.decode(this.input);
+                        if (message == null) {
+                            break;
+                        }
+                    }
+                    this.process(message);
+                }
+            } finally {
+                this.input.compact();
+            }
+            if (this.pipelined && this.processed > this.acknowledged) {
+                this.acknowledge(SocketClient.ACK_PREFIX + this.processed);
+                this.acknowledged = this.processed;
+            }
+            if (!this.input.hasRemaining()) {
+                throw new IOException("Frame larger than " + READBUFFERSIZE + " bytes");
+            }
+            return !this.ended || !this.output.isEmpty();
+        }
+
+        /**
+         * Passes a message to the message processor and acknowledges it when needed.
+         * The message processor runs in the selector thread, which keeps the messages of each connection in the order they
+         * were sent, as the Control Center processes them one at a time. This is safe as long as the processor does not
+         * block: the Control Center's processor only updates its presentation and queues its orders, and processors that
+         * need to wait (such as the Farm Infrastructure's) must hand their messages off to their own threads.
+         * @param message decoded message.
+         */
+        private void process(Message message) {
+            Logger.getLogger(NioSocketServer.class.getName()).log(Level.FINE, "Transmitted Message: {0}", message);
+            if (message.getType() == MessageType.BATCH) {
+                for (Message part : message.getParts()) {
+                    mp.processMessage(part);
+                }
+            } else {
+                mp.processMessage(message);
+            }
+            this.processed++;
+            if (message.getType() == MessageType.END_SIMULATION_ORDER) {
+                this.ended = true;
+                endOrdered = true;
+            }
+            if (!this.pipelined) {
+                this.acknowledge("Message Processed");
+            } else if (this.processed - this.acknowledged >= SocketServer.ACKINTERVAL) {
+                this.acknowledge(SocketClient.ACK_PREFIX + this.processed);
+                this.acknowledged = this.processed;
+            }
+        }
+
+        /**
+         * Queues an acknowledgement to be written when the channel is ready.
+         * @param ack string containing the acknowledgement.
+         */
+        private void acknowledge(String ack) {
+            ByteBuffer buffer = ackPool.acquire();
+            MessageCodec.encodeUTF(ack, buffer);
+            buffer.flip();
+            this.output.add(buffer);
+        }
+
+        /**
+         * Writes the queued acknowledgements while the channel accepts them.
+         * @return false if the connection must be closed (the simulation ended and everything was written).
+         * @throws IOException if the channel could not be written.
+         */
+        public boolean write() throws IOException {
+            while (!this.output.isEmpty()) {
+                ByteBuffer buffer = this.output.peek();
+                this.channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    return true;
+                }
+                ackPool.release(this.output.poll());
+            }
+            return !this.ended;
+        }
+
+        /**
+         * Closes the connection and returns its buffers to the pools.
+         */
+        public void close() {
+            try {
+                this.channel.close();
+            } catch (IOException ex) {
+                Logger.getLogger(NioSocketServer.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            readPool.release(this.input);
+            while (!this.output.isEmpty()) {
+                ackPool.release(this.output.poll());
+            }
+        }
+    }
+
+    /**
+     * Port assigned to the server.
+     */
+    private final int port;
+
+    /**
+     * Provider of the message processor of each connection, given the peer named in its session frame (null if none).
+     */
+    private final Function<String, MessageProcessor> processors;
+
+    /**
+     * Pool of the connections' read buffers.
+     */
+    private final BufferPool readPool = new BufferPool(READBUFFERSIZE, 16);
+    /**
+     * Pool of the acknowledgement buffers.
+     */
+    private final BufferPool ackPool = new BufferPool(ACKBUFFERSIZE, 256);
+
+    /**
+     * Flag signaling that an endSimulationOrder has been received.
+     */
+    private boolean endOrdered = false;
+
+    /**
+     * Class constructor for the server definition.
+     * @param port Port assigned to the server.
+     * @param mp Instance of the message processor assigned to the server.
+     */
+    public NioSocketServer(int port, MessageProcessor mp) {
+        this(port, peer -> mp);
+    }
+
+    /**
+     * Class constructor for the definition of a server giving each peer its own message processor.
+     * @param port Port assigned to the server.
+     * @param processors Provider of the message processor of each connection, given the peer named in its session frame
+     * (null if none). It may throw an IllegalArgumentException to refuse the peer, closing the connection.
+     */
+    public NioSocketServer(int port, Function<String, MessageProcessor> processors) {
+        this.port = port;
+        this.processors = processors;
+    }
+
+    /**
+     * Executes the life-cycle of the socket server.
+     * New clients are accepted at any time; the messages of each client are passed, in order, to the message processor.
+     */
+    @Override
+    public void run() {
+        try (Selector selector = Selector.open(); ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(this.port));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+            int connections = 0;
+            while (!this.endOrdered || connections > 0) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        SocketChannel channel = server.accept();
+                        if (channel != null) {
+                            channel.configureBlocking(false);
+                            channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+                            connections++;
+                        }
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    boolean open;
+                    try {
+                        open = (!key.isReadable() || connection.read()) && connection.write();
+                    } catch (IOException ex) {
+                        Logger.getLogger(NioSocketServer.class.getName()).log(Level.SEVERE, null, ex);
+                        open = false;
+                    } catch (RuntimeException ex) {
+                        Logger.getLogger(NioSocketServer.class.getName()).log(Level.SEVERE,
+                                "Closing the connection after an unexpected error", ex);
+                        open = false;
+                    }
+                    if (!open) {
+                        key.cancel();
+                        connection.close();
+                        connections--;
+                    } else {
+                        key.interestOps(connection.output.isEmpty() ? SelectionKey.OP_READ
+                                : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(NioSocketServer.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+}
@@ -2,28 +2,110 @@ package common;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Custom Socket Client created to provide a simple and easy object to use when needing a socket client.
+ * The client works in one of two modes:
+ * 1. Blocking - each message is written and the client waits for the server to acknowledge it before returning.
+ * 2. Pipelined - messages are placed in a bounded outbound queue and written by a dedicated writer thread,
+ * while the server acknowledges them with cumulative sequence numbers read by a dedicated reader thread.
+ * Once the client is closed, or its writer thread fails to write, the messages sent are discarded instead of queued.
+ * Unless the legacy constructor is used, the first frame of the connection negotiates the session mode and the wire format 
+ * (text or binary) used by the remaining frames. Acknowledgements are always writeUTF strings.
  * @author Filipe Pires (85122) and João Alegria (85048)
  */
 public class SocketClient {
-    
+
+    /**
+     * Prefix of the first frame of a connection, used to negotiate the session mode and the wire format with the server.
+     * The session frame is "session;mode;format", optionally followed by ";peer" naming the client to the server.
+     */
+    public static final String SESSION_PREFIX = "session;";
+    /**
+     * Session mode requesting cumulative acknowledgements.
+     */
+    public static final String PIPELINED = "pipelined";
+    /**
+     * Session mode requesting one acknowledgement per message.
+     */
+    public static final String BLOCKING = "blocking";
+    /**
+     * Prefix of the cumulative acknowledgements sent by the server in pipelined sessions.
+     */
+    public static final String ACK_PREFIX = "ack;";
+    /**
+     * Maximum time (in ms) the client waits for pending acknowledgements when closing.
+     */
+    private static final long CLOSE_TIMEOUT = 5000;
+    /**
+     * Time (in ms) between two checks of the client's state while waiting for room in the outbound queue.
+     */
+    private static final long OFFER_INTERVAL = 100;
+    /**
+     * Sentinel placed in the outbound queue to stop the writer thread.
+     */
+    private static final Message END_OF_STREAM = new Message(MessageType.END_SIMULATION_ORDER);
+
     /**
      * Output stream of the socket.
      */
     private DataOutputStream out;
+    /**
+     * Input stream of the socket.
+     */
     private DataInputStream in;
-    
+    /**
+     * Codec used to write the messages in the negotiated wire format.
+     */
+    private MessageCodec codec = new MessageCodec(WireFormat.TEXT);
+
     /**
      * Instance of the communication socket to be used.
      */
     private Socket socket=null;
 
+    /**
+     * Bounded queue of messages waiting to be written (pipelined mode only).
+     */
+    private BlockingQueue<Message> outbound;
+    /**
+     * Thread responsible for writing the queued messages (pipelined mode only).
+     */
+    private Thread writerThread;
+    /**
+     * Thread responsible for reading the cumulative acknowledgements (pipelined mode only).
+     */
+    private Thread ackThread;
+    /**
+     * Flag signaling that the client no longer writes messages, because it was closed or its writer thread failed
+     * (pipelined mode only).
+     */
+    private volatile boolean closed=false;
+    /**
+     * Number of messages handed to the client (pipelined mode only).
+     */
+    private long sentSequence=0;
+    /**
+     * Highest sequence number acknowledged by the server (pipelined mode only).
+     */
+    private long ackedSequence=0;
+    /**
+     * Flag signaling that the acknowledgement reader thread ended, so no further acknowledgement will arrive (pipelined mode only).
+     */
+    private boolean acknowledgementsEnded=false;
+    /**
+     * Object used to wait for the server acknowledgements (pipelined mode only).
+     */
+    private final Object ackMonitor = new Object();
+
     /**
      * Class constructor for the client definition.
      * @param ip IP address assigned to the client.
@@ -36,37 +118,253 @@ public class SocketClient {
             }
             this.out = new DataOutputStream( socket.getOutputStream() );
             this.in = new DataInputStream( socket.getInputStream() );
-            
+
         } catch (IOException ex) {
             Logger.getLogger(SocketClient.class.getName()).log(Level.SEVERE, null, ex);
         }
     }
-    
+
+    /**
+     * Class constructor for the definition of a blocking client that negotiates the wire format with the server.
+     * @param ip IP address assigned to the client.
+     * @param port Port assigned to the client.
+     * @param format wire format of the messages.
+     */
+    public SocketClient(String ip, int port, WireFormat format) {
+        this(ip, port);
+        this.openSession(BLOCKING, format, null);
+    }
+
+    /**
+     * Class constructor for the definition of a pipelined client that negotiates the wire format with the server.
+     * Messages are sent without waiting for the server to process them; the caller only blocks when the outbound queue is full.
+     * @param ip IP address assigned to the client.
+     * @param port Port assigned to the client.
+     * @param format wire format of the messages.
+     * @param queueCapacity maximum number of messages waiting to be written.
+     */
+    public SocketClient(String ip, int port, WireFormat format, int queueCapacity) {
+        this(ip, port, format, queueCapacity, null);
+    }
+
     /**
-     * Sends a text message to the subscribed socket server. 
+     * Class constructor for the definition of a pipelined client that names itself to the server when negotiating the
+     * wire format, so that a server shared by several peers can tell them apart.
+     * @param ip IP address assigned to the client.
+     * @param port Port assigned to the client.
+     * @param format wire format of the messages.
+     * @param queueCapacity maximum number of messages waiting to be written.
+     * @param peer identifier of the client sent in the session frame (null for none).
+     */
+    public SocketClient(String ip, int port, WireFormat format, int queueCapacity, String peer) {
+        this(ip, port);
+        if(!this.openSession(PIPELINED, format, peer)){
+            return;
+        }
+        this.outbound = new ArrayBlockingQueue<>(queueCapacity);
+        this.writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeMessages();
+            }
+        }, "SocketClient-writer");
+        this.ackThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readAcknowledgements();
+            }
+        }, "SocketClient-ack");
+        this.writerThread.setDaemon(true);
+        this.ackThread.setDaemon(true);
+        this.writerThread.start();
+        this.ackThread.start();
+    }
+
+    /**
+     * Sends a text message to the subscribed socket server.
      * @param message string containing the message to send.
      */
     public void send(String message){
+        this.send(Message.parse(message));
+    }
+
+    /**
+     * Sends a message to the subscribed socket server.
+     * In pipelined mode the message is only queued and this method returns as soon as there is room in the queue, or
+     * discards the message if the client is closed or its writer thread failed.
+     * @param message message to send.
+     */
+    public void send(Message message){
+        if(this.outbound!=null){
+            try {
+                while(!this.closed){
+                    if(this.outbound.offer(message, OFFER_INTERVAL, TimeUnit.MILLISECONDS)){
+                        synchronized(this.ackMonitor){
+                            this.sentSequence++;
+                        }
+                        return;
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Logger.getLogger(SocketClient.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            return;
+        }
+        if(this.out==null){
+            return;
+        }
         try {
-            this.out.writeUTF(message);
+            this.codec.write(message, this.out);
             this.out.flush();
             this.in.readUTF();
         } catch (IOException ex) {
             Logger.getLogger(SocketClient.class.getName()).log(Level.SEVERE, null, ex);
         }
     }
-    
+
+    /**
+     * Checks whether the client managed to connect to the server.
+     * @return true if the socket was opened, false if the server could not be reached.
+     */
+    public boolean isConnected(){
+        return this.out!=null;
+    }
+
+    /**
+     * Waits until every message sent so far has been acknowledged by the server.
+     * Returns immediately in blocking mode, since there every message is acknowledged before send returns.
+     * @param timeout maximum time (in ms) to wait.
+     * @return true if all messages were acknowledged, false if the timeout expired or the acknowledgements stopped arriving.
+     */
+    public boolean flush(long timeout){
+        if(this.outbound==null){
+            return true;
+        }
+        long deadline = System.currentTimeMillis()+timeout;
+        synchronized(this.ackMonitor){
+            while(this.ackedSequence<this.sentSequence){
+                if(this.acknowledgementsEnded){
+                    return false;
+                }
+                long remaining = deadline-System.currentTimeMillis();
+                if(remaining<=0){
+                    return false;
+                }
+                try {
+                    this.ackMonitor.wait(remaining);
+                } catch (InterruptedException ex) {
+                    Logger.getLogger(SocketClient.class.getName()).log(Level.SEVERE, null, ex);
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     /**
      * Closes the socket client.
+     * In pipelined mode, the queued messages are written and acknowledged before the socket is closed, unless the writer
+     * thread already failed. No step of the closing waits longer than the closing timeout.
      */
     public void close(){
+        if(this.out==null){
+            return;
+        }
         try {
+            if(this.outbound!=null){
+                this.closed=true;
+                if(this.writerThread.isAlive() && this.outbound.offer(END_OF_STREAM, CLOSE_TIMEOUT, TimeUnit.MILLISECONDS)){
+                    this.writerThread.join(CLOSE_TIMEOUT);
+                    this.flush(CLOSE_TIMEOUT);
+                }
+            }
             this.out.close();
             this.socket.close();
+        } catch (IOException | InterruptedException ex) {
+            Logger.getLogger(SocketClient.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Writes the first frame of the connection, negotiating the session mode and the wire format with the server.
+     * @param mode session mode (blocking or pipelined).
+     * @param format wire format of the messages.
+     * @param peer identifier of the client (null for none).
+     * @return true if the session was negotiated, false otherwise.
+     */
+    private boolean openSession(String mode, WireFormat format, String peer){
+        if(this.out==null){
+            return false;
+        }
+        try {
+            this.out.writeUTF(SESSION_PREFIX+mode+";"+format.name().toLowerCase()+(peer==null ? "" : ";"+peer));
+            this.out.flush();
+            this.codec = new MessageCodec(format);
+            return true;
         } catch (IOException ex) {
             Logger.getLogger(SocketClient.class.getName()).log(Level.SEVERE, null, ex);
+            return false;
         }
     }
-    
-    
+
+    /**
+     * Life-cycle of the writer thread.
+     * Messages are written as they are taken from the queue and the stream is only flushed when the queue becomes empty.
+     * If a message cannot be written, the client is marked closed and the queued messages are discarded, so that no sender
+     * waits for room in the queue.
+     */
+    private void writeMessages(){
+        try {
+            while(true){
+                Message message = this.outbound.take();
+                while(message!=null){
+                    if(message==END_OF_STREAM){
+                        this.out.flush();
+                        return;
+                    }
+                    this.codec.write(message, this.out);
+                    message = this.outbound.poll();
+                }
+                this.out.flush();
+            }
+        } catch (IOException | InterruptedException ex) {
+            Logger.getLogger(SocketClient.class.getName()).log(Level.SEVERE, null, ex);
+            this.closed=true;
+            this.outbound.clear();
+        }
+    }
+
+    /**
+     * Life-cycle of the acknowledgement reader thread.
+     * Each acknowledgement carries the number of messages processed so far by the server.
+     */
+    private void readAcknowledgements(){
+        try {
+            while(true){
+                String ack = this.in.readUTF();
+                if(ack.startsWith(ACK_PREFIX)){
+                    long sequence = Long.parseLong(ack.substring(ACK_PREFIX.length()));
+                    synchronized(this.ackMonitor){
+                        if(sequence>this.ackedSequence){
+                            this.ackedSequence=sequence;
+                            this.ackMonitor.notifyAll();
+                        }
+                    }
+                }
+            }
+        } catch (EOFException ex) {
+            return;
+        } catch (IOException ex) {
+            if(!this.socket.isClosed()){
+                Logger.getLogger(SocketClient.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        } finally {
+            synchronized(this.ackMonitor){
+                this.acknowledgementsEnded=true;
+                this.ackMonitor.notifyAll();
+            }
+        }
+    }
+
+
 }
@@ -14,6 +14,11 @@ import java.util.logging.Logger;
  */
 public class SocketServer implements Runnable{
     
+    /**
+     * Maximum number of messages processed in a pipelined session before an acknowledgement is forced.
+     */
+    static final int ACKINTERVAL = 64;
+    
     /**
      * Port assigned to the server.
      */
@@ -36,7 +41,11 @@ public class SocketServer implements Runnable{
     
     /**
      * Executes the life-cycle of the socket server.
-     * When receiving a new message the server passes the message to the respective message processor.
+     * When receiving a new message the server passes the message to the respective message processor (batches are 
+     * unpacked and their messages passed one by one, in order).
+     * The first frame of the connection may negotiate the session: in binary sessions the remaining frames are decoded with 
+     * the binary codec, and in pipelined sessions, instead of acknowledging each message, the server acknowledges the number 
+     * of messages processed so far whenever it has no more buffered messages to read (or every ACKINTERVAL messages).
      */
     @Override
     public void run() {
@@ -45,12 +54,41 @@ public class SocketServer implements Runnable{
             Socket inSocket = socket.accept();
             DataInputStream socketInputStream = new DataInputStream(inSocket.getInputStream());
             DataOutputStream socketOutputStream = new DataOutputStream(inSocket.getOutputStream());
-            String receivedMessage="a";
-            while(!receivedMessage.equals("endSimulationOrder")){
-                receivedMessage=socketInputStream.readUTF();
+            boolean pipelined=false;
+            long processed=0;
+            long acknowledged=0;
+            String firstFrame=socketInputStream.readUTF();
+            MessageCodec codec=new MessageCodec(WireFormat.TEXT);
+            Message receivedMessage;
+            if(firstFrame.startsWith(SocketClient.SESSION_PREFIX)){
+                String[] session=firstFrame.split(";");
+                pipelined=session[1].equals(SocketClient.PIPELINED);
+                codec=new MessageCodec(WireFormat.valueOf(session[2].toUpperCase()));
+                receivedMessage=codec.read(socketInputStream);
+            }else{
+                receivedMessage=Message.parse(firstFrame);
+            }
+            while(true){
                 System.out.println("Transmitted Message: "+receivedMessage);
-                this.mp.processMessage(receivedMessage);
-                socketOutputStream.writeUTF("Message Processed");
+                if(receivedMessage.getType()==MessageType.BATCH){
+                    for(Message part : receivedMessage.getParts()){
+                        this.mp.processMessage(part);
+                    }
+                }else{
+                    this.mp.processMessage(receivedMessage);
+                }
+                processed++;
+                boolean end=receivedMessage.getType()==MessageType.END_SIMULATION_ORDER;
+                if(!pipelined){
+                    socketOutputStream.writeUTF("Message Processed");
+                }else if(end || socketInputStream.available()==0 || processed-acknowledged>=ACKINTERVAL){
+                    socketOutputStream.writeUTF(SocketClient.ACK_PREFIX+processed);
+                    acknowledged=processed;
+                }
+                if(end){
+                    break;
+                }
+                receivedMessage=codec.read(socketInputStream);
             }
             socket.close();
         } catch (IOException ex) {
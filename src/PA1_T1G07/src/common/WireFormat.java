@@ -0,0 +1,26 @@
+package common;
+
+/**
+ * Enumerate class containing the formats in which messages can travel between the entities.
+ * The format is negotiated when the connection is opened.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public enum WireFormat {
+    /**
+     * Semicolon-delimited strings written with writeUTF, kept for debugging.
+     */
+    TEXT,
+    /**
+     * Length-prefixed frames with an opcode byte followed by varint encoded fields.
+     */
+    BINARY;
+
+    /**
+     * Retrieves the wire format defined in the startup configuration (binary by default).
+     * @return the configured wire format.
+     */
+    public static WireFormat configured() {
+        String format = Configuration.getString("wire.format", "binary");
+        return format.equalsIgnoreCase("text") ? TEXT : BINARY;
+    }
+}
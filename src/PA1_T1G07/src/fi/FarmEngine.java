@@ -0,0 +1,406 @@
+package fi;
+
+import common.Configuration;
+import common.Message;
+import common.MessageBatcher;
+import common.MessageProcessor;
+import common.MessageType;
+import common.SocketClient;
+import common.SocketServer;
+import common.WireFormat;
+import fi.monitors.CornCobStock;
+import fi.monitors.Granary;
+import fi.monitors.Path;
+import fi.monitors.Standing;
+import fi.monitors.Storehouse;
+import fi.sim.SimulatedFarm;
+import fi.utils.MetricsEndpoint;
+import fi.utils.MonitorMetadata;
+import fi.utils.MonitorMetrics;
+import fi.utils.ShardMapping;
+import fi.views.LoggingFarmView;
+import fi.views.NoOpFarmView;
+import fi.workers.CCProxy;
+import fi.workers.CommandExecutor;
+import fi.workers.EventDispatcher;
+import fi.workers.Farmer;
+import fi.workers.TeamDriver;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Headless engine of the Farm Infrastructure.
+ * It owns the farm areas (monitors), the farmers, the Control Center Proxy and the communication with the Control Center,
+ * and has no dependency on AWT/Swing: the presentation of the farm is delegated to a pluggable view.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public class FarmEngine implements UiAndMainControlsFI {
+
+    /**
+     * Number of farmers of each team (-Dharvest.team.size).
+     */
+    public static final int teamSize = Math.max(1, Configuration.getInt("team.size", 5));
+    /**
+     * Number of teams harvesting concurrently on the farm (-Dharvest.teams). The Control Center drives the first team and
+     * the others are driven by the Farm Infrastructure itself.
+     */
+    public static final int teams = Math.max(1, Configuration.getInt("teams", 1));
+    /**
+     * Number of farmers available during the simulation (of all teams).
+     */
+    public static final int farmers = teamSize * teams;
+    /**
+     * Length/size of the path (number of positions farmers need to cross, -Dharvest.path.length).
+     */
+    public static final int pathSize = Math.max(1, Configuration.getInt("path.length", 10));
+    /**
+     * Number of positions of each column of the path (-Dharvest.path.width).
+     * It is never smaller than the number of farmers, since all of them enter the path through the same column.
+     */
+    public static final int pathWidth = Math.max(farmers, Configuration.getInt("path.width", farmers));
+    /**
+     * Whether the farmers move concurrently in the path instead of taking turns (-Dharvest.path.concurrent, by default false).
+     */
+    public static final boolean concurrentPath = Configuration.getBoolean("path.concurrent", false);
+    /**
+     * Number of collection lanes of the granary, where farmers collect corn cobs concurrently (-Dharvest.granary.lanes, by
+     * default the team size).
+     */
+    public static final int granaryLanes = Math.max(1, Configuration.getInt("granary.lanes", teamSize));
+    /**
+     * Number of storing bays of the storehouse, where farmers store corn cobs concurrently (-Dharvest.storehouse.bays, by
+     * default the team size).
+     */
+    public static final int storehouseBays = Math.max(1, Configuration.getInt("storehouse.bays", teamSize));
+    /**
+     * Number of corn cobs initially in the granary (-Dharvest.granary.cobs, by default 50).
+     */
+    public static final long granaryCornCobs = Math.max(0, Configuration.getLong("granary.cobs", 50));
+    /**
+     * Number of corn cobs regrowing in the granary per second, up to its initial number (-Dharvest.granary.regrowth, by
+     * default 0).
+     */
+    public static final long granaryRegrowth = Math.max(0, Configuration.getLong("granary.regrowth", 0));
+    /**
+     * Maximum response delay.
+     */
+    public static final int maxDelay = 100;
+    /**
+     * Index of the shard of the farm owned by this Farm Infrastructure, when a Control Center coordinates several of them
+     * (-Dharvest.fi.shard, starting at 0).
+     */
+    public static final int shard = Math.max(0, Configuration.getInt("fi.shard", 0));
+    /**
+     * Port of the FI's server (-Dharvest.fi.port, by default 7777 plus the shard index).
+     */
+    public static final int fiPort = Configuration.getInt("fi.port", 7777 + shard);
+    /**
+     * Host of the Control Center (-Dharvest.cc.host).
+     */
+    public static final String ccHost = Configuration.getString("cc.host", "localhost");
+    /**
+     * Port of the CC's server (-Dharvest.cc.port, by default 6666), shared by every shard.
+     */
+    public static final int ccPort = Configuration.getInt("cc.port", 6666);
+    /**
+     * Maximum number of messages waiting to be sent to the control center.
+     */
+    public static final int ccQueueCapacity = 1024;
+    /**
+     * Time window (in ms) during which updates to the control center are gathered in a single batch (0 disables batching).
+     */
+    public static final long batchWindow = Configuration.getLong("batch.window", 20);
+    /**
+     * Number of gathered updates that forces a batch to be sent to the control center.
+     */
+    public static final int batchSize = Configuration.getInt("batch.size", 256);
+    /**
+     * Whether the farm runs on the discrete-event simulation (virtual time) instead of the monitors and farmer threads
+     * (-Dharvest.fi.engine=threads|simulated).
+     */
+    public static final boolean simulated = Configuration.getString("fi.engine", "threads").equalsIgnoreCase("simulated");
+    /**
+     * Whether the notifications of the farm areas are delivered by a dispatcher thread instead of the notifying thread
+     * (-Dharvest.fi.dispatch=async|direct).
+     */
+    public static final boolean asyncDispatch = !Configuration.getString("fi.dispatch", "async").equalsIgnoreCase("direct");
+    /**
+     * Port of the local endpoint exposing the monitors' metrics (-Dharvest.metrics.port, by default the FI's port plus 100,
+     * negative to disable it).
+     */
+    public static final int metricsPort = Configuration.getInt("metrics.port", fiPort + 100);
+    /**
+     * Interval (in ms) between the reports of the monitors' metrics sent to the CC (-Dharvest.metrics.interval, 0 to only
+     * report them when the simulation ends).
+     */
+    public static final long metricsInterval = Configuration.getLong("metrics.interval", 2000);
+
+    /**
+     * View presenting the state of the farm.
+     */
+    private final FarmView view;
+    /**
+     * Services given to the farm areas and to the Control Center Proxy (this engine or the dispatcher delivering to it).
+     */
+    private final UiAndMainControlsFI controls;
+    /**
+     * Communication client to send messages to CC's server.
+     */
+    private SocketClient ccClient;
+    /**
+     * Batching stage gathering the updates sent to the CC.
+     */
+    private MessageBatcher ccBatcher;
+    /**
+     * Communication server to receive messages from CC's client.
+     */
+    private SocketServer fiServer;
+    /**
+     * Communication thread to process FI's server messages.
+     */
+    private Thread serverThread;
+    /**
+     * Local endpoint exposing the monitors' metrics (null when the metrics are not recorded).
+     */
+    private MetricsEndpoint metricsEndpoint;
+    /**
+     * Executor sending the monitors' metrics to the CC periodically (null when they are not reported periodically).
+     */
+    private ScheduledExecutorService metricsReporter;
+
+    /**
+     * Translation of the messages sent to the Control Center to the farm of all shards.
+     */
+    private final ShardMapping shardMapping = new ShardMapping(shard, farmers, pathWidth, granaryLanes, storehouseBays);
+    /**
+     * Instance of the metadata used for all farm areas.
+     */
+    private final MonitorMetadata metadata;
+    /**
+     * Instance of the storehouse area.
+     */
+    private final Storehouse storeHouse;
+    /**
+     * Instance of the standing area.
+     */
+    private final Standing standing;
+    /**
+     * Instance of the path area.
+     */
+    private final Path path;
+    /**
+     * Instance of the granary area.
+     */
+    private final Granary granary;
+    /**
+     * Auxiliary array containing the farmer instances.
+     */
+    private final Farmer[] farmerTeam;
+    /**
+     * Drivers of the teams not driven by the Control Center.
+     * Their harvest runs are defined in the startup configuration (-Dharvest.driver.*): cobs (corn cobs collected by each
+     * farmer, default 1), steps (maximum steps in the path, default 2), timeout (ms, default 500) and target (corn cobs in the
+     * storehouse at which they stop, default 0 to harvest until the granary is empty).
+     */
+    private final TeamDriver[] drivers;
+
+    /**
+     * Class constructor. Creates the monitors and the farmers, without starting them.
+     * @param view view presenting the state of the farm.
+     */
+    public FarmEngine(FarmView view) {
+        this.view = view;
+        this.controls = asyncDispatch ? new EventDispatcher(this) : this;
+        this.metadata = new MonitorMetadata(farmers, maxDelay, Configuration.getLong("seed", System.nanoTime()), simulated ? 1 : teams);
+        System.out.println("Simulation seed: " + this.metadata.SEED + " (replay with -Dharvest.seed=" + this.metadata.SEED + ")");
+        this.storeHouse = new Storehouse(this.controls, metadata, storehouseBays);
+        this.standing = new Standing(this.controls, metadata);
+        this.path = new Path(this.controls, metadata, pathSize, pathWidth, concurrentPath);
+        this.granary = new Granary(this.controls, metadata, granaryLanes, new CornCobStock(granaryCornCobs, granaryRegrowth));
+        this.farmerTeam = new Farmer[farmers];
+        for (int i = 0; i < farmers; i++) {
+            this.farmerTeam[i] = new Farmer(i + 1, storeHouse, standing, path, granary);
+        }
+        this.drivers = new TeamDriver[metadata.NUMBERTEAMS];
+        for (int t = 0; t < this.drivers.length; t++) {
+            if (t != CCProxy.TEAM) {
+                this.drivers[t] = new TeamDriver(t, storeHouse, standing, granary, metadata.team(t).MAXNUMBERFARMERS,
+                        Configuration.getInt("driver.cobs", 1), Configuration.getInt("driver.steps", 2),
+                        Configuration.getInt("driver.timeout", 500), Configuration.getLong("driver.target", 0));
+            }
+        }
+    }
+
+    /**
+     * Starts the engine: connects to the Control Center, starts the FI's server and the farmers (or the simulated farm) with
+     * the drivers of the teams not driven by the Control Center, and notifies the Control Center that the Farm Infrastructure
+     * is online.
+     * The simulated farm has a single team with all the farmers.
+     */
+    public void start() {
+        this.ccClient = new SocketClient(ccHost, ccPort, WireFormat.configured(), ccQueueCapacity, String.valueOf(shard));
+        this.ccBatcher = new MessageBatcher(ccClient, batchWindow, batchSize);
+
+        MessageProcessor messageProcessor;
+        if (simulated) {
+            SimulatedFarm farm = new SimulatedFarm(this.controls, metadata, pathSize, pathWidth, granaryLanes, storehouseBays);
+            farm.start();
+            messageProcessor = farm;
+        } else {
+            messageProcessor = new CCProxy(this.controls, storeHouse, standing, path, granary, CommandExecutor.configured());
+        }
+        this.fiServer = new SocketServer(fiPort, messageProcessor);
+        this.serverThread = new Thread(fiServer);
+        this.serverThread.start();
+
+        if (!simulated && MonitorMetrics.ENABLED) {
+            this.metricsEndpoint = new MetricsEndpoint(storeHouse.getMetrics(), standing.getMetrics(), path.getMetrics(),
+                    granary.getMetrics());
+            if (metricsPort >= 0) {
+                this.metricsEndpoint.start(metricsPort);
+            }
+            if (metricsInterval > 0) {
+                this.metricsReporter = Executors.newSingleThreadScheduledExecutor(task -> {
+                    Thread thread = new Thread(task, "MetricsReporter");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                this.metricsReporter.scheduleAtFixedRate(this::reportMetrics, metricsInterval, metricsInterval,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (!simulated) {
+            for (Farmer f : this.farmerTeam) {
+                f.start();
+            }
+            for (TeamDriver d : this.drivers) {
+                if (d != null) {
+                    d.start();
+                }
+            }
+        }
+
+        this.ccClient.send(new Message(MessageType.INFRASTRUCTURE_SERVER_ONLINE));
+    }
+
+    /**
+     * Creates the headless view defined in the startup configuration (-Dharvest.fi.view=none|log).
+     * @return the configured headless view.
+     */
+    public static FarmView configuredHeadlessView() {
+        if (Configuration.getString("fi.view", "none").equalsIgnoreCase("log")) {
+            return new LoggingFarmView();
+        }
+        return new NoOpFarmView();
+    }
+
+    /**
+     * Main function responsible for running the Farm Infrastructure without a graphical interface.
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        System.out.println("Initializing headless Farm Infrastructure... ");
+        new FarmEngine(configuredHeadlessView()).start();
+    }
+
+    /**
+     * Sends the monitors' contention metrics to the control center, one message per monitor.
+     * Called periodically by the metrics reporter, and once more when the simulation ends.
+     */
+    private void reportMetrics() {
+        for (MonitorMetrics m : new MonitorMetrics[]{storeHouse.getMetrics(), standing.getMetrics(), path.getMetrics(),
+                granary.getMetrics()}) {
+            this.sendMessage(m.toMessage());
+        }
+    }
+
+    /**
+     * Sends message through the created socket client.
+     * Serves as passthrough to the entities that need to send a message to the control center.
+     * Messages go through the batching stage, so superseded updates may be collapsed before reaching the control center.
+     * The farmers and positions of the messages are translated to the farm of all shards.
+     * @param message message to send.
+     */
+    @Override
+    public void sendMessage(Message message) {
+        this.ccBatcher.send(this.shardMapping.toGlobal(message));
+    }
+
+    /**
+     * Closes the control center socket client.
+     */
+    @Override
+    public void closeSocketClient() {
+        if (this.metricsReporter != null) {
+            this.metricsReporter.shutdownNow();
+            try {
+                this.metricsReporter.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Logger.getLogger(FarmEngine.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+        if (this.metricsEndpoint != null) {
+            this.reportMetrics();
+            System.out.print(this.metricsEndpoint.report());
+        }
+        this.ccBatcher.send(new Message(MessageType.END_SIMULATION_ORDER));
+        this.ccBatcher.close();
+        this.ccClient.close();
+    }
+
+    /**
+     * Closes the view and consequently the Farm Infrastructure.
+     */
+    @Override
+    public void close() {
+        if (this.metricsEndpoint != null) {
+            this.metricsEndpoint.stop();
+        }
+        this.view.close();
+        System.out.println("Farming Infrastructure exited with success!");
+    }
+
+    @Override
+    public void presentFarmerInStorehouse(int farmerId, int position) {
+        this.view.presentFarmerInStorehouse(farmerId, position);
+    }
+
+    @Override
+    public void presentFarmerInStandingArea(int farmerId, int position) {
+        this.view.presentFarmerInStandingArea(farmerId, position);
+    }
+
+    @Override
+    public void presentFarmerInPath(int farmerId, int position, int column) {
+        this.view.presentFarmerInPath(farmerId, position, column);
+    }
+
+    @Override
+    public void presentFarmerInGranary(int farmerId, int position) {
+        this.view.presentFarmerInGranary(farmerId, position);
+    }
+
+    @Override
+    public void presentCollectingFarmer(int farmerId, int lane) {
+        this.view.presentCollectingFarmer(farmerId, lane);
+    }
+
+    @Override
+    public void presentStoringFarmer(int farmerId, int bay) {
+        this.view.presentStoringFarmer(farmerId, bay);
+    }
+
+    @Override
+    public void updateGranaryCornCobs(long actualNumber) {
+        this.view.updateGranaryCornCobs(actualNumber);
+    }
+
+    @Override
+    public void updateStorehouseCornCobs(long actualNumber) {
+        this.view.updateStorehouseCornCobs(actualNumber);
+    }
+}
@@ -1,76 +1,48 @@
 package fi;
 
-import fi.utils.MonitorMetadata;
-import fi.monitors.*;
-import fi.workers.Farmer;
-import fi.workers.CCProxy;
-import common.SocketClient;
-import common.SocketServer;
+import common.Configuration;
+import common.FarmGridBuilder;
+import common.FarmGridRenderer;
+import java.awt.GraphicsEnvironment;
 import javax.swing.*;
 
 /**
- * Class for the Farm Infrastructure for the agricultural harvest.
+ * Class for the Swing view of the Farm Infrastructure for the agricultural harvest.
+ * The farm itself (monitors, farmers and communication) runs in the headless FarmEngine, which presents its state through this view.
  * 
  * @author Filipe Pires (85122) and João Alegria (85048)
  */
-public class FarmInfrastructure extends JFrame implements UiAndMainControlsFI{
+public class FarmInfrastructure extends JFrame implements FarmView{
 
     /**
-     * Communication client to send messages to CC's server.
+     * Number of farmers of each team.
      */
-    private static SocketClient ccClient;
+    public static final int teamSize = FarmEngine.teamSize;
     /**
-     * Communication server to receive messages from CC's client.
+     * Number of farmers available during the simulation (of all teams).
      */
-    private static SocketServer fiServer;
-    /**
-     * Communication thread to process FI's server messages.
-     */
-    private static Thread serverThread;
-    
-    /**
-     * Instance of the metadata used for all farm areas.
-     */
-    private static MonitorMetadata metadata;
-    
-    
-    /**
-     * Number of farmers available during the simulation.
-     */
-    public static final int teamSize = 5;
+    public static final int farmers = FarmEngine.farmers;
     /**
      * Length/size of the path (number of positions farmers need to cross).
      */
-    public static final int pathSize = 10;
-    /**
-     * Maximum response delay.
-     */
-    public static final int maxDelay = 100;
-
+    public static final int pathSize = FarmEngine.pathSize;
     /**
-     * Instance of the storehouse area.
+     * Number of positions of each column of the path.
      */
-    private static Storehouse storeHouse;
+    public static final int pathWidth = FarmEngine.pathWidth;
     /**
-     * Instance of the standing area.
+     * Number of collection lanes of the granary.
      */
-    private static Standing standing;
+    public static final int granaryLanes = FarmEngine.granaryLanes;
     /**
-     * Instance of the path area.
+     * Number of storing bays of the storehouse.
      */
-    private static Path path;
-    /**
-     * Instance of the granary area.
-     */
-    private static Granary granary;
-    /**
-     * Auxiliary array containing the farmer instances.
-     */
-    private static Farmer[] farmerTeam;
+    public static final int storehouseBays = FarmEngine.storehouseBays;
+
     /**
-     * Instance of the message processor assigned to the FI.
+     * Engine running the farm presented by this view.
      */
-    private static CCProxy messageProcessor;
+    private FarmEngine engine;
 
     /**
      * Auxiliary array to manage swing interface text fields.
@@ -88,6 +60,18 @@ public class FarmInfrastructure extends JFrame implements UiAndMainControlsFI{
      * Auxiliary array to manage swing interface text fields.
      */
     private JTextField[] granaryTextFields;
+    /**
+     * Auxiliary array to manage swing interface text fields (one per collection lane).
+     */
+    private JTextField[] collectingTextFields;
+    /**
+     * Auxiliary array to manage swing interface text fields (one per storing bay).
+     */
+    private JTextField[] storingTextFields;
+    /**
+     * View model presenting the farmers' positions and the corn cobs, repainted on the Event Dispatch Thread.
+     */
+    private FarmGridRenderer grid;
 
 
     /**
@@ -97,29 +81,9 @@ public class FarmInfrastructure extends JFrame implements UiAndMainControlsFI{
         this.setTitle("Farm Infrastructure");
         initComponents();
         groupTextFields();
-        metadata = new MonitorMetadata(teamSize, maxDelay);
-
-        storeHouse = new Storehouse(this, metadata);
-        standing = new Standing(this, metadata);
-        path = new Path(this, metadata, pathSize);
-        granary = new Granary(this, metadata);
-
-        ccClient = new SocketClient("localhost", 6666);
-
-        messageProcessor = new CCProxy(this, storeHouse, standing, path, granary);
-        fiServer = new SocketServer(7777, messageProcessor);
-        serverThread = new Thread(fiServer);
-        serverThread.start();
-        
-        
-        farmerTeam = new Farmer[teamSize];
-        for (int i = 0; i < teamSize; i++) {
-            Farmer f = new Farmer(i + 1, storeHouse, standing, path, granary);
-            f.start();
-            farmerTeam[i] = f;
-        }
-        
-        ccClient.send("infrastructureServerOnline");
+        this.granaryCornCobs.setText(String.valueOf(FarmEngine.granaryCornCobs));
+        this.engine = new FarmEngine(this);
+        this.engine.start();
     }
 
     /**
@@ -761,9 +725,14 @@ public class FarmInfrastructure extends JFrame implements UiAndMainControlsFI{
 
     /**
      * Main function responsible for enabling the Farm Infrastructure GUI.
+     * Without a display (or with -Dharvest.fi.view=none|log) the headless engine is started instead.
      * @param args the command line arguments
      */
     public static void main(String args[]) {
+        if (GraphicsEnvironment.isHeadless() || !Configuration.getString("fi.view", "swing").equalsIgnoreCase("swing")) {
+            FarmEngine.main(args);
+            return;
+        }
         System.out.println("Initializing Farm Infrastructure... ");
         try {
             for (UIManager.LookAndFeelInfo info : UIManager.getInstalledLookAndFeels()) {
@@ -881,23 +850,75 @@ public class FarmInfrastructure extends JFrame implements UiAndMainControlsFI{
 
     /**
      * Auxiliary method to organize the text fields (positions) of all areas.
+     * The text fields designed in the Form Editor are used when they fit the configured dimensions; otherwise they are generated.
      */
     private void groupTextFields() {
-        storehouseTextFields = new JTextField[teamSize];
+        collectingTextFields = granaryLanes == 1 ? new JTextField[]{gc} : FarmGridBuilder.newColumn(granaryLanes);
+        storingTextFields = storehouseBays == 1 ? new JTextField[]{ss} : FarmGridBuilder.newColumn(storehouseBays);
+        if (FarmGridBuilder.fitsForm(farmers, pathSize, pathWidth)) {
+            groupFormTextFields();
+            if (granaryLanes > 1 || storehouseBays > 1) {
+                rebuildStorehousePanel();
+                rebuildGranaryPanel();
+                pack();
+            }
+        } else {
+            generateTextFields();
+        }
+        grid = new FarmGridRenderer(storehouseTextFields, standingAreaTextFields, pathTextFields, granaryTextFields,
+                collectingTextFields, storingTextFields, granaryCornCobs, storehouseCornCobs);
+    }
+
+    /**
+     * Auxiliary method to generate the text fields (positions) of all areas for the configured dimensions.
+     */
+    private void generateTextFields() {
+        storehouseTextFields = FarmGridBuilder.newColumn(farmers);
+        standingAreaTextFields = FarmGridBuilder.newColumn(farmers);
+        pathTextFields = FarmGridBuilder.newGrid(pathSize, pathWidth);
+        granaryTextFields = FarmGridBuilder.newColumn(farmers);
+        rebuildStorehousePanel();
+        FarmGridBuilder.rebuild(standingAreaPanel, standingAreaLabel, new JTextField[][]{standingAreaTextFields});
+        FarmGridBuilder.rebuild(pathPanel, PathLabel, pathTextFields);
+        rebuildGranaryPanel();
+        pack();
+    }
+
+    /**
+     * Auxiliary method to lay out the Storehouse area with the text fields of all storing bays.
+     */
+    private void rebuildStorehousePanel() {
+        FarmGridBuilder.rebuild(storehousePanel, storehouseLabel, new JTextField[][]{storehouseTextFields},
+                FarmGridBuilder.footer(storingTextFields, storehouseCornCobsLabel, storehouseCornCobs));
+    }
+
+    /**
+     * Auxiliary method to lay out the Granary area with the text fields of all collection lanes.
+     */
+    private void rebuildGranaryPanel() {
+        FarmGridBuilder.rebuild(granaryPanel, granaryLabel, new JTextField[][]{granaryTextFields},
+                FarmGridBuilder.footer(collectingTextFields, granaryCornCobsLabel, granaryCornCobs));
+    }
+
+    /**
+     * Auxiliary method to organize the text fields (positions) designed in the Form Editor.
+     */
+    private void groupFormTextFields() {
+        storehouseTextFields = new JTextField[farmers];
         storehouseTextFields[0] = sh1;
         storehouseTextFields[1] = sh2;
         storehouseTextFields[2] = sh3;
         storehouseTextFields[3] = sh4;
         storehouseTextFields[4] = sh5;
 
-        standingAreaTextFields = new JTextField[teamSize];
+        standingAreaTextFields = new JTextField[farmers];
         standingAreaTextFields[0] = sa1;
         standingAreaTextFields[1] = sa2;
         standingAreaTextFields[2] = sa3;
         standingAreaTextFields[3] = sa4;
         standingAreaTextFields[4] = sa5;
 
-        pathTextFields = new JTextField[pathSize][teamSize];
+        pathTextFields = new JTextField[pathSize][farmers];
         pathTextFields[0][0] = p01_1;
         pathTextFields[0][1] = p01_2;
         pathTextFields[0][2] = p01_3;
@@ -949,7 +970,7 @@ public class FarmInfrastructure extends JFrame implements UiAndMainControlsFI{
         pathTextFields[9][3] = p10_4;
         pathTextFields[9][4] = p10_5;
 
-        granaryTextFields = new JTextField[teamSize];
+        granaryTextFields = new JTextField[farmers];
         granaryTextFields[0] = g1;
         granaryTextFields[1] = g2;
         granaryTextFields[2] = g3;
@@ -958,32 +979,12 @@ public class FarmInfrastructure extends JFrame implements UiAndMainControlsFI{
     }
 
     /**
-     * Sends message through the created socket client.
-     * Serves as passthrough to the entities that need to send a message to the control center.
-     * @param message string containing the message to send.
-     */
-    @Override
-    public void sendMessage(String message) {
-        this.ccClient.send(message);
-    }
-    
-    /**
-     * Closes the control center socket client.
-     */
-    @Override
-    public void closeSocketClient() {
-        this.ccClient.send("endSimulationOrder");
-        this.ccClient.close();
-    }
-
-    /**
-     * Closes the Farm Infrastructure GUI and consequently the process.
+     * Closes the Farm Infrastructure GUI.
      */
     @Override
     public void close() {
         this.setVisible(false);
         this.dispose();
-        System.out.println("Farming Infrastructure exited with success!");
     }
 
     /**
@@ -993,22 +994,7 @@ public class FarmInfrastructure extends JFrame implements UiAndMainControlsFI{
      */
     @Override
     public void presentFarmerInStorehouse(int farmerId, int position) {
-        clearAll(farmerId);
-        storehouseTextFields[position].setText("" + farmerId);
-    }
-
-    /**
-     * Clears the Storehouse of a specific farmer id.
-     * @param farmerId int identifying the farmer to clear from the Storehouse.
-     */
-    private void clearStorehouse(int farmerId) {
-        for (int i = 0; i < teamSize; i++) {
-            if (!(storehouseTextFields[i].getText()).equals("")
-                    && Integer.valueOf(storehouseTextFields[i].getText()) == farmerId) {
-                storehouseTextFields[i].setText("");
-                return;
-            }
-        }
+        grid.presentInStorehouse(farmerId, position);
     }
 
     /**
@@ -1018,22 +1004,7 @@ public class FarmInfrastructure extends JFrame implements UiAndMainControlsFI{
      */
     @Override
     public void presentFarmerInStandingArea(int farmerId, int position) {
-        clearAll(farmerId);
-        standingAreaTextFields[position].setText("" + farmerId);
-    }
-
-    /**
-     * Clears the Standing area of a specific farmer id.
-     * @param farmerId int identifying the farmer to clear from the Standing area.
-     */
-    private void clearStandingArea(int farmerId) {
-        for (int i = 0; i < teamSize; i++) {
-            if (!(standingAreaTextFields[i].getText()).equals("")
-                    && Integer.valueOf(standingAreaTextFields[i].getText()) == farmerId) {
-                standingAreaTextFields[i].setText("");
-                return;
-            }
-        }
+        grid.presentInStandingArea(farmerId, position);
     }
 
     /**
@@ -1044,29 +1015,7 @@ public class FarmInfrastructure extends JFrame implements UiAndMainControlsFI{
      */
     @Override
     public void presentFarmerInPath(int farmerId, int position, int column) {
-        clearAll(farmerId);
-        pathTextFields[column][position].setText("" + farmerId);
-    }
-
-    /**
-     * Clears the Path area of a specific farmer id.
-     * @param farmerId int identifying the farmer to clear from the Path area.
-     */
-    private void clearPath(int farmerId) {
-        for (int c = 0; c < this.pathSize; c++) {
-            for (int p = 0; p < this.teamSize; p++) {
-                int currentInt;
-                try {
-                    currentInt = Integer.valueOf(pathTextFields[c][p].getText());
-                } catch (NumberFormatException ex) {
-                    currentInt = -1;
-                }
-                if (currentInt == farmerId) {
-                    pathTextFields[c][p].setText("");
-                    return;
-                }
-            }
-        }
+        grid.presentInPath(farmerId, position, column);
     }
 
     /**
@@ -1076,94 +1025,44 @@ public class FarmInfrastructure extends JFrame implements UiAndMainControlsFI{
      */
     @Override
     public void presentFarmerInGranary(int farmerId, int position) {
-        clearAll(farmerId);
-        granaryTextFields[position].setText("" + farmerId);
-    }
-
-    /**
-     * Clears the Granary area of a specific farmer id.
-     * @param farmerId int identifying the farmer to clear from the Granary area.
-     */
-    private void clearGranary(int farmerId) {
-        for (int i = 0; i < teamSize; i++) {
-            if (!(granaryTextFields[i].getText()).equals("")
-                    && Integer.valueOf(granaryTextFields[i].getText()) == farmerId) {
-                granaryTextFields[i].setText("");
-                return;
-            }
-        }
+        grid.presentInGranary(farmerId, position);
     }
 
     /**
-     * Presents the farmer id in the respective position of the Collecting Area.
+     * Presents the farmer id in the respective lane of the Collecting Area.
      * @param farmerId int identifying the farmer entering the position. 
+     * @param lane int identifying the collection lane.
      */
     @Override
-    public void presentCollectingFarmer(int farmerId) {
-        clearAll(farmerId);
-        gc.setText("" + farmerId);
-    }
-
-    /**
-     * Clears the Collecting area of a specific farmer id.
-     * @param farmerId int identifying the farmer to clear from the Collecting area.
-     */
-    private void clearCollectionArea(int farmerId) {
-        if (!(gc.getText()).equals("") && Integer.valueOf(gc.getText()) == farmerId) {
-            gc.setText("");
-            return;
-        }
+    public void presentCollectingFarmer(int farmerId, int lane) {
+        grid.presentCollecting(farmerId, lane);
     }
     
     /**
-     * Presents the farmer id in the respective position of the Storing Area.
+     * Presents the farmer id in the respective bay of the Storing Area.
      * @param farmerId int identifying the farmer entering the position. 
+     * @param bay int identifying the storing bay.
      */
     @Override
-    public void presentStoringFarmer(int farmerId) {
-        clearAll(farmerId);
-        ss.setText("" + farmerId);
-    }
-
-    /**
-     * Clears the Storing area of a specific farmer id.
-     * @param farmerId int identifying the farmer to clear from the Storing area.
-     */
-    private void clearStoringArea(int farmerId) {
-        if (!(ss.getText()).equals("") && Integer.valueOf(ss.getText()) == farmerId) {
-            ss.setText("");
-            return;
-        }
-    }
-
-    /**
-     * Clears all the area of a specific farmer id.
-     * @param farmerId int identifying the farmer to clear all the areas.
-     */
-    private void clearAll(int farmerId) {
-        clearStorehouse(farmerId);
-        clearStandingArea(farmerId);
-        clearPath(farmerId);
-        clearGranary(farmerId);
-        clearCollectionArea(farmerId);
-        clearStoringArea(farmerId);
+    public void presentStoringFarmer(int farmerId, int bay) {
+        grid.presentStoring(farmerId, bay);
     }
 
     /**
      * Updates the corn cobs number in the Granary area.
-     * @param actualNumber int representing the current corn cobs number.
+     * @param actualNumber long representing the current corn cobs number.
      */
     @Override
-    public void updateGranaryCornCobs(int actualNumber) {
-        granaryCornCobs.setText(String.valueOf(actualNumber));
+    public void updateGranaryCornCobs(long actualNumber) {
+        grid.updateGranaryCornCobs(actualNumber);
     }
 
     /**
      * Updates the corn cobs number in the Storehouse area.
-     * @param actualNumber int representing the current corn cobs number.
+     * @param actualNumber long representing the current corn cobs number.
      */
     @Override
-    public void updateStorehouseCornCobs(int actualNumber) {
-        storehouseCornCobs.setText(String.valueOf(actualNumber));
+    public void updateStorehouseCornCobs(long actualNumber) {
+        grid.updateStorehouseCornCobs(actualNumber);
     }
 }
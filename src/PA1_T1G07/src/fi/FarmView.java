@@ -0,0 +1,18 @@
+package fi;
+
+/**
+ * Interface defining the presentation service used by the Farm Infrastructure to show the state of the farm.
+ * Implementations range from the Swing interface to headless sinks (no-op or logging).
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public interface FarmView {
+    public void presentFarmerInStorehouse(int farmerId, int position);
+    public void presentFarmerInStandingArea(int farmerId, int position);
+    public void presentFarmerInPath(int farmerId, int position, int column);
+    public void presentFarmerInGranary(int farmerId, int position);
+    public void presentCollectingFarmer(int farmerId, int lane);
+    public void presentStoringFarmer(int farmerId, int bay);
+    public void updateGranaryCornCobs(long actualNumber);
+    public void updateStorehouseCornCobs(long actualNumber);
+    public void close();
+}
@@ -0,0 +1,288 @@
+package fi.bench;
+
+import common.Configuration;
+import common.Message;
+import common.MessageType;
+import fi.FarmEngine;
+import fi.UiAndMainControlsFI;
+import fi.monitors.CornCobStock;
+import fi.monitors.Granary;
+import fi.monitors.Path;
+import fi.monitors.Standing;
+import fi.monitors.Storehouse;
+import fi.utils.EndSimulationException;
+import fi.utils.MonitorMetadata;
+import fi.utils.StopHarvestException;
+import fi.views.NoOpFarmView;
+import fi.workers.Farmer;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Benchmark of the four farm-area monitors (Storehouse, Standing, Path and Granary).
+ * The monitors are driven directly, without sockets nor interface: the farmers run their usual life-cycle and the benchmark
+ * plays the role of the Control Center Proxy, ordering one full harvest cycle after the other. For each configured number of farmers it reports the throughput (full harvest cycles per second) and the
+ * latency of each phase of the cycle, along with the moves per second made inside the path while walking (walk and return phases).
+ * Configuration (-Dharvest.bench.*): farmers (comma separated list, default 5,20,100), cycles (measured cycles per
+ * number of farmers, default 200), warmup (cycles run before measuring, default 20), steps (maximum steps in the path,
+ * default 2), cobs (corn cobs collected by each farmer, default 1), timeout (timeout of the harvest runs in ms, default 0),
+ * delay (maximum response delay of the monitors in ms, default 0), lanes (collection lanes of the granary, default one per farmer) and bays (storing bays of the storehouse,
+ * default one per farmer). The path length and mode (-Dharvest.path.concurrent) are the ones of the Farm Infrastructure and
+ * the farmers' threads follow -Dharvest.farmer.threads. The random choices of the monitors derive from -Dharvest.seed
+ * (random by default), so the choices of each farmer can be replayed; the interleaving of the threads cannot.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public class MonitorBenchmark {
+
+    /**
+     * Names of the measured phases of a harvest cycle.
+     */
+    private static final String[] PHASES = {"prepare", "walk", "collect", "return"};
+
+    /**
+     * Farm Infrastructure controls that discard every update and only count the messages that would be sent to the CC.
+     */
+    private static class BenchmarkControls extends NoOpFarmView implements UiAndMainControlsFI {
+
+        /**
+         * Number of messages that would have been sent to the Control Center.
+         */
+        private final AtomicLong messages = new AtomicLong();
+        /**
+         * Number of moves made by the farmers inside the path.
+         */
+        private final AtomicLong pathSteps = new AtomicLong();
+
+        @Override
+        public void sendMessage(Message message) {
+            this.messages.incrementAndGet();
+            if (message.getType() == MessageType.PRESENT_IN_PATH) {
+                this.pathSteps.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void closeSocketClient() {
+        }
+    }
+
+    /**
+     * Number of farmers of the run.
+     */
+    private final int farmers;
+    /**
+     * Controls given to the monitors.
+     */
+    private final BenchmarkControls controls = new BenchmarkControls();
+    /**
+     * Instance of the metadata used for all farm areas.
+     */
+    private final MonitorMetadata metadata;
+    /**
+     * Instance of the storehouse area.
+     */
+    private final Storehouse storeHouse;
+    /**
+     * Instance of the standing area.
+     */
+    private final Standing standing;
+    /**
+     * Instance of the path area.
+     */
+    private final Path path;
+    /**
+     * Instance of the granary area.
+     */
+    private final Granary granary;
+    /**
+     * Auxiliary array containing the farmer instances.
+     */
+    private final Farmer[] farmerTeam;
+    /**
+     * Number of moves made by the farmers inside the path during the measured cycles.
+     */
+    private long measuredPathSteps;
+
+    /**
+     * Class constructor. Creates the monitors and the farmers of a run, without starting them.
+     * @param farmers number of farmers of the run.
+     * @param maxDelay maximum response delay of the monitors (in ms).
+     * @param lanes number of collection lanes of the granary.
+     * @param bays number of storing bays of the storehouse.
+     * @param seed seed of the run.
+     */
+    public MonitorBenchmark(int farmers, int maxDelay, int lanes, int bays, long seed) {
+        this.farmers = farmers;
+        this.metadata = new MonitorMetadata(farmers, maxDelay, seed);
+        this.storeHouse = new Storehouse(this.controls, this.metadata, bays);
+        this.standing = new Standing(this.controls, this.metadata);
+        this.path = new Path(this.controls, this.metadata, FarmEngine.pathSize, farmers, FarmEngine.concurrentPath);
+        this.granary = new Granary(this.controls, this.metadata, lanes,
+                new CornCobStock(FarmEngine.granaryCornCobs, FarmEngine.granaryRegrowth));
+        this.farmerTeam = new Farmer[farmers];
+        for (int i = 0; i < farmers; i++) {
+            this.farmerTeam[i] = new Farmer(i + 1, this.storeHouse, this.standing, this.path, this.granary);
+        }
+    }
+
+    /**
+     * Runs the warmup and the measured harvest cycles, ending the simulation at the end.
+     * @param warmup number of cycles run before measuring.
+     * @param cycles number of measured cycles.
+     * @param steps maximum number of steps of the farmers in the path.
+     * @param cobs number of corn cobs collected by each farmer.
+     * @param timeout timeout of the harvest runs (in ms).
+     * @return the duration (in ns) of each phase of each measured cycle, indexed by phase and then by cycle.
+     * @throws StopHarvestException if the harvest is stopped (never expected).
+     * @throws EndSimulationException if the simulation ends before the last cycle (never expected).
+     */
+    public long[][] run(int warmup, int cycles, int steps, int cobs, int timeout) throws StopHarvestException, EndSimulationException {
+        for (Farmer f : this.farmerTeam) {
+            f.start();
+        }
+        this.storeHouse.waitAllFarmersReady(0);
+        long[][] durations = new long[PHASES.length][cycles];
+        long[] phase = new long[PHASES.length];
+        long warmupPathSteps = 0;
+        for (int c = 0; c < warmup + cycles; c++) {
+            if (c == warmup) {
+                warmupPathSteps = this.controls.pathSteps.get();
+            }
+            this.cycle(steps, cobs, timeout, phase);
+            if (c >= warmup) {
+                for (int p = 0; p < PHASES.length; p++) {
+                    durations[p][c - warmup] = phase[p];
+                }
+            }
+        }
+        this.measuredPathSteps = this.controls.pathSteps.get() - warmupPathSteps;
+        this.storeHouse.control(0, "endSimulation");
+        this.standing.control(0, "endSimulation");
+        this.path.control(0, "endSimulation");
+        this.granary.control(0, "endSimulation");
+        for (Farmer f : this.farmerTeam) {
+            try {
+                f.join();
+            } catch (InterruptedException ex) {
+                Logger.getLogger(MonitorBenchmark.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+        return durations;
+    }
+
+    /**
+     * Orders one full harvest cycle, in the same sequence as the Control Center Proxy.
+     * @param steps maximum number of steps of the farmers in the path.
+     * @param cobs number of corn cobs collected by each farmer.
+     * @param timeout timeout of the harvest run (in ms).
+     * @param phase array filled with the duration (in ns) of each phase.
+     * @throws StopHarvestException if the harvest is stopped (never expected).
+     * @throws EndSimulationException if the simulation ends (never expected).
+     */
+    private void cycle(int steps, int cobs, int timeout, long[] phase) throws StopHarvestException, EndSimulationException {
+        long start = System.nanoTime();
+        this.storeHouse.sendSelectionAndPrepareOrder(0, this.farmers, cobs, steps, timeout);
+        this.standing.waitForAllFarmers(0);
+        long prepared = System.nanoTime();
+        this.standing.sendStartOrder(0);
+        this.granary.waitAllFarmersReadyToCollect(0);
+        long walked = System.nanoTime();
+        this.granary.sendCollectOrder(0);
+        this.granary.waitAllFarmersCollect(0);
+        long collected = System.nanoTime();
+        this.granary.sendReturnOrder(0);
+        this.storeHouse.waitAllFarmersReady(0);
+        long returned = System.nanoTime();
+        phase[0] = prepared - start;
+        phase[1] = walked - prepared;
+        phase[2] = collected - walked;
+        phase[3] = returned - collected;
+    }
+
+    /**
+     * Main function running the benchmark for every configured number of farmers.
+     * The monitors' log lines are discarded while the benchmark runs.
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        int cycles = Configuration.getInt("bench.cycles", 200);
+        int warmup = Configuration.getInt("bench.warmup", 20);
+        int steps = Configuration.getInt("bench.steps", 2);
+        int cobs = Configuration.getInt("bench.cobs", 1);
+        int timeout = Configuration.getInt("bench.timeout", 0);
+        int delay = Configuration.getInt("bench.delay", 0);
+        int lanes = Configuration.getInt("bench.lanes", 0);
+        int bays = Configuration.getInt("bench.bays", 0);
+        String[] farmerCounts = Configuration.getString("bench.farmers", "5,20,100").split(",");
+        long seed = Configuration.getLong("seed", System.nanoTime());
+
+        PrintStream report = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+        report.printf("Monitor benchmark: %d warmup + %d measured cycles, path of %d, up to %d steps, %d cobs per farmer, %d ms timeout, %d ms max delay, %s threads, seed %d%n",
+                warmup, cycles, FarmEngine.pathSize, steps, cobs, timeout, delay, Farmer.getThreadMode(), seed);
+        report.printf("%8s %12s %10s %12s", "farmers", "cycles/s", "msgs/cycle", "path steps/s");
+        for (String name : PHASES) {
+            report.printf(" %24s", name + " avg/p50/p99 (ms)");
+        }
+        report.println();
+        try {
+            for (String count : farmerCounts) {
+                int farmers = Integer.parseInt(count.trim());
+                MonitorBenchmark benchmark = new MonitorBenchmark(farmers, delay, lanes > 0 ? lanes : farmers,
+                        bays > 0 ? bays : farmers, seed);
+                long start = System.nanoTime();
+                long[][] durations = benchmark.run(warmup, cycles, steps, cobs, timeout);
+                long measured = 0;
+                for (long[] phase : durations) {
+                    for (long duration : phase) {
+                        measured += duration;
+                    }
+                }
+                long walking = 0;
+                for (long duration : durations[1]) {
+                    walking += duration;
+                }
+                for (long duration : durations[3]) {
+                    walking += duration;
+                }
+                report.printf("%8d %12.1f %10d %12.0f", benchmark.farmers, cycles / (measured / 1e9),
+                        benchmark.controls.messages.get() / (warmup + cycles), benchmark.measuredPathSteps / (walking / 1e9));
+                for (long[] phase : durations) {
+                    report.printf(" %24s", summarize(phase));
+                }
+                report.printf("   (%.1f s)%n", (System.nanoTime() - start) / 1e9);
+            }
+        } catch (StopHarvestException | EndSimulationException ex) {
+            Logger.getLogger(MonitorBenchmark.class.getName()).log(Level.SEVERE, null, ex);
+        } finally {
+            System.setOut(report);
+        }
+    }
+
+    /**
+     * Summarizes the durations of a phase.
+     * @param durations duration (in ns) of the phase in each measured cycle.
+     * @return string containing the average, median and 99th percentile (in ms) of the durations.
+     */
+    private static String summarize(long[] durations) {
+        if (durations.length == 0) {
+            return "-";
+        }
+        long[] sorted = durations.clone();
+        Arrays.sort(sorted);
+        double total = 0;
+        for (long duration : sorted) {
+            total += duration;
+        }
+        return String.format("%.3f/%.3f/%.3f", total / sorted.length / 1e6, sorted[sorted.length / 2] / 1e6,
+                sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * 0.99) - 1)] / 1e6);
+    }
+}
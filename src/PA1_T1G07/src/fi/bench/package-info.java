@@ -0,0 +1,5 @@
+/**
+ * Provides the benchmark of the farm-area monitors, run with: java fi.bench.MonitorBenchmark
+ * The monitors are driven directly, without sockets nor interface, so that every change to their concurrency can be measured.
+ */
+package fi.bench;
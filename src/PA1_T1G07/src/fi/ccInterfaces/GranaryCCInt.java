@@ -8,9 +8,10 @@ import fi.utils.StopHarvestException;
  * @author Filipe Pires (85122) and João Alegria (85048)
  */
 public interface GranaryCCInt {
-    public void control(String action);
-    public void waitAllFarmersReadyToCollect() throws StopHarvestException, EndSimulationException;
-    public void sendCollectOrder();
-    public void waitAllFarmersCollect() throws StopHarvestException, EndSimulationException;
-    public void sendReturnOrder();
+    public void control(int team, String action);
+    public void waitAllFarmersReadyToCollect(int team) throws StopHarvestException, EndSimulationException;
+    public void sendCollectOrder(int team);
+    public void waitAllFarmersCollect(int team) throws StopHarvestException, EndSimulationException;
+    public void sendReturnOrder(int team);
+    public long getCornCobs();
 }
\ No newline at end of file
@@ -7,5 +7,5 @@ import fi.farmerInterfaces.*;
  * @author Filipe Pires (85122) and João Alegria (85048)
  */
 public interface PathCCInt {
-    public void control(String action);
+    public void control(int team, String action);
 }
@@ -9,7 +9,7 @@ import fi.farmerInterfaces.*;
  * @author Filipe Pires (85122) and João Alegria (85048)
  */
 public interface StandingCCInt {
-    public void control(String action);
-    public void sendStartOrder();
-    public void waitForAllFarmers() throws StopHarvestException, EndSimulationException;
+    public void control(int team, String action);
+    public void sendStartOrder(int team);
+    public void waitForAllFarmers(int team) throws StopHarvestException, EndSimulationException;
 }
@@ -3,13 +3,17 @@ package fi.ccInterfaces;
 import fi.utils.EndSimulationException;
 import fi.utils.StopHarvestException;
 import fi.farmerInterfaces.*;
+import java.util.function.BooleanSupplier;
 
 /**
  * Interface defining the service the Storehouse monitor should provide to the Control Center.
  * @author Filipe Pires (85122) and João Alegria (85048)
  */
 public interface StorehouseCCInt {
-    public void control(String action);
-    public void sendSelectionAndPrepareOrder(int numberOfFarmers, int numberOfCornCobs, int maxNumberOfSteps, int timeout);
-    public void waitAllFarmersReady() throws StopHarvestException, EndSimulationException;
+    public void control(int team, String action);
+    public void sendSelectionAndPrepareOrder(int team, int numberOfFarmers, int numberOfCornCobs, int maxNumberOfSteps, int timeout);
+    public boolean sendSelectionAndPrepareOrder(int team, int numberOfFarmers, int numberOfCornCobs, int maxNumberOfSteps, int timeout, BooleanSupplier cancelled);
+    public void waitAllFarmersReady(int team) throws StopHarvestException, EndSimulationException;
+    public long getCornCobs();
+    public long getCornCobs(int team);
 }
@@ -10,6 +10,6 @@ import fi.utils.StopHarvestException;
 public interface GranaryFarmerInt {
     public void farmerEnter(int farmerId) throws StopHarvestException, EndSimulationException;
     public void farmerWaitCollectOrder(int farmerId) throws StopHarvestException, EndSimulationException;
-    public void farmerCollect(int farmerId) throws StopHarvestException, EndSimulationException;
-    public void farmerWaitReturnOrder(int farmerId) throws StopHarvestException, EndSimulationException;
+    public int farmerCollect(int farmerId) throws StopHarvestException, EndSimulationException;
+    public void farmerWaitReturnOrder(int farmerId, int cornCobs) throws StopHarvestException, EndSimulationException;
 }
@@ -8,7 +8,7 @@ import fi.utils.StopHarvestException;
  * @author Filipe Pires (85122) and João Alegria (85048)
  */
 public interface StorehouseFarmerInt {
-    public void farmerStore(int farmerId);
+    public void farmerStore(int farmerId, int cornCobs);
     public void farmerEnter(int farmerId) throws StopHarvestException, EndSimulationException;
     public void farmerWaitPrepareOrder(int farmerId) throws StopHarvestException, EndSimulationException;
 }
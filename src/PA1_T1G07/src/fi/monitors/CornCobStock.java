@@ -0,0 +1,114 @@
+package fi.monitors;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Stock of corn cobs of the granary, kept in a 64-bit atomic counter so that it can be reserved without holding any lock.
+ * A reservation is a compare-and-set on the corn cobs left, so concurrent reservations never take more than the stock holds.
+ * The stock may regrow at a constant rate (corn cobs per second) up to its initial size. The regrowth is applied lazily,
+ * whenever the stock is read or reserved, from the time elapsed since the last regrowth.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public final class CornCobStock {
+
+    /**
+     * Number of ns in a second.
+     */
+    private static final long NANOSPERSECOND = 1000000000L;
+
+    /**
+     * Corn cobs left.
+     */
+    private final AtomicLong cornCobs;
+    /**
+     * Largest number of corn cobs the stock regrows to (its initial size).
+     */
+    private final long capacity;
+    /**
+     * Time (in ns) it takes one corn cob to regrow (0 if the stock does not regrow).
+     */
+    private final long nanosPerCob;
+    /**
+     * Instant (in ns) up to which the regrowth was applied.
+     */
+    private final AtomicLong regrownUntil;
+    /**
+     * Clock (in ns) driving the regrowth.
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Class constructor of a stock regrowing in real time.
+     * @param cornCobs number of corn cobs initially in the stock.
+     * @param regrowth number of corn cobs regrowing per second (0 for none).
+     */
+    public CornCobStock(long cornCobs, long regrowth) {
+        this(cornCobs, regrowth, System::nanoTime);
+    }
+
+    /**
+     * Class constructor.
+     * @param cornCobs number of corn cobs initially in the stock.
+     * @param regrowth number of corn cobs regrowing per second (0 for none).
+     * @param clock clock (in ns) driving the regrowth, such as the virtual clock of the discrete-event simulation.
+     */
+    public CornCobStock(long cornCobs, long regrowth, LongSupplier clock) {
+        this.cornCobs = new AtomicLong(Math.max(0, cornCobs));
+        this.capacity = Math.max(0, cornCobs);
+        this.nanosPerCob = regrowth > 0 ? Math.max(1, NANOSPERSECOND / regrowth) : 0;
+        this.clock = clock;
+        this.regrownUntil = new AtomicLong(clock.getAsLong());
+    }
+
+    /**
+     * Reserves corn cobs from the stock.
+     * @param wanted number of corn cobs wanted.
+     * @return the number of corn cobs reserved (fewer than wanted if the stock is running out).
+     */
+    public long reserve(long wanted) {
+        this.regrow();
+        while (true) {
+            long left = this.cornCobs.get();
+            long cobs = Math.max(0, Math.min(wanted, left));
+            if (cobs == 0 || this.cornCobs.compareAndSet(left, left - cobs)) {
+                return cobs;
+            }
+        }
+    }
+
+    /**
+     * Puts reserved corn cobs back in the stock, never above its initial size (the stock may have regrown meanwhile).
+     * @param cobs number of corn cobs put back.
+     */
+    public void putBack(long cobs) {
+        if (cobs > 0) {
+            this.cornCobs.updateAndGet(left -> left >= this.capacity ? left : Math.min(this.capacity, left + cobs));
+        }
+    }
+
+    /**
+     * Retrieves the number of corn cobs left.
+     * @return the number of corn cobs in the stock.
+     */
+    public long get() {
+        this.regrow();
+        return this.cornCobs.get();
+    }
+
+    /**
+     * Adds the corn cobs regrown since the last regrowth. When several threads race to regrow, only the one advancing the
+     * regrowth instant adds the corn cobs.
+     */
+    private void regrow() {
+        if (this.nanosPerCob == 0) {
+            return;
+        }
+        long until = this.regrownUntil.get();
+        long grown = (this.clock.getAsLong() - until) / this.nanosPerCob;
+        if (grown <= 0 || !this.regrownUntil.compareAndSet(until, until + grown * this.nanosPerCob)) {
+            return;
+        }
+        this.cornCobs.updateAndGet(left -> left >= this.capacity ? left : Math.min(this.capacity, left + grown));
+    }
+}
@@ -1,50 +1,75 @@
 package fi.monitors;
 
+import common.Message;
+import common.MessageType;
 import fi.utils.EndSimulationException;
 import fi.utils.MonitorMetadata;
+import fi.utils.MonitorMetrics;
 import fi.utils.StopHarvestException;
 import fi.ccInterfaces.GranaryCCInt;
 import fi.farmerInterfaces.GranaryFarmerInt;
-import fi.workers.Farmer;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import fi.UiAndMainControlsFI;
 
 /**
  * Class for the monitor representing the Granary Sector of the farm.
+ * Farmers collect the corn cobs in a configurable number of collection lanes, shared by all teams, each serving one farmer
+ * at a time. A farmer holds the monitor's lock only to take and leave a lane: the collection itself happens outside it,
+ * so the farmers in different lanes collect concurrently. The corn cobs left in the granary are a 64-bit stock reserved
+ * with a compare-and-set (CornCobStock), so concurrent lanes never take more corn cobs than the granary holds. Each farmer
+ * collects at most its carrying capacity.
  * @author Filipe Pires (85122) and João Alegria (85048)
  */
 public class Granary implements GranaryFarmerInt, GranaryCCInt{
     
+    /**
+     * State of a team of farmers inside the Granary. Each team goes through its harvest runs independently.
+     */
+    private class Team {
+        
+        private final MonitorMetadata metadata;
+        private final PhaseBarrier allInGranary = new PhaseBarrier(rl);
+        private final PhaseBarrier allCollected = new PhaseBarrier(rl);
+        private final Condition waitCollectOrder = rl.newCondition();
+        private final Condition waitReturnOrder = rl.newCondition();
+        
+        private int farmersInGranary=0;
+        private int farmersCollected=0;
+        private boolean readyToCollect=false;
+        private boolean readyToReturn=false;
+        private boolean stopHarvest=false;
+        private boolean proxyInMonitor=false;
+        private int entitiesToStop=0;
+        
+        /**
+         * Team constructor.
+         * @param metadata MonitorMetadata instance containing the parameters to the team's current harvest run
+         */
+        private Team(MonitorMetadata metadata) {
+            this.metadata=metadata;
+        }
+    }
+    
     //Monitor variables
     
     private UiAndMainControlsFI fi;
     private MonitorMetadata metadata;
     
-    private ReentrantLock rl = new ReentrantLock();
-    private Condition allInGranary = rl.newCondition();
-    private Condition allCollected = rl.newCondition();
-    private Condition waitCollectOrder = rl.newCondition();
-    private Condition waitReturnOrder = rl.newCondition();
+    private MonitorLock rl = new MonitorLock(new MonitorMetrics(3, "Granary"));
     
-    private Map<Integer, Integer> positions;
-    private List<Integer> availablePosition;
+    private int[] positions;
+    private SlotAllocator availablePosition;
+    private SlotAllocator availableLane;
+    private Condition laneFree = rl.newCondition();
+    private SplittableRandom[] random;
+    private Team[] teams;
     
-    private int farmersInGranary=0;
-    private int farmersCollected=0;
-    private boolean readyToCollect=false;
-    private boolean readyToReturn=false;
-    private boolean stopHarvest=false;
     private boolean endSimulation=false;
-    private boolean proxyInMonitor=false;
-    private int entitiesToStop=0;
-    private int maxCornCobs=50;
+    private final CornCobStock cornCobs;
 
     //Constructors
     
@@ -52,14 +77,21 @@ public class Granary implements GranaryFarmerInt, GranaryCCInt{
      * Granary Area monitor constructor.
      * @param fi UiAndMainControlsFI instance enabling the access to the farm infrastructure ui and websocket client
      * @param metadata MonitorMetadata instance containing the parameters to the current harvest run
+     * @param lanes int containing the number of collection lanes
+     * @param cornCobs CornCobStock instance holding the corn cobs initially in the granary
      */
-    public Granary(UiAndMainControlsFI fi, MonitorMetadata metadata) {
+    public Granary(UiAndMainControlsFI fi, MonitorMetadata metadata, int lanes, CornCobStock cornCobs) {
         this.fi = fi;
         this.metadata=metadata;
-        positions=new HashMap<Integer, Integer>();
-        availablePosition=new ArrayList<Integer>();
-        for(int i=0; i<this.metadata.MAXNUMBERFARMERS;i++){
-            availablePosition.add(i);
+        this.cornCobs=cornCobs;
+        positions=new int[this.metadata.MAXNUMBERFARMERS+1];
+        Arrays.fill(positions, -1);
+        availablePosition=new SlotAllocator(this.metadata.MAXNUMBERFARMERS);
+        availableLane=new SlotAllocator(Math.max(1, lanes));
+        random=this.metadata.newRandoms("Granary");
+        teams=new Team[this.metadata.NUMBERTEAMS];
+        for(int i=0; i<teams.length; i++){
+            teams[i]=new Team(this.metadata.team(i));
         }
     }
     
@@ -67,39 +99,32 @@ public class Granary implements GranaryFarmerInt, GranaryCCInt{
     
     /**
      * Registers the entry of a farmer in the granary area.
-     * Farmers must wait for all farmers the be inside the granary area.
+     * Farmers must wait for all selected farmers of their team the be inside the granary area.
      * @param farmerId int containing the farmer identifier
      * @throws fi.utils.StopHarvestException when the harvest run has stopped
      * @throws fi.utils.EndSimulationException when the simulation has ended
      */
     @Override
     public void farmerEnter(int farmerId) throws StopHarvestException, EndSimulationException{
+        this.waitRandomDelay(farmerId);
         rl.lock();
         try {
-            this.waitRandomDelay();
-            farmersInGranary++;
+            Team team=this.teamOf(farmerId);
+            team.farmersInGranary++;
             this.selectSpot(farmerId);
             System.out.println("[Granary] Farmer " + farmerId + " entered.");
-            while(farmersInGranary<metadata.NUMBERFARMERS){
-                allInGranary.await();
+            int phase=team.allInGranary.arrive(team.metadata.NUMBERFARMERS);
+            while(!team.allInGranary.hasAdvanced(phase)){
+                team.allInGranary.await();
                 
-                if(this.stopHarvest){
-                    entitiesToStop--;
-                    farmersInGranary--;
-                    this.availablePosition.add(this.positions.get(farmerId));
-                    this.positions.remove(farmerId);
-                    if(entitiesToStop==0){
-                        readyToReturn=false;
-                        readyToCollect=false;
-                        stopHarvest=false;
-                    }
-                    throw new StopHarvestException();
+                if(team.stopHarvest){
+                    team.allInGranary.depart(phase);
+                    this.stop(team, farmerId, false, 0);
                 }
                 if(this.endSimulation){
                     throw new EndSimulationException();
                 }
             }
-            allInGranary.signalAll();
         } catch (InterruptedException ex) {
             Logger.getLogger(Granary.class.getName()).log(Level.SEVERE, null, ex);
         }finally{
@@ -108,7 +133,7 @@ public class Granary implements GranaryFarmerInt, GranaryCCInt{
     }
 
     /**
-     * Farmers must wait for a collect order given by the Control Center.
+     * Farmers must wait for a collect order given by the Control Center to their team.
      * Farmers must execute this method after entering in the granary area.
      * @param farmerId int containing the farmer identifier
      * @throws fi.utils.StopHarvestException when the harvest run has stopped
@@ -116,23 +141,15 @@ public class Granary implements GranaryFarmerInt, GranaryCCInt{
      */
     @Override
     public void farmerWaitCollectOrder(int farmerId) throws StopHarvestException, EndSimulationException{
+        this.waitRandomDelay(farmerId);
         rl.lock();
         try{
-            this.waitRandomDelay();
-            while(!this.readyToCollect){
-                this.waitCollectOrder.await();
+            Team team=this.teamOf(farmerId);
+            while(!team.readyToCollect){
+                team.waitCollectOrder.await();
                 
-                if(this.stopHarvest){
-                    entitiesToStop--;
-                    farmersInGranary--;
-                    this.availablePosition.add(this.positions.get(farmerId));
-                    this.positions.remove(farmerId);
-                    if(entitiesToStop==0){
-                        readyToReturn=false;
-                        readyToCollect=false;
-                        stopHarvest=false;
-                    }
-                    throw new StopHarvestException();
+                if(team.stopHarvest){
+                    this.stop(team, farmerId, false, 0);
                 }
                 if(this.endSimulation){
                     throw new EndSimulationException();
@@ -150,57 +167,80 @@ public class Granary implements GranaryFarmerInt, GranaryCCInt{
     /**
      * Farmers when given the collect order must collect the number of cobs specified by the user, or less in the case the granary doesn't 
      * have that much corn cobs.
-     * This task is done by the farmers one at a time.
-     * Farmers must leave their position and go closer to the cobs location. After collecting, each farmer hold the number of cobs 
-     * collected and must return to a empty space.
-     * Farmers must wait for all the farmers to collect.
+     * Farmers collect concurrently, each in one of the granary's collection lanes, so as many farmers as there are lanes
+     * collect at the same time. The granary's corn cobs are shared by all teams.
+     * Farmers must leave their position and take a free collection lane, waiting for one if all are busy. After collecting,
+     * each farmer hold the number of cobs collected and must return to a empty space.
+     * Farmers must wait for all the farmers of their team to collect.
+     * If the harvest run stops while waiting, the collected corn cobs are put back in the granary.
+     * Collecting takes the timeout of the team's harvest run, which the farmer spends in his lane outside the monitor's lock.
      * @param farmerId int containing the farmer identifier
+     * @return int containing the number of corn cobs collected by the farmer
      * @throws fi.utils.StopHarvestException when the harvest run has stopped
      * @throws fi.utils.EndSimulationException when the simulation has ended
      */
     @Override
-    public void farmerCollect(int farmerId) throws StopHarvestException, EndSimulationException{
+    public int farmerCollect(int farmerId) throws StopHarvestException, EndSimulationException{
+        int lane=-1;
+        this.waitRandomDelay(farmerId);
         rl.lock();
         try{
-            this.waitRandomDelay();
-            this.availablePosition.add(this.positions.get(farmerId));
-            this.positions.remove(farmerId);
-            this.fi.presentCollectingFarmer(farmerId);
-            this.fi.sendMessage("presentInCollecting;"+farmerId);
-            if(this.maxCornCobs-this.metadata.NUMBERCORNCOBS>=0){
-                ((Farmer)Thread.currentThread()).setCornCobs(this.metadata.NUMBERCORNCOBS);
-                this.maxCornCobs-=this.metadata.NUMBERCORNCOBS;
-            }else if(this.maxCornCobs>0 && this.maxCornCobs<this.metadata.NUMBERCORNCOBS){
-                ((Farmer)Thread.currentThread()).setCornCobs(this.maxCornCobs);
-                this.maxCornCobs-=this.maxCornCobs;
+            Team team=this.teamOf(farmerId);
+            while(this.availableLane.available()==0){
+                this.laneFree.await();
+                
+                if(team.stopHarvest){
+                    this.stop(team, farmerId, false, 0);
+                }
+                if(this.endSimulation){
+                    throw new EndSimulationException();
+                }
             }
-            this.fi.updateGranaryCornCobs(this.maxCornCobs);
-            this.fi.sendMessage("updateGranaryCobs;"+this.maxCornCobs);
-            this.farmersCollected++;
-            this.waitTimeout();
+            lane=this.availableLane.acquire(this.random[farmerId]);
+            this.availablePosition.release(this.positions[farmerId]);
+            this.positions[farmerId]=-1;
+            this.fi.presentCollectingFarmer(farmerId, lane);
+            this.fi.sendMessage(new Message(MessageType.PRESENT_IN_COLLECTING, farmerId, lane));
+        }
+        catch (InterruptedException ex) {
+            Logger.getLogger(Granary.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        finally{
+            rl.unlock();
+        }
+        if(lane<0){
+            return 0;
+        }
+        MonitorMetadata teamMetadata=this.teamOf(farmerId).metadata;
+        int cobs=(int)this.cornCobs.reserve(Math.min(teamMetadata.NUMBERCORNCOBS, teamMetadata.FARMERCAPACITY));
+        this.waitTimeout(this.teamOf(farmerId));
+        rl.lock();
+        try{
+            Team team=this.teamOf(farmerId);
+            this.availableLane.release(lane);
+            this.laneFree.signal();
+            this.presentCornCobs();
             this.selectSpot(farmerId);
-            while(this.farmersCollected<metadata.NUMBERFARMERS){
-                this.allCollected.await();
+            team.farmersCollected++;
+            if(team.stopHarvest){
+                this.stop(team, farmerId, true, cobs);
+            }
+            if(this.endSimulation){
+                throw new EndSimulationException();
+            }
+            int phase=team.allCollected.arrive(team.metadata.NUMBERFARMERS);
+            while(!team.allCollected.hasAdvanced(phase)){
+                team.allCollected.await();
                 
-                if(this.stopHarvest){
-                    entitiesToStop--;
-                    farmersInGranary--;
-                    farmersCollected--;
-                    this.availablePosition.add(this.positions.get(farmerId));
-                    this.positions.remove(farmerId);
-                    if(entitiesToStop==0){
-                        readyToReturn=false;
-                        readyToCollect=false;
-                        stopHarvest=false;
-                    }
-                    throw new StopHarvestException();
+                if(team.stopHarvest){
+                    team.allCollected.depart(phase);
+                    this.stop(team, farmerId, true, cobs);
                 }
                 if(this.endSimulation){
                     throw new EndSimulationException();
                 }
             }
-            this.allCollected.signalAll();
-            this.readyToCollect=false;
+            team.readyToCollect=false;
         }
         catch (InterruptedException ex) {
             Logger.getLogger(Granary.class.getName()).log(Level.SEVERE, null, ex);
@@ -208,51 +248,40 @@ public class Granary implements GranaryFarmerInt, GranaryCCInt{
         finally{
             rl.unlock();
         }
+        return cobs;
     }
 
     /**
-     * Farmers must wait for a return order given by the Control Center.
+     * Farmers must wait for a return order given by the Control Center to their team.
      * Farmers must execute this method after collecting the corn cobs.
+     * If the harvest run stops while waiting, the corn cobs carried by the farmer are put back in the granary.
      * @param farmerId int containing the farmer identifier
+     * @param cornCobs int containing the number of corn cobs carried by the farmer
      * @throws fi.utils.StopHarvestException when the harvest run has stopped
      * @throws fi.utils.EndSimulationException when the simulation has ended
      */
     @Override
-    public void farmerWaitReturnOrder(int farmerId) throws StopHarvestException, EndSimulationException{
+    public void farmerWaitReturnOrder(int farmerId, int cornCobs) throws StopHarvestException, EndSimulationException{
+        this.waitRandomDelay(farmerId);
         rl.lock();
         try{
-            this.waitRandomDelay();
-            while(!this.readyToReturn){
-                this.waitReturnOrder.await();
+            Team team=this.teamOf(farmerId);
+            while(!team.readyToReturn){
+                team.waitReturnOrder.await();
                 
-                if(this.stopHarvest){
-                    entitiesToStop--;
-                    farmersInGranary--;
-                    farmersCollected--;
-                    int cobs=((Farmer)Thread.currentThread()).getCornCobs();
-                    this.maxCornCobs+=cobs;
-                    this.fi.updateGranaryCornCobs(this.maxCornCobs);
-                    this.fi.sendMessage("updateGranaryCobs;"+this.maxCornCobs);
-                    ((Farmer)Thread.currentThread()).setCornCobs(0);
-                    this.availablePosition.add(this.positions.get(farmerId));
-                    this.positions.remove(farmerId);
-                    if(entitiesToStop==0){
-                        readyToReturn=false;
-                        readyToCollect=false;
-                        stopHarvest=false;
-                    }
-                    throw new StopHarvestException();
+                if(team.stopHarvest){
+                    this.stop(team, farmerId, true, cornCobs);
                 }
                 if(this.endSimulation){
                     throw new EndSimulationException();
                 }
             }
-            this.availablePosition.add(this.positions.get(farmerId));
-            this.positions.remove(farmerId);
-            this.farmersCollected--;
-            this.farmersInGranary--;
-            if(this.farmersInGranary==0){
-                this.readyToReturn=false;
+            this.availablePosition.release(this.positions[farmerId]);
+            this.positions[farmerId]=-1;
+            team.farmersCollected--;
+            team.farmersInGranary--;
+            if(team.farmersInGranary==0){
+                team.readyToReturn=false;
             }
         }
         catch (InterruptedException ex) {
@@ -266,34 +295,30 @@ public class Granary implements GranaryFarmerInt, GranaryCCInt{
     //Methods executed by Message Processor
 
     /**
-     * Control Center Proxy must wait for all farmers to enter in the granary to notify the Control Center.
+     * Control Center Proxy must wait for all selected farmers of a team to enter in the granary to notify the Control Center.
+     * @param team int containing the team identifier
      * @throws fi.utils.StopHarvestException when the harvest run has stopped
      * @throws fi.utils.EndSimulationException when the simulation has ended
      */
     @Override
-    public void waitAllFarmersReadyToCollect() throws StopHarvestException, EndSimulationException{
+    public void waitAllFarmersReadyToCollect(int team) throws StopHarvestException, EndSimulationException{
+        this.waitRandomDelay(this.metadata.controllerOf(team));
         rl.lock();
         try{
-            this.waitRandomDelay();
-            this.proxyInMonitor=true;
-            while(this.farmersInGranary<metadata.NUMBERFARMERS){
-                this.allInGranary.await();
+            Team t=this.teams[team];
+            t.proxyInMonitor=true;
+            while(t.farmersInGranary<t.metadata.NUMBERFARMERS){
+                t.allInGranary.await();
                 
-                if(this.stopHarvest){
-                    entitiesToStop--;
-                    this.proxyInMonitor=false;
-                    if(entitiesToStop==0){
-                        readyToReturn=false;
-                        readyToCollect=false;
-                        stopHarvest=false;
-                    }
-                    throw new StopHarvestException();
+                if(t.stopHarvest){
+                    t.proxyInMonitor=false;
+                    this.stop(t, 0, false, 0);
                 }
                 if(this.endSimulation){
                     throw new EndSimulationException();
                 }
             }
-            this.proxyInMonitor=false;
+            t.proxyInMonitor=false;
         }
         catch (InterruptedException ex) {
             Logger.getLogger(Granary.class.getName()).log(Level.SEVERE, null, ex);
@@ -304,15 +329,17 @@ public class Granary implements GranaryFarmerInt, GranaryCCInt{
     }
 
     /**
-     * Notifies all the farmers waiting for a collect order.
+     * Notifies all the farmers of a team waiting for a collect order.
+     * @param team int containing the team identifier
      */
     @Override
-    public void sendCollectOrder() {
+    public void sendCollectOrder(int team) {
+        this.waitRandomDelay(this.metadata.controllerOf(team));
         rl.lock();
         try{
-            this.waitRandomDelay();
-            this.readyToCollect=true;
-            this.waitCollectOrder.signalAll();
+            Team t=this.teams[team];
+            t.readyToCollect=true;
+            t.waitCollectOrder.signalAll();
         }
         finally{
             rl.unlock();
@@ -320,34 +347,30 @@ public class Granary implements GranaryFarmerInt, GranaryCCInt{
     }
 
     /**
-     * Control Center Proxy must wait for all farmers to collect the corn cobs to notify the Control Center.
+     * Control Center Proxy must wait for all selected farmers of a team to collect the corn cobs to notify the Control Center.
+     * @param team int containing the team identifier
      * @throws fi.utils.StopHarvestException when the harvest run has stopped
      * @throws fi.utils.EndSimulationException when the simulation has ended
      */
     @Override
-    public void waitAllFarmersCollect() throws StopHarvestException, EndSimulationException{
+    public void waitAllFarmersCollect(int team) throws StopHarvestException, EndSimulationException{
+        this.waitRandomDelay(this.metadata.controllerOf(team));
         rl.lock();
         try{
-            this.waitRandomDelay();
-            this.proxyInMonitor=true;
-            while(this.farmersCollected<metadata.NUMBERFARMERS){
-                this.allCollected.await();
+            Team t=this.teams[team];
+            t.proxyInMonitor=true;
+            while(t.farmersCollected<t.metadata.NUMBERFARMERS){
+                t.allCollected.await();
                 
-                if(this.stopHarvest){
-                    entitiesToStop--;
-                    this.proxyInMonitor=false;
-                    if(entitiesToStop==0){
-                        readyToReturn=false;
-                        readyToCollect=false;
-                        stopHarvest=false;
-                    }
-                    throw new StopHarvestException();
+                if(t.stopHarvest){
+                    t.proxyInMonitor=false;
+                    this.stop(t, 0, false, 0);
                 }
                 if(this.endSimulation){
                     throw new EndSimulationException();
                 }
             }
-            this.proxyInMonitor=false;
+            t.proxyInMonitor=false;
         }
         catch (InterruptedException ex) {
             Logger.getLogger(Granary.class.getName()).log(Level.SEVERE, null, ex);
@@ -358,15 +381,17 @@ public class Granary implements GranaryFarmerInt, GranaryCCInt{
     }
 
     /**
-     * Notifies all the farmers waiting for a return order.
+     * Notifies all the farmers of a team waiting for a return order.
+     * @param team int containing the team identifier
      */
     @Override
-    public void sendReturnOrder() {
+    public void sendReturnOrder(int team) {
+        this.waitRandomDelay(this.metadata.controllerOf(team));
         rl.lock();
         try{
-            this.waitRandomDelay();
-            this.readyToReturn=true;
-            this.waitReturnOrder.signalAll();
+            Team t=this.teams[team];
+            t.readyToReturn=true;
+            t.waitReturnOrder.signalAll();
         }
         finally{
             rl.unlock();
@@ -374,21 +399,24 @@ public class Granary implements GranaryFarmerInt, GranaryCCInt{
     }
 
     /**
-     * Notifies every entity in the monitor that either the harvest run has stopped or the simulation has ended. 
+     * Notifies every entity of a team in the monitor that either the team's harvest run has stopped or the simulation has ended.
+     * The end of the simulation applies to every team.
+     * @param team int containing the team identifier
      * @param action string containing the action to perform
      */
     @Override
-    public void control(String action) {
+    public void control(int team, String action) {
+        this.waitRandomDelay(this.metadata.controllerOf(team));
         rl.lock();
         try{
-            this.waitRandomDelay();
             switch(action){
                 case "stopHarvest":
-                    if(this.farmersInGranary!=0 || proxyInMonitor){
-                        this.stopHarvest=true;
-                        this.entitiesToStop=this.farmersInGranary;
-                        if(proxyInMonitor){
-                            this.entitiesToStop++;
+                    Team t=this.teams[team];
+                    if(t.farmersInGranary!=0 || t.proxyInMonitor){
+                        t.stopHarvest=true;
+                        t.entitiesToStop=t.farmersInGranary;
+                        if(t.proxyInMonitor){
+                            t.entitiesToStop++;
                         }
                     }
                     break;
@@ -397,10 +425,13 @@ public class Granary implements GranaryFarmerInt, GranaryCCInt{
                     break;
             }
 
-            this.allCollected.signalAll();
-            this.allInGranary.signalAll();
-            this.waitCollectOrder.signalAll();
-            this.waitReturnOrder.signalAll();
+            for(Team t : this.teams){
+                t.allCollected.wakeAll();
+                t.allInGranary.wakeAll();
+                t.waitCollectOrder.signalAll();
+                t.waitReturnOrder.signalAll();
+            }
+            this.laneFree.signalAll();
         }
         finally{
             rl.unlock();
@@ -409,26 +440,103 @@ public class Granary implements GranaryFarmerInt, GranaryCCInt{
     
     
     
+    /**
+     * Retrieves the number of corn cobs left in the granary.
+     * @return long containing the number of corn cobs in the granary
+     */
+    @Override
+    public long getCornCobs() {
+        return this.cornCobs.get();
+    }
+    
+    /**
+     * Retrieves the contention metrics of the granary monitor.
+     * They are read without holding the monitor's lock, so they may be slightly stale.
+     * @return MonitorMetrics instance of the monitor
+     */
+    public MonitorMetrics getMetrics() {
+        return this.rl.getMetrics();
+    }
+    
     //Aux Methods
     
+    /**
+     * Retrieves the team of a farmer.
+     * @param farmerId int containing the farmer identifier
+     * @return the state of the farmer's team
+     */
+    private Team teamOf(int farmerId){
+        return this.teams[this.metadata.teamOf(farmerId)];
+    }
+    
+    /**
+     * Removes an entity of a team from the monitor when the team's harvest run has stopped.
+     * @param team the state of the entity's team
+     * @param farmerId int containing the farmer identifier (0 for the Control Center Proxy)
+     * @param collected true if the farmer has already collected its corn cobs
+     * @param cobs int containing the number of corn cobs carried by the farmer, put back in the granary
+     * @throws fi.utils.StopHarvestException always, to stop the entity's current harvest run
+     */
+    private void stop(Team team, int farmerId, boolean collected, int cobs) throws StopHarvestException{
+        team.entitiesToStop--;
+        if(farmerId!=0){
+            team.farmersInGranary--;
+            if(collected){
+                team.farmersCollected--;
+                this.returnCornCobs(cobs);
+            }
+            this.availablePosition.release(this.positions[farmerId]);
+            this.positions[farmerId]=-1;
+        }
+        if(team.entitiesToStop==0){
+            team.readyToReturn=false;
+            team.readyToCollect=false;
+            team.stopHarvest=false;
+        }
+        throw new StopHarvestException();
+    }
+    
+    /**
+     * Puts corn cobs back in the granary, when a farmer holding them stops its harvest run.
+     * @param cobs int containing the number of corn cobs to put back
+     */
+    private void returnCornCobs(int cobs){
+        this.cornCobs.putBack(cobs);
+        this.presentCornCobs();
+    }
+    
+    /**
+     * Presents the corn cobs left in the granary.
+     * Must be called while holding the monitor's lock, so that the presented values follow the order of the reservations.
+     */
+    private void presentCornCobs(){
+        long left=this.cornCobs.get();
+        this.fi.updateGranaryCornCobs(left);
+        this.fi.sendMessage(new Message(MessageType.UPDATE_GRANARY_COBS, left));
+    }
+    
     /**
      * Selects a spot in the Granary position for a farmer to settle on.
      * @param farmerId int containing the farmer identifier
      */
     private void selectSpot(int farmerId){
-        int randomPosition=(int)(Math.random()*this.availablePosition.size());
-        this.positions.put(farmerId, availablePosition.get(randomPosition));
-        this.availablePosition.remove(randomPosition);
-        this.fi.presentFarmerInGranary(farmerId,positions.get(farmerId));
-        this.fi.sendMessage("presentInGranary;"+farmerId+";"+positions.get(farmerId));
+        this.positions[farmerId]=this.availablePosition.acquire(this.random[farmerId]);
+        this.fi.presentFarmerInGranary(farmerId,positions[farmerId]);
+        this.fi.sendMessage(new Message(MessageType.PRESENT_IN_GRANARY, farmerId, positions[farmerId]));
     }
     
     /**
      * Auxiliary function created to make each thread wait a random delay.
+     * Must be called before acquiring the monitor's lock, so that the farm areas are not serialized on the delays.
+     * The random stream of a team's controller is shared by the threads handling the team's orders, so it is drawn under its own lock.
+     * @param entity int containing the farmer identifier (or the controller of a team, see MonitorMetadata.controllerOf)
      */
-    private void waitRandomDelay(){
+    private void waitRandomDelay(int entity){
+        int randomDelay;
+        synchronized(this.random[entity]){
+            randomDelay=(int)(this.random[entity].nextDouble()*(this.metadata.MAXDELAY));
+        }
         try {
-            int randomDelay=(int)(Math.random()*(this.metadata.MAXDELAY));
             Thread.sleep(randomDelay);
         } catch (InterruptedException ex) {
             Logger.getLogger(Storehouse.class.getName()).log(Level.SEVERE, null, ex);
@@ -437,10 +545,12 @@ public class Granary implements GranaryFarmerInt, GranaryCCInt{
     
     /**
      * Auxiliary function created to make each thread wait the specified timeout defined by the user.
+     * Must be called without holding the monitor's lock.
+     * @param team the state of the team whose timeout applies
      */
-    private void waitTimeout(){
+    private void waitTimeout(Team team){
         try {
-            Thread.sleep(this.metadata.TIMEOUT);
+            Thread.sleep(team.metadata.TIMEOUT);
         } catch (InterruptedException ex) {
             Logger.getLogger(Path.class.getName()).log(Level.SEVERE, null, ex);
         }
@@ -0,0 +1,191 @@
+package fi.monitors;
+
+import fi.utils.MonitorMetrics;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lock of a monitor recording the monitor's contention metrics.
+ * It measures the time waited to acquire the lock and the time it is held, and its conditions measure the time waited on
+ * them. A wake-up is counted as spurious when the woken entity waits again on the same condition before releasing the lock,
+ * and as useful otherwise.
+ * The holder's bookkeeping lives in plain fields, since only the thread holding the lock touches them.
+ * When the metrics are disabled it behaves exactly as a ReentrantLock.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+final class MonitorLock extends ReentrantLock {
+
+    /**
+     * Version of the serialized form, inherited from ReentrantLock. The metrics and the holder's bookkeeping are not serialized.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Metrics of the monitor the lock belongs to.
+     */
+    private final transient MonitorMetrics metrics;
+    /**
+     * Instant (in ns) at which the holder acquired the lock or returned from waiting on a condition.
+     */
+    private transient long heldSince;
+    /**
+     * Condition the holder was last woken from, while it still holds the lock (null otherwise).
+     */
+    private transient Condition wokenFrom;
+
+    /**
+     * Class constructor.
+     * @param metrics Metrics of the monitor the lock belongs to.
+     */
+    MonitorLock(MonitorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Retrieves the metrics of the monitor the lock belongs to.
+     * @return the monitor's metrics.
+     */
+    MonitorMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    @Override
+    public void lock() {
+        if (!MonitorMetrics.ENABLED) {
+            super.lock();
+            return;
+        }
+        long start = System.nanoTime();
+        super.lock();
+        if (this.getHoldCount() == 1) {
+            this.heldSince = System.nanoTime();
+            this.metrics.lockWait.record(this.heldSince - start);
+        }
+    }
+
+    @Override
+    public void unlock() {
+        if (MonitorMetrics.ENABLED && this.getHoldCount() == 1) {
+            this.release(null);
+        }
+        super.unlock();
+    }
+
+    @Override
+    public Condition newCondition() {
+        Condition condition = super.newCondition();
+        return MonitorMetrics.ENABLED ? new MonitorCondition(condition) : condition;
+    }
+
+    /**
+     * Ends the holder's current hold of the lock, because it is releasing it or going to wait on a condition.
+     * @param condition condition the holder is going to wait on (null if it is releasing the lock).
+     */
+    private void release(Condition condition) {
+        if (this.wokenFrom != null) {
+            this.metrics.recordWakeup(this.wokenFrom != condition);
+            this.wokenFrom = null;
+        }
+        this.metrics.hold.record(System.nanoTime() - this.heldSince);
+    }
+
+    /**
+     * Condition of the lock recording the time waited on it.
+     */
+    private final class MonitorCondition implements Condition {
+
+        /**
+         * Condition of the underlying lock.
+         */
+        private final Condition condition;
+
+        /**
+         * Class constructor.
+         * @param condition Condition of the underlying lock.
+         */
+        private MonitorCondition(Condition condition) {
+            this.condition = condition;
+        }
+
+        /**
+         * Ends the holder's hold of the lock before it waits on the condition.
+         * @return the instant (in ns) at which the wait started.
+         */
+        private long beforeWait() {
+            MonitorLock.this.release(this);
+            return System.nanoTime();
+        }
+
+        /**
+         * Starts a new hold of the lock once the holder returns from waiting on the condition.
+         * @param start the instant (in ns) at which the wait started.
+         */
+        private void afterWait(long start) {
+            MonitorLock.this.heldSince = System.nanoTime();
+            MonitorLock.this.metrics.conditionWait.record(MonitorLock.this.heldSince - start);
+            MonitorLock.this.wokenFrom = this;
+        }
+
+        @Override
+        public void await() throws InterruptedException {
+            long start = this.beforeWait();
+            try {
+                this.condition.await();
+            } finally {
+                this.afterWait(start);
+            }
+        }
+
+        @Override
+        public void awaitUninterruptibly() {
+            long start = this.beforeWait();
+            try {
+                this.condition.awaitUninterruptibly();
+            } finally {
+                this.afterWait(start);
+            }
+        }
+
+        @Override
+        public long awaitNanos(long nanosTimeout) throws InterruptedException {
+            long start = this.beforeWait();
+            try {
+                return this.condition.awaitNanos(nanosTimeout);
+            } finally {
+                this.afterWait(start);
+            }
+        }
+
+        @Override
+        public boolean await(long time, TimeUnit unit) throws InterruptedException {
+            long start = this.beforeWait();
+            try {
+                return this.condition.await(time, unit);
+            } finally {
+                this.afterWait(start);
+            }
+        }
+
+        @Override
+        public boolean awaitUntil(Date deadline) throws InterruptedException {
+            long start = this.beforeWait();
+            try {
+                return this.condition.awaitUntil(deadline);
+            } finally {
+                this.afterWait(start);
+            }
+        }
+
+        @Override
+        public void signal() {
+            this.condition.signal();
+        }
+
+        @Override
+        public void signalAll() {
+            this.condition.signalAll();
+        }
+    }
+}
@@ -1,63 +1,85 @@
 package fi.monitors;
 
+import common.Message;
+import common.MessageType;
 import fi.utils.EndSimulationException;
 import fi.utils.MonitorMetadata;
+import fi.utils.MonitorMetrics;
 import fi.utils.StopHarvestException;
 import fi.ccInterfaces.PathCCInt;
 import fi.farmerInterfaces.PathFarmerInt;
-import fi.workers.Farmer;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import fi.UiAndMainControlsFI;
 
 /**
  * Class for the monitor representing the Path Sector of the farm.
+ * The farmers inside the path take turns to move, in the order they entered. The turn is passed around a ring of farmer
+ * slots kept in primitive arrays indexed by the farmer identifier, so each hand-off is O(1): the farmer holding the turn
+ * updates the turn holder and unparks the next farmer directly, while the farmers waiting for their turn are parked
+ * outside the monitor's lock.
+ * When the farmers are split in teams, each team has its own ring and takes its turns independently of the other teams,
+ * so the teams walk concurrently, contending for the positions of the path and for the monitor's lock.
+ * The positions of each depth (column) of the path are guarded by their own lock (the column's allocator), so the
+ * occupancy of different depths is updated concurrently and no two farmers ever take the same position.
+ * In the optional concurrent mode the farmers do not take turns: each one moves as soon as his timeout elapses, holding only
+ * the locks of the depths he leaves and enters, so the farmers at different depths step simultaneously. The monitor's lock
+ * is then only taken to enter the path, to leave it and to stop.
  * @author Filipe Pires (85122) and João Alegria (85048)
  */
 
 public class Path implements PathFarmerInt, PathCCInt {
 
-    
     /**
-     * Private inner class for holding useful information for tracking farmers while moving inside the Path. 
+     * State of a team of farmers inside the Path, holding the ring of the team's farmers and whose turn it is to move.
      */
-    private class ConditionAndPathDepth{
-        public Condition condition;
-        public int position;
-        public int depth;
-        
-        public ConditionAndPathDepth(Condition condition, int depth, int position){
-            this.condition=condition;
-            this.position=position;
-            this.depth=depth;
+    private class Team {
+
+        private final MonitorMetadata metadata;
+        private final PhaseBarrier allInPath = new PhaseBarrier(rl);
+
+        private int firstFarmer=0;
+        private volatile int currentFarmerToMove=0;
+        private int farmersInPath=0;
+        private volatile boolean stopHarvest=false;
+        private int entitiesToStop=0;
+
+        /**
+         * Team constructor.
+         * @param metadata MonitorMetadata instance containing the parameters to the team's current harvest run
+         */
+        private Team(MonitorMetadata metadata) {
+            this.metadata=metadata;
         }
-    } 
-    
+    }
+
     // Monitor variables
-    
+
     private final UiAndMainControlsFI fi;
     private final MonitorMetadata metadata;
-    
-    private final ReentrantLock rl;
-    private final Condition allInPath;
-    
-    private final List<Integer> farmersOrder;
-    private Integer currentFarmerToMove=null;
-    private final Integer path[][];
-    private final Map<Integer, ConditionAndPathDepth> farmersMetadata;
-    private final List<List<Integer>> availablePositions;
-    
+
+    private final MonitorLock rl;
+    private final Team[] teams;
+
+    // Rings of the farmers of each team inside the path (by entry order), indexed by farmer identifier
+    private final int[] next;
+    private final int[] previous;
+    private final Thread[] farmerThreads;
+
+    // Location of each farmer, indexed by farmer identifier
+    private final int[] depths;
+    private final int[] positions;
+
+    private final int path[][];
+    private final SlotAllocator[] availablePositions;
+    private final SplittableRandom[] random;
+
     private final int pathSize;
-    private int farmersInPath;
-    private boolean stopHarvest=false;
-    private boolean endSimulation=false;
-    private int entitiesToStop=0;
+    private final int pathWidth;
+    private final boolean concurrent;
+    private volatile boolean endSimulation=false;
 
     //Constructors
 
@@ -66,78 +88,47 @@ public class Path implements PathFarmerInt, PathCCInt {
      * @param fi UiAndMainControlsFI instance enabling the access to the farm infrastructure ui and websocket client
      * @param metadata MonitorMetadata instance containing the parameters to the current harvest run
      * @param pathSize int containing the path size
+     * @param pathWidth int containing the number of positions of each path column (at least the maximum number of farmers)
+     * @param concurrent boolean representing if the farmers move concurrently (true) or take turns (false)
      */
-    public Path(UiAndMainControlsFI fi, MonitorMetadata metadata, int pathSize) {
-        this.rl = new ReentrantLock();
-        this.allInPath = rl.newCondition();
+    public Path(UiAndMainControlsFI fi, MonitorMetadata metadata, int pathSize, int pathWidth, boolean concurrent) {
+        this.rl = new MonitorLock(new MonitorMetrics(2, "Path"));
         this.fi = fi;
         this.metadata=metadata;
-        this.farmersInPath = 0;
         this.pathSize=pathSize;
-        this.farmersOrder=new ArrayList();
-        this.path=new Integer[pathSize][metadata.MAXNUMBERFARMERS];
-        this.farmersMetadata = new HashMap();
-        this.availablePositions = new ArrayList();
-        
+        this.pathWidth=pathWidth;
+        this.concurrent=concurrent;
+        this.next=new int[metadata.MAXNUMBERFARMERS+1];
+        this.previous=new int[metadata.MAXNUMBERFARMERS+1];
+        this.farmerThreads=new Thread[metadata.MAXNUMBERFARMERS+1];
+        this.depths=new int[metadata.MAXNUMBERFARMERS+1];
+        this.positions=new int[metadata.MAXNUMBERFARMERS+1];
+        this.random=metadata.newRandoms("Path");
+        this.path=new int[pathSize][pathWidth];
+        this.availablePositions = new SlotAllocator[pathSize];
         for(int i=0; i< pathSize; i++){
-            this.availablePositions.add(new ArrayList());
-            for(int j=0; j<metadata.MAXNUMBERFARMERS; j++){
-                this.availablePositions.get(i).add(j);
-            }
+            this.availablePositions[i]=new SlotAllocator(pathWidth);
+        }
+        this.teams=new Team[metadata.NUMBERTEAMS];
+        for(int i=0; i<this.teams.length; i++){
+            this.teams[i]=new Team(metadata.team(i));
         }
-        
+
     }
-    
+
     //Methods executed by farmers
-    
-    
+
+
     /**
      * Registers the entry of a farmer in the path area in the Standing-Granary direction.
-     * Farmers must wait for all farmers the be inside the path area.
+     * Farmers must wait for all selected farmers of their team the be inside the path area.
      * @param farmerId int containing the farmer identifier
      * @throws fi.utils.StopHarvestException when the harvest run has stopped
      * @throws fi.utils.EndSimulationException when the simulation has ended
      */
     @Override
     public void farmerEnter(int farmerId) throws StopHarvestException, EndSimulationException{
-        rl.lock();
-        try {
-            this.waitRandomDelay();
-            farmersInPath++;
-            farmersOrder.add(farmerId);
-            farmersMetadata.put(farmerId, new ConditionAndPathDepth(rl.newCondition(), -1, -1));
-            this.selectSpot(farmerId, false, true);
-            this.fi.presentFarmerInPath(farmerId,farmersMetadata.get(farmerId).position, farmersMetadata.get(farmerId).depth);
-            System.out.println("[Path] Farmer " + farmerId + " entered.");
-            this.waitTimeout();
-            if(farmersInPath==metadata.NUMBERFARMERS){
-                currentFarmerToMove=farmersOrder.get(0);
-            }
-            while(farmersInPath<metadata.NUMBERFARMERS){
-                allInPath.await();
-                
-                if(this.stopHarvest){
-                    entitiesToStop--;
-                    farmersInPath--;
-                    path[farmersMetadata.get(farmerId).depth][farmersMetadata.get(farmerId).position]=null;
-                    this.availablePositions.get(this.farmersMetadata.get(farmerId).depth).add(farmersMetadata.get(farmerId).position);
-                    this.farmersOrder.remove((Integer)farmerId);
-                    this.farmersMetadata.remove(farmerId);
-                    if(entitiesToStop==0){
-                        stopHarvest=false;
-                    }
-                    throw new StopHarvestException();
-                }
-                if(this.endSimulation){
-                    throw new EndSimulationException();
-                }
-            }
-            allInPath.signalAll();
-        } catch (InterruptedException ex) {
-            Logger.getLogger(Path.class.getName()).log(Level.SEVERE, null, ex);
-        }finally{
-            rl.unlock();
-        }
+        this.enter(farmerId, false);
     }
 
     /**
@@ -152,99 +143,19 @@ public class Path implements PathFarmerInt, PathCCInt {
      */
     @Override
     public void farmerGoToGranary(int farmerId) throws StopHarvestException, EndSimulationException{
-        rl.lock();
-        try {
-            this.waitRandomDelay();
-            while(this.farmersMetadata.get(farmerId).depth<this.pathSize){
-
-                while(this.currentFarmerToMove!=farmerId){
-
-                    this.farmersMetadata.get(farmerId).condition.await();
-                    
-                    if(this.stopHarvest){
-                        entitiesToStop--;
-                        farmersInPath--;
-                        path[farmersMetadata.get(farmerId).depth][farmersMetadata.get(farmerId).position]=null;
-                        this.availablePositions.get(this.farmersMetadata.get(farmerId).depth).add(farmersMetadata.get(farmerId).position);
-                        this.farmersOrder.remove((Integer)farmerId);
-                        this.farmersMetadata.remove(farmerId);
-                        if(entitiesToStop==0){
-                            stopHarvest=false;
-                        }
-                        throw new StopHarvestException();
-                    }
-                    if(this.endSimulation){
-                        throw new EndSimulationException();
-                    }
-                }
-                this.selectSpot(farmerId, false, false);
-                this.waitTimeout();
-                
-                if(this.farmersInPath>1){
-                    this.currentFarmerToMove=this.farmersOrder.get((this.farmersOrder.indexOf(farmerId)+1)%this.farmersOrder.size());
-                    this.farmersMetadata.get(this.currentFarmerToMove).condition.signalAll();
-                }
-
-                
-            }
-            this.farmersInPath--;
-            this.farmersOrder.remove((Integer)farmerId);
-            this.farmersMetadata.remove(farmerId);
-
-        } catch (InterruptedException ex) {
-            Logger.getLogger(Path.class.getName()).log(Level.SEVERE, null, ex);
-        }finally{
-            rl.unlock();
-        }
+        this.walk(farmerId, false);
     }
-    
+
     /**
      * Registers the entry of a farmer in the path area in the Granary-Standing direction.
-     * Farmers must wait for all farmers the be inside the path area.
+     * Farmers must wait for all selected farmers of their team the be inside the path area.
      * @param farmerId int containing the farmer identifier
      * @throws fi.utils.StopHarvestException when the harvest run has stopped
      * @throws fi.utils.EndSimulationException when the simulation has ended
      */
     @Override
     public void farmerReturn(int farmerId) throws StopHarvestException, EndSimulationException{
-        rl.lock();
-        try {
-            this.waitRandomDelay();
-            farmersInPath++;
-            farmersOrder.add(farmerId);
-            farmersMetadata.put(farmerId, new ConditionAndPathDepth(rl.newCondition(), this.pathSize, -1));
-            this.selectSpot(farmerId, true, true);
-            this.waitTimeout();
-            if(farmersInPath==metadata.NUMBERFARMERS){
-                currentFarmerToMove=farmersOrder.get(0);
-            }
-            
-            while(farmersInPath<metadata.NUMBERFARMERS){
-                allInPath.await();
-                
-                if(this.stopHarvest){
-                    entitiesToStop--;
-                    farmersInPath--;
-                    ((Farmer)Thread.currentThread()).setCornCobs(0);
-                    path[farmersMetadata.get(farmerId).depth][farmersMetadata.get(farmerId).position]=null;
-                    this.availablePositions.get(this.farmersMetadata.get(farmerId).depth).add(farmersMetadata.get(farmerId).position);
-                    this.farmersOrder.remove((Integer)farmerId);
-                    this.farmersMetadata.remove(farmerId);
-                    if(entitiesToStop==0){
-                        stopHarvest=false;
-                    }
-                    throw new StopHarvestException();
-                }
-                if(this.endSimulation){
-                    throw new EndSimulationException();
-                }
-            }
-            allInPath.signalAll();
-        } catch (InterruptedException ex) {
-            Logger.getLogger(Granary.class.getName()).log(Level.SEVERE, null, ex);
-        }finally{
-            rl.unlock();
-        }
+        this.enter(farmerId, true);
     }
 
     /**
@@ -259,64 +170,29 @@ public class Path implements PathFarmerInt, PathCCInt {
      */
     @Override
     public void farmerGoToStorehouse(int farmerId) throws StopHarvestException, EndSimulationException{
-        rl.lock();
-        try {
-            this.waitRandomDelay();
-            while(this.farmersMetadata.get(farmerId).depth>=0){
-                while(this.currentFarmerToMove!=farmerId){
-                    this.farmersMetadata.get(farmerId).condition.await();
-                    
-                    if(this.stopHarvest){
-                        entitiesToStop--;
-                        farmersInPath--;
-                        ((Farmer)Thread.currentThread()).setCornCobs(0);
-                        path[farmersMetadata.get(farmerId).depth][farmersMetadata.get(farmerId).position]=null;
-                        this.availablePositions.get(this.farmersMetadata.get(farmerId).depth).add(farmersMetadata.get(farmerId).position);
-                        this.farmersOrder.remove((Integer)farmerId);
-                        this.farmersMetadata.remove(farmerId);
-                        if(entitiesToStop==0){
-                            stopHarvest=false;
-                        }
-                        throw new StopHarvestException();
-                    }
-                    if(this.endSimulation){
-                        throw new EndSimulationException();
-                    }
-                }
-                this.selectSpot(farmerId, true, false);
-                this.waitTimeout();
-                if(this.farmersInPath>1){
-                    this.currentFarmerToMove=this.farmersOrder.get((this.farmersOrder.indexOf(farmerId)+1)%this.farmersOrder.size());
-                    this.farmersMetadata.get(this.currentFarmerToMove).condition.signalAll();
-                }
-            }
-            this.farmersInPath--;
-            this.farmersOrder.remove((Integer)farmerId);
-            this.farmersMetadata.remove(farmerId);
-        } catch (InterruptedException ex) {
-            Logger.getLogger(Path.class.getName()).log(Level.SEVERE, null, ex);
-        }finally{
-            rl.unlock();
-        }
+        this.walk(farmerId, true);
     }
-   
+
 
     //Methods executed by Message Processor
 
     /**
-     * Notifies every entity in the monitor that either the harvest run has stopped or the simulation has ended. 
+     * Notifies every entity of a team in the monitor that either the team's harvest run has stopped or the simulation has ended.
+     * The end of the simulation applies to every team.
+     * @param team int containing the team identifier
      * @param action string containing the action to perform
      */
     @Override
-    public void control(String action) {
+    public void control(int team, String action) {
+        this.waitRandomDelay(this.metadata.controllerOf(team));
         rl.lock();
         try{
-            this.waitRandomDelay();
             switch(action){
                 case "stopHarvest":
-                    if(this.farmersInPath!=0){
-                        this.stopHarvest=true;
-                        this.entitiesToStop=this.farmersInPath;
+                    Team t=this.teams[team];
+                    if(t.farmersInPath!=0){
+                        t.stopHarvest=true;
+                        t.entitiesToStop=t.farmersInPath;
                     }
                     break;
                 case "endSimulation":
@@ -324,80 +200,349 @@ public class Path implements PathFarmerInt, PathCCInt {
                     break;
             }
 
-            this.allInPath.signalAll();
-            this.farmersMetadata.keySet().forEach((key) -> {
-                this.farmersMetadata.get(key).condition.signalAll();
-            });
+            for(Team t : this.teams){
+                t.allInPath.wakeAll();
+                if(t.firstFarmer!=0){
+                    int farmerId=t.firstFarmer;
+                    do{
+                        LockSupport.unpark(this.farmerThreads[farmerId]);
+                        farmerId=this.next[farmerId];
+                    }while(farmerId!=t.firstFarmer);
+                }
+            }
         }
         finally{
             rl.unlock();
         }
     }
 
+
+    /**
+     * Retrieves the contention metrics of the path monitor.
+     * They are read without holding the monitor's lock, so they may be slightly stale.
+     * @return MonitorMetrics instance of the monitor
+     */
+    public MonitorMetrics getMetrics() {
+        return this.rl.getMetrics();
+    }
     
     //Aux Methods
-    
+
+    /**
+     * Registers the entry of a farmer in the path area and waits for all farmers of his team to be inside.
+     * The farmer is added at the end of his team's ring; the last farmer to enter gives the first turn to the first one.
+     * The entry is preceded by the timeout of the team's harvest run, spent outside the monitor's lock.
+     * @param farmerId int containing the farmer identifier
+     * @param reverse boolean representing if the farmer is in the Standing-Granary direction(false) or in the Granary-Standing direction(true)
+     * @throws fi.utils.StopHarvestException when the harvest run has stopped
+     * @throws fi.utils.EndSimulationException when the simulation has ended
+     */
+    private void enter(int farmerId, boolean reverse) throws StopHarvestException, EndSimulationException{
+        this.waitRandomDelay(farmerId);
+        this.waitTimeout(this.teamOf(farmerId));
+        rl.lock();
+        try {
+            Team team=this.teamOf(farmerId);
+            team.farmersInPath++;
+            this.joinRing(team, farmerId);
+            this.depths[farmerId]=reverse ? this.pathSize : -1;
+            this.positions[farmerId]=-1;
+            this.selectSpot(farmerId, reverse, true);
+            if(!reverse){
+                this.fi.presentFarmerInPath(farmerId, this.positions[farmerId], this.depths[farmerId]);
+                System.out.println("[Path] Farmer " + farmerId + " entered.");
+            }
+            int phase=team.allInPath.arrive(team.metadata.NUMBERFARMERS);
+            if(team.allInPath.hasAdvanced(phase)){
+                team.currentFarmerToMove=team.firstFarmer;
+            }
+            while(!team.allInPath.hasAdvanced(phase)){
+                team.allInPath.await();
+
+                if(team.stopHarvest){
+                    team.allInPath.depart(phase);
+                    this.stop(team, farmerId);
+                }
+                if(this.endSimulation){
+                    throw new EndSimulationException();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Logger.getLogger(Path.class.getName()).log(Level.SEVERE, null, ex);
+        }finally{
+            rl.unlock();
+        }
+    }
+
+    /**
+     * Makes a farmer walk through the path, one turn at a time, until he reaches its end.
+     * While it is not his turn the farmer is parked outside the monitor's lock. When he is done moving he passes the turn
+     * to the next farmer of his team's ring and unparks him. Each move is preceded by the timeout of the team's harvest run,
+     * which the farmer holding the turn spends outside the monitor's lock.
+     * @param farmerId int containing the farmer identifier
+     * @param reverse boolean representing if the farmer is in the Standing-Granary direction(false) or in the Granary-Standing direction(true)
+     * @throws fi.utils.StopHarvestException when the harvest run has stopped
+     * @throws fi.utils.EndSimulationException when the simulation has ended
+     */
+    private void walk(int farmerId, boolean reverse) throws StopHarvestException, EndSimulationException{
+        Team team=this.teamOf(farmerId);
+        this.waitRandomDelay(farmerId);
+        if(this.concurrent){
+            this.walkConcurrently(team, farmerId, reverse);
+            return;
+        }
+        while(reverse ? this.depths[farmerId]>=0 : this.depths[farmerId]<this.pathSize){
+            long parkedSince=0;
+            int wakeups=0;
+            while(team.currentFarmerToMove!=farmerId && !team.stopHarvest && !this.endSimulation){
+                if(wakeups++==0){
+                    parkedSince=System.nanoTime();
+                }
+                LockSupport.park(this);
+            }
+            if(!team.stopHarvest && !this.endSimulation){
+                this.waitTimeout(team);
+            }
+            Thread nextFarmer=null;
+            rl.lock();
+            try {
+                this.recordTurnWait(parkedSince, wakeups);
+                if(team.stopHarvest){
+                    this.stop(team, farmerId);
+                }
+                if(this.endSimulation){
+                    throw new EndSimulationException();
+                }
+                this.selectSpot(farmerId, reverse, false);
+                if(team.farmersInPath>1){
+                    team.currentFarmerToMove=this.next[farmerId];
+                    nextFarmer=this.farmerThreads[team.currentFarmerToMove];
+                }
+                if(reverse ? this.depths[farmerId]<0 : this.depths[farmerId]>=this.pathSize){
+                    team.farmersInPath--;
+                    this.leaveRing(team, farmerId);
+                }
+            } finally {
+                rl.unlock();
+            }
+            if(nextFarmer!=null){
+                LockSupport.unpark(nextFarmer);
+            }
+        }
+    }
+
+    /**
+     * Makes a farmer walk through the path without waiting for turns, until he reaches its end.
+     * Each move is preceded by the timeout of the team's harvest run and only holds the locks of the depths the farmer
+     * leaves and enters. The monitor's lock is taken to stop and to leave the path, so that a stop order never misses a
+     * farmer about to leave.
+     * @param team the state of the farmer's team
+     * @param farmerId int containing the farmer identifier
+     * @param reverse boolean representing if the farmer is in the Standing-Granary direction(false) or in the Granary-Standing direction(true)
+     * @throws fi.utils.StopHarvestException when the harvest run has stopped
+     * @throws fi.utils.EndSimulationException when the simulation has ended
+     */
+    private void walkConcurrently(Team team, int farmerId, boolean reverse) throws StopHarvestException, EndSimulationException{
+        while(reverse ? this.depths[farmerId]>=0 : this.depths[farmerId]<this.pathSize){
+            if(!team.stopHarvest && !this.endSimulation){
+                this.waitTimeout(team);
+            }
+            if(team.stopHarvest || this.endSimulation){
+                this.leave(team, farmerId, false);
+            }
+            this.selectSpot(farmerId, reverse, false);
+        }
+        this.leave(team, farmerId, true);
+    }
+
+    /**
+     * Removes a farmer walking concurrently from the path, either because he stops or because he reached its end.
+     * @param team the state of the farmer's team
+     * @param farmerId int containing the farmer identifier
+     * @param out boolean representing if the farmer reached the end of the path
+     * @throws fi.utils.StopHarvestException when the harvest run has stopped
+     * @throws fi.utils.EndSimulationException when the simulation has ended
+     */
+    private void leave(Team team, int farmerId, boolean out) throws StopHarvestException, EndSimulationException{
+        rl.lock();
+        try {
+            if(team.stopHarvest){
+                this.stop(team, farmerId);
+            }
+            if(this.endSimulation){
+                throw new EndSimulationException();
+            }
+            if(out){
+                team.farmersInPath--;
+                this.leaveRing(team, farmerId);
+            }
+        } finally {
+            rl.unlock();
+        }
+    }
+
+    /**
+     * Records in the monitor's metrics the time a farmer was parked waiting for his turn and his wake-ups (all but the
+     * last one were spurious). Must be called while holding the monitor's lock.
+     * @param parkedSince instant (in ns) at which the farmer was first parked
+     * @param wakeups number of times the farmer was parked (0 if it already was his turn)
+     */
+    private void recordTurnWait(long parkedSince, int wakeups){
+        if(!MonitorMetrics.ENABLED || wakeups==0){
+            return;
+        }
+        MonitorMetrics metrics=this.rl.getMetrics();
+        metrics.conditionWait.record(System.nanoTime()-parkedSince);
+        for(int i=1; i<wakeups; i++){
+            metrics.recordWakeup(false);
+        }
+        metrics.recordWakeup(true);
+    }
+
+    /**
+     * Retrieves the team of a farmer.
+     * @param farmerId int containing the farmer identifier
+     * @return the state of the farmer's team
+     */
+    private Team teamOf(int farmerId){
+        return this.teams[this.metadata.teamOf(farmerId)];
+    }
+
+    /**
+     * Removes a farmer from the path when the harvest run of his team has stopped.
+     * Must be called while holding the monitor's lock.
+     * @param team the state of the farmer's team
+     * @param farmerId int containing the farmer identifier
+     * @throws fi.utils.StopHarvestException always, to stop the farmer's current harvest run
+     */
+    private void stop(Team team, int farmerId) throws StopHarvestException{
+        team.entitiesToStop--;
+        team.farmersInPath--;
+        int depth=this.depths[farmerId];
+        if(depth>=0 && depth<this.pathSize){
+            this.releaseSpot(depth, this.positions[farmerId]);
+        }
+        this.leaveRing(team, farmerId);
+        if(team.entitiesToStop==0){
+            team.stopHarvest=false;
+        }
+        throw new StopHarvestException();
+    }
+
+    /**
+     * Adds a farmer at the end of the ring of his team's farmers inside the path.
+     * @param team the state of the farmer's team
+     * @param farmerId int containing the farmer identifier
+     */
+    private void joinRing(Team team, int farmerId){
+        this.farmerThreads[farmerId]=Thread.currentThread();
+        if(team.firstFarmer==0){
+            team.firstFarmer=farmerId;
+            this.next[farmerId]=farmerId;
+            this.previous[farmerId]=farmerId;
+            return;
+        }
+        int last=this.previous[team.firstFarmer];
+        this.next[last]=farmerId;
+        this.previous[farmerId]=last;
+        this.next[farmerId]=team.firstFarmer;
+        this.previous[team.firstFarmer]=farmerId;
+    }
+
+    /**
+     * Removes a farmer from the ring of his team's farmers inside the path.
+     * @param team the state of the farmer's team
+     * @param farmerId int containing the farmer identifier
+     */
+    private void leaveRing(Team team, int farmerId){
+        if(this.next[farmerId]==farmerId){
+            team.firstFarmer=0;
+        }else{
+            this.next[this.previous[farmerId]]=this.next[farmerId];
+            this.previous[this.next[farmerId]]=this.previous[farmerId];
+            if(team.firstFarmer==farmerId){
+                team.firstFarmer=this.next[farmerId];
+            }
+        }
+        this.farmerThreads[farmerId]=null;
+    }
+
     /**
      * Selects a spot in the path area position for a farmer to settle on.
      * @param farmerId int containing the farmer identifier
-     * @param first boolean representing if the farmer is in the Standing-Granary direction(false) or in the Granary-Standing direction(true) 
+     * @param reverse boolean representing if the farmer is in the Standing-Granary direction(false) or in the Granary-Standing direction(true)
+     * @param first boolean representing if the farmer is entering the path
      */
     private void selectSpot(int farmerId, boolean reverse, boolean first){
         int numberOfSteps;
         if(first){
             numberOfSteps=1;
         }else{
-            numberOfSteps=(int)Math.round(Math.random()*(metadata.NUMBERSTEPS-1))+1;
+            numberOfSteps=(int)Math.round(this.random[farmerId].nextDouble()*(this.teamOf(farmerId).metadata.NUMBERSTEPS-1))+1;
         }
-        int newDepth;
-        if(reverse){
-            newDepth=this.farmersMetadata.get(farmerId).depth-numberOfSteps;
-        }else{
-            newDepth=this.farmersMetadata.get(farmerId).depth+numberOfSteps;
+        int depth=this.depths[farmerId];
+        int newDepth=reverse ? depth-numberOfSteps : depth+numberOfSteps;
+        boolean inPath=depth>=0 && depth<this.pathSize;
+        if(inPath){
+            this.releaseSpot(depth, this.positions[farmerId]);
         }
+        this.depths[farmerId]=newDepth;
         if(newDepth>=this.pathSize || newDepth<0){
-            path[farmersMetadata.get(farmerId).depth][farmersMetadata.get(farmerId).position]=null;
-            this.availablePositions.get(this.farmersMetadata.get(farmerId).depth).add(farmersMetadata.get(farmerId).position);
-            farmersMetadata.get(farmerId).depth=newDepth;
             return;
         }
-        int randomIndex = (int)(Math.random() * this.availablePositions.get(newDepth).size());
-        int randomPosition=this.availablePositions.get(newDepth).get(randomIndex);
-        if((this.farmersMetadata.get(farmerId).depth!=-1 && !reverse) || (this.farmersMetadata.get(farmerId).depth!=10 && reverse)){
-            path[farmersMetadata.get(farmerId).depth][farmersMetadata.get(farmerId).position]=null;
-            this.availablePositions.get(this.farmersMetadata.get(farmerId).depth).add(farmersMetadata.get(farmerId).position);
+        int randomPosition;
+        synchronized(this.availablePositions[newDepth]){
+            randomPosition=this.availablePositions[newDepth].acquire(this.random[farmerId]);
+            path[newDepth][randomPosition]=farmerId;
         }
-        this.availablePositions.get(newDepth).remove(randomIndex);
-        path[newDepth][randomPosition]=farmerId;
-        farmersMetadata.get(farmerId).position=randomPosition;
-        farmersMetadata.get(farmerId).depth=newDepth;
+        this.positions[farmerId]=randomPosition;
 
-        this.fi.presentFarmerInPath(farmerId,farmersMetadata.get(farmerId).position, farmersMetadata.get(farmerId).depth);
-        this.fi.sendMessage("presentInPath;"+farmerId+";"+farmersMetadata.get(farmerId).position+";"+farmersMetadata.get(farmerId).depth);
+        this.fi.presentFarmerInPath(farmerId, randomPosition, newDepth);
+        this.fi.sendMessage(new Message(MessageType.PRESENT_IN_PATH, farmerId, randomPosition, newDepth));
 
     }
-    
+
+    /**
+     * Frees a position of the path, under the lock of its depth.
+     * @param depth int containing the depth of the position
+     * @param position int containing the position
+     */
+    private void releaseSpot(int depth, int position){
+        synchronized(this.availablePositions[depth]){
+            path[depth][position]=0;
+            this.availablePositions[depth].release(position);
+        }
+    }
+
     /**
      * Auxiliary function created to make each thread wait a random delay.
+     * Must be called before acquiring the monitor's lock, so that the farm areas are not serialized on the delays.
+     * The random stream of a team's controller is shared by the threads handling the team's orders, so it is drawn under its own lock.
+     * @param entity int containing the farmer identifier (or the controller of a team, see MonitorMetadata.controllerOf)
      */
-    private void waitRandomDelay(){
+    private void waitRandomDelay(int entity){
+        int randomDelay;
+        synchronized(this.random[entity]){
+            randomDelay=(int)(this.random[entity].nextDouble()*(this.metadata.MAXDELAY));
+        }
         try {
-            int randomDelay=(int)(Math.random()*(this.metadata.MAXDELAY));
             Thread.sleep(randomDelay);
         } catch (InterruptedException ex) {
             Logger.getLogger(Storehouse.class.getName()).log(Level.SEVERE, null, ex);
         }
     }
-    
+
     /**
      * Auxiliary function created to make each thread wait the specified timeout defined by the user.
+     * Must be called without holding the monitor's lock.
+     * @param team the state of the team whose timeout applies
      */
-    private void waitTimeout(){
+    private void waitTimeout(Team team){
         try {
-            Thread.sleep(this.metadata.TIMEOUT);
+            Thread.sleep(team.metadata.TIMEOUT);
         } catch (InterruptedException ex) {
             Logger.getLogger(Path.class.getName()).log(Level.SEVERE, null, ex);
         }
     }
-    
+
 }
@@ -0,0 +1,102 @@
+package fi.monitors;
+
+import fi.utils.MonitorMetrics;
+import java.util.concurrent.locks.Condition;
+
+/**
+ * Reusable barrier for the "wait for all farmers to arrive" points of the monitors.
+ * It works on the lock of the monitor it belongs to, so all its methods must be called while holding that lock.
+ * Each cycle of arrivals is a phase: the party completing it advances the phase and wakes the waiting entities with a single
+ * signalAll, instead of every arrival (and every woken farmer) signaling all the others.
+ * The number of parties is given at each arrival, and a party can depart from a phase that has not completed yet
+ * (when the harvest run stops), so the set of parties may change from one phase to the next.
+ * The time each phase takes from its first arrival to its completion is recorded in the monitor's metrics.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+final class PhaseBarrier {
+
+    /**
+     * Condition where the entities wait for the phase to advance.
+     */
+    private final Condition advanced;
+    /**
+     * Metrics of the monitor the barrier belongs to.
+     */
+    private final MonitorMetrics metrics;
+    /**
+     * Number of parties arrived in the current phase.
+     */
+    private int arrived = 0;
+    /**
+     * Current phase.
+     */
+    private int phase = 0;
+    /**
+     * Instant (in ns) of the first arrival of the current phase.
+     */
+    private long openedAt = 0;
+
+    /**
+     * Class constructor.
+     * @param lock lock of the monitor the barrier belongs to.
+     */
+    PhaseBarrier(MonitorLock lock) {
+        this.advanced = lock.newCondition();
+        this.metrics = lock.getMetrics();
+    }
+
+    /**
+     * Registers the arrival of a party, advancing the phase if it is the last one expected.
+     * @param parties number of parties expected in the current phase.
+     * @return the phase the party arrived in.
+     */
+    int arrive(int parties) {
+        int arrivalPhase = this.phase;
+        if (MonitorMetrics.ENABLED && this.arrived == 0) {
+            this.openedAt = System.nanoTime();
+        }
+        if (++this.arrived >= parties) {
+            if (MonitorMetrics.ENABLED) {
+                this.metrics.phase.record(System.nanoTime() - this.openedAt);
+            }
+            this.arrived = 0;
+            this.phase++;
+            this.advanced.signalAll();
+        }
+        return arrivalPhase;
+    }
+
+    /**
+     * Withdraws the arrival of a party from a phase, if that phase has not completed yet.
+     * @param arrivalPhase the phase the party arrived in.
+     */
+    void depart(int arrivalPhase) {
+        if (this.phase == arrivalPhase && this.arrived > 0) {
+            this.arrived--;
+        }
+    }
+
+    /**
+     * Checks if a phase has completed.
+     * @param arrivalPhase the phase to check.
+     * @return true if the barrier already advanced beyond the phase.
+     */
+    boolean hasAdvanced(int arrivalPhase) {
+        return this.phase != arrivalPhase;
+    }
+
+    /**
+     * Waits until the phase advances or the waiting entities are woken by the monitor.
+     * @throws InterruptedException if the waiting thread is interrupted.
+     */
+    void await() throws InterruptedException {
+        this.advanced.await();
+    }
+
+    /**
+     * Wakes all waiting entities without advancing the phase (to let them see a stop or end of the simulation).
+     */
+    void wakeAll() {
+        this.advanced.signalAll();
+    }
+}
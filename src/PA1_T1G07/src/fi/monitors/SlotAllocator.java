@@ -0,0 +1,68 @@
+package fi.monitors;
+
+import java.util.SplittableRandom;
+
+/**
+ * Allocator of the positions (slots) of a farm area.
+ * The free slots are kept in a primitive array: a random free slot is taken by swapping it with the last free slot and a
+ * released slot is appended at the end, so both operations are O(1) and neither boxes nor allocates.
+ * Not thread-safe: it must be used while holding the lock of the monitor it belongs to (or by a single thread, as in the
+ * discrete-event simulation).
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public final class SlotAllocator {
+
+    /**
+     * Free slots, stored in the first freeCount positions.
+     */
+    private final int[] free;
+    /**
+     * Number of free slots.
+     */
+    private int freeCount;
+
+    /**
+     * Class constructor. Every slot starts free.
+     * @param slots number of slots.
+     */
+    public SlotAllocator(int slots) {
+        this.free = new int[slots];
+        for (int i = 0; i < slots; i++) {
+            this.free[i] = i;
+        }
+        this.freeCount = slots;
+    }
+
+    /**
+     * Takes a random free slot.
+     * @param random generator choosing the slot.
+     * @return the slot taken, or -1 if every slot is taken.
+     */
+    public int acquire(SplittableRandom random) {
+        if (this.freeCount == 0) {
+            return -1;
+        }
+        int index = random.nextInt(this.freeCount);
+        int slot = this.free[index];
+        this.free[index] = this.free[--this.freeCount];
+        return slot;
+    }
+
+    /**
+     * Returns a slot to the free ones.
+     * @param slot slot to release (ignored if negative).
+     */
+    public void release(int slot) {
+        if (slot >= 0) {
+            this.free[this.freeCount++] = slot;
+        }
+    }
+
+    /**
+     * Auxiliary method to retrieve the number of free slots.
+     * @return number of free slots.
+     */
+    public int available() {
+        return this.freeCount;
+    }
+}
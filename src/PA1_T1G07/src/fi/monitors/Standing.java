@@ -1,14 +1,16 @@
 package fi.monitors;
 
+import common.Message;
+import common.MessageType;
 import fi.utils.EndSimulationException;
 import fi.utils.MonitorMetadata;
+import fi.utils.MonitorMetrics;
 import fi.utils.StopHarvestException;
 import fi.ccInterfaces.StandingCCInt;
 import fi.farmerInterfaces.StandingFarmerInt;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.Condition;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import fi.UiAndMainControlsFI;
@@ -19,20 +21,43 @@ import fi.UiAndMainControlsFI;
  */
 public class Standing implements StandingFarmerInt, StandingCCInt {
     
+    /**
+     * State of a team of farmers inside the Standing area. Each team goes through its harvest runs independently.
+     */
+    private class Team {
+        
+        private final MonitorMetadata metadata;
+        private final PhaseBarrier allInStanding = new PhaseBarrier(rl);
+        private final Condition startOrder = rl.newCondition();
+        
+        private int farmersInStanding=0;
+        private boolean startOrderGiven=false;
+        private boolean stopHarvest=false;
+        private boolean proxyInMonitor=false;
+        private int entitiesToStop=0;
+        
+        /**
+         * Team constructor.
+         * @param metadata MonitorMetadata instance containing the parameters to the team's current harvest run
+         */
+        private Team(MonitorMetadata metadata) {
+            this.metadata=metadata;
+        }
+    }
+    
     //Monitor variables
 
     private UiAndMainControlsFI fi;
     private MonitorMetadata metadata;
     
-    private Map<Integer, Integer> positions;
-    private List<Integer> availablePosition;
+    private MonitorLock rl = new MonitorLock(new MonitorMetrics(1, "Standing"));
+    
+    private int[] positions;
+    private SlotAllocator availablePosition;
+    private SplittableRandom[] random;
+    private Team[] teams;
     
-    private int farmersInStanding=0;
-    private boolean startOrderGiven=false;
-    private boolean stopHarvest=false;
     private boolean endSimulation=false;
-    private boolean proxyInMonitor=false;
-    private int entitiesToStop=0;
     
     //Constructors
     
@@ -44,10 +69,13 @@ public class Standing implements StandingFarmerInt, StandingCCInt {
     public Standing(UiAndMainControlsFI fi, MonitorMetadata metadata) {
         this.fi = fi;
         this.metadata=metadata;
-        positions=new HashMap<Integer, Integer>();
-        availablePosition=new ArrayList<Integer>();
-        for(int i=0; i<this.metadata.MAXNUMBERFARMERS;i++){
-            availablePosition.add(i);
+        positions=new int[this.metadata.MAXNUMBERFARMERS+1];
+        Arrays.fill(positions, -1);
+        availablePosition=new SlotAllocator(this.metadata.MAXNUMBERFARMERS);
+        random=this.metadata.newRandoms("Standing");
+        teams=new Team[this.metadata.NUMBERTEAMS];
+        for(int i=0; i<teams.length; i++){
+            teams[i]=new Team(this.metadata.team(i));
         }
     }
     
@@ -56,174 +84,229 @@ public class Standing implements StandingFarmerInt, StandingCCInt {
 
     /**
      * Registers the entry of a farmer in the standing area.
-     * Farmers must wait for all farmers the be inside the standing area.
+     * Farmers must wait for all selected farmers of their team the be inside the standing area.
      * @param farmerId int containing the farmer identifier
      * @throws fi.utils.StopHarvestException when the harvest run has stopped
      * @throws fi.utils.EndSimulationException when the simulation has ended
      */
     @Override
-    public synchronized void farmerEnter(int farmerId) throws StopHarvestException, EndSimulationException{
+    public void farmerEnter(int farmerId) throws StopHarvestException, EndSimulationException{
+        this.waitRandomDelay(farmerId);
+        rl.lock();
         try {
-            this.waitRandomDelay();
-            farmersInStanding++;
+            Team team=this.teamOf(farmerId);
+            team.farmersInStanding++;
             this.selectSpot(farmerId);
             System.out.println("[Standing Area] Farmer " + farmerId + " entered.");
-            while(farmersInStanding<this.metadata.NUMBERFARMERS){
-                wait();
+            int phase=team.allInStanding.arrive(team.metadata.NUMBERFARMERS);
+            while(!team.allInStanding.hasAdvanced(phase)){
+                team.allInStanding.await();
                 
-                if(this.stopHarvest){
-                    entitiesToStop--;
-                    farmersInStanding--;
-                    this.availablePosition.add(this.positions.get(farmerId));
-                    this.positions.remove(farmerId);
-                    if(entitiesToStop==0){
-                        stopHarvest=false;
-                    }
-                    throw new StopHarvestException();
+                if(team.stopHarvest){
+                    team.allInStanding.depart(phase);
+                    this.stop(team, farmerId);
                 }
                 if(this.endSimulation){
                     throw new EndSimulationException();
                 }
             }
-            notifyAll();
-
         } catch (InterruptedException ex) {
             Logger.getLogger(Standing.class.getName()).log(Level.SEVERE, null, ex);
+        } finally {
+            rl.unlock();
         }
     }
 
     /**
-     * Farmers must wait for a start order given by the Control Center.
+     * Farmers must wait for a start order given by the Control Center to their team.
      * Farmers must execute this method after entering in the standing area.
      * @param farmerId int containing the farmer identifier
      * @throws fi.utils.StopHarvestException when the harvest run has stopped
      * @throws fi.utils.EndSimulationException when the simulation has ended
      */
     @Override
-    public synchronized void farmerWaitStartOrder(int farmerId) throws StopHarvestException, EndSimulationException{
+    public void farmerWaitStartOrder(int farmerId) throws StopHarvestException, EndSimulationException{
+        this.waitRandomDelay(farmerId);
+        rl.lock();
         try{
-            this.waitRandomDelay();
-            while(!startOrderGiven){
-                wait();
+            Team team=this.teamOf(farmerId);
+            while(!team.startOrderGiven){
+                team.startOrder.await();
                 
-                if(this.stopHarvest){
-                    entitiesToStop--;
-                    farmersInStanding--;
-                    this.availablePosition.add(this.positions.get(farmerId));
-                    this.positions.remove(farmerId);
-                    if(entitiesToStop==0){
-                        stopHarvest=false;
-                    }
-                    throw new StopHarvestException();
+                if(team.stopHarvest){
+                    this.stop(team, farmerId);
                 }
                 if(this.endSimulation){
                     throw new EndSimulationException();
                 }
             }
-            farmersInStanding--;
-            this.availablePosition.add(this.positions.get(farmerId));
-            this.positions.remove(farmerId);
-            if(farmersInStanding==0){
-                startOrderGiven=false;
+            team.farmersInStanding--;
+            this.availablePosition.release(this.positions[farmerId]);
+            this.positions[farmerId]=-1;
+            if(team.farmersInStanding==0){
+                team.startOrderGiven=false;
             }
         } catch (InterruptedException ex) {
             Logger.getLogger(Standing.class.getName()).log(Level.SEVERE, null, ex);
-        } 
+        } finally {
+            rl.unlock();
+        }
     }
     
     //Methods executed by Message Processor
     
     /**
-     * Notifies all the farmers waiting for a start order.
+     * Notifies all the farmers of a team waiting for a start order.
+     * @param team int containing the team identifier
      */
     @Override
-    public synchronized void sendStartOrder() {
-        this.waitRandomDelay();
-        startOrderGiven = true;
-        notifyAll();
+    public void sendStartOrder(int team) {
+        this.waitRandomDelay(this.metadata.controllerOf(team));
+        rl.lock();
+        try{
+            Team t=this.teams[team];
+            t.startOrderGiven = true;
+            t.startOrder.signalAll();
+        }
+        finally{
+            rl.unlock();
+        }
     }
 
     
     /**
-     * Control Center Proxy must wait for all farmers to enter in the Standing area to notify the Control Center.
+     * Control Center Proxy must wait for all selected farmers of a team to enter in the Standing area to notify the Control Center.
+     * @param team int containing the team identifier
      * @throws fi.utils.StopHarvestException when the harvest run has stopped
      * @throws fi.utils.EndSimulationException when the simulation has ended
      */
     @Override
-    public synchronized void waitForAllFarmers() throws StopHarvestException, EndSimulationException{
+    public void waitForAllFarmers(int team) throws StopHarvestException, EndSimulationException{
+        this.waitRandomDelay(this.metadata.controllerOf(team));
+        rl.lock();
         try {
-            this.waitRandomDelay();
-            this.proxyInMonitor=true;
-            while(farmersInStanding<this.metadata.NUMBERFARMERS){
-                wait();
+            Team t=this.teams[team];
+            t.proxyInMonitor=true;
+            while(t.farmersInStanding<t.metadata.NUMBERFARMERS){
+                t.allInStanding.await();
                 
-                if(this.stopHarvest){
-                    entitiesToStop--;
-                    this.proxyInMonitor=false;
-                    if(entitiesToStop==0){
-                        stopHarvest=false;
-                    }
-                    throw new StopHarvestException();
+                if(t.stopHarvest){
+                    t.proxyInMonitor=false;
+                    this.stop(t, 0);
                 }
                 if(this.endSimulation){
                     throw new EndSimulationException();
                 }
             }
-            this.proxyInMonitor=false;
+            t.proxyInMonitor=false;
         } catch (InterruptedException ex) {
             Logger.getLogger(Standing.class.getName()).log(Level.SEVERE, null, ex);
+        } finally {
+            rl.unlock();
         }
     }
     
 
     /**
-     * Notifies every entity in the monitor that either the harvest run has stopped or the simulation has ended. 
+     * Notifies every entity of a team in the monitor that either the team's harvest run has stopped or the simulation has ended.
+     * The end of the simulation applies to every team.
+     * @param team int containing the team identifier
      * @param action string containing the action to perform
      */
     @Override
-    public synchronized void control(String action) {
-        this.waitRandomDelay();
-        switch(action){
-            case "stopHarvest":
-                if(this.farmersInStanding!=0 || proxyInMonitor){
-                    this.stopHarvest=true;
-                    this.entitiesToStop=this.farmersInStanding;
-                    if(proxyInMonitor){
-                        this.entitiesToStop++;
+    public void control(int team, String action) {
+        this.waitRandomDelay(this.metadata.controllerOf(team));
+        rl.lock();
+        try{
+            switch(action){
+                case "stopHarvest":
+                    Team t=this.teams[team];
+                    if(t.farmersInStanding!=0 || t.proxyInMonitor){
+                        t.stopHarvest=true;
+                        t.entitiesToStop=t.farmersInStanding;
+                        if(t.proxyInMonitor){
+                            t.entitiesToStop++;
+                        }
                     }
-                }
-                break;
-            case "endSimulation":
-                this.endSimulation=true;
-                break;
-        }
-
-        notifyAll();
+                    break;
+                case "endSimulation":
+                    this.endSimulation=true;
+                    break;
+            }
 
+            for(Team t : this.teams){
+                t.allInStanding.wakeAll();
+                t.startOrder.signalAll();
+            }
+        }
+        finally{
+            rl.unlock();
+        }
     }
     
     
     
+    /**
+     * Retrieves the contention metrics of the standing area monitor.
+     * They are read without holding the monitor's lock, so they may be slightly stale.
+     * @return MonitorMetrics instance of the monitor
+     */
+    public MonitorMetrics getMetrics() {
+        return this.rl.getMetrics();
+    }
+    
     //Aux Methods
     
+    /**
+     * Retrieves the team of a farmer.
+     * @param farmerId int containing the farmer identifier
+     * @return the state of the farmer's team
+     */
+    private Team teamOf(int farmerId){
+        return this.teams[this.metadata.teamOf(farmerId)];
+    }
+    
+    /**
+     * Removes an entity of a team from the monitor when the team's harvest run has stopped.
+     * @param team the state of the entity's team
+     * @param farmerId int containing the farmer identifier (0 for the Control Center Proxy)
+     * @throws fi.utils.StopHarvestException always, to stop the entity's current harvest run
+     */
+    private void stop(Team team, int farmerId) throws StopHarvestException{
+        team.entitiesToStop--;
+        if(farmerId!=0){
+            team.farmersInStanding--;
+            this.availablePosition.release(this.positions[farmerId]);
+            this.positions[farmerId]=-1;
+        }
+        if(team.entitiesToStop==0){
+            team.stopHarvest=false;
+        }
+        throw new StopHarvestException();
+    }
+    
     /**
      * Selects a spot in the Standing area position for a farmer to settle on.
      * @param farmerId int containing the farmer identifier
      */
     private void selectSpot(int farmerId){
-        int randomPosition=(int)(Math.random()*this.availablePosition.size());
-        this.positions.put(farmerId, availablePosition.get(randomPosition));
-        this.availablePosition.remove(randomPosition);
-        this.fi.presentFarmerInStandingArea(farmerId,positions.get(farmerId));
-        this.fi.sendMessage("presentInStanding;"+farmerId+";"+positions.get(farmerId));
+        this.positions[farmerId]=this.availablePosition.acquire(this.random[farmerId]);
+        this.fi.presentFarmerInStandingArea(farmerId,positions[farmerId]);
+        this.fi.sendMessage(new Message(MessageType.PRESENT_IN_STANDING, farmerId, positions[farmerId]));
     }
     
     /**
      * Auxiliary function created to make each thread wait a random delay.
+     * Must be called before acquiring the monitor's lock, so that the farm areas are not serialized on the delays.
+     * The random stream of a team's controller is shared by the threads handling the team's orders, so it is drawn under its own lock.
+     * @param entity int containing the farmer identifier (or the controller of a team, see MonitorMetadata.controllerOf)
      */
-    private void waitRandomDelay(){
+    private void waitRandomDelay(int entity){
+        int randomDelay;
+        synchronized(this.random[entity]){
+            randomDelay=(int)(this.random[entity].nextDouble()*(this.metadata.MAXDELAY));
+        }
         try {
-            int randomDelay=(int)(Math.random()*(this.metadata.MAXDELAY));
             Thread.sleep(randomDelay);
         } catch (InterruptedException ex) {
             Logger.getLogger(Storehouse.class.getName()).log(Level.SEVERE, null, ex);
@@ -1,47 +1,74 @@
 package fi.monitors;
 
+import common.Message;
+import common.MessageType;
 import fi.utils.EndSimulationException;
 import fi.utils.MonitorMetadata;
+import fi.utils.MonitorMetrics;
 import fi.utils.StopHarvestException;
 import fi.ccInterfaces.StorehouseCCInt;
 import fi.farmerInterfaces.StorehouseFarmerInt;
-import fi.workers.Farmer;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import fi.UiAndMainControlsFI;
 
 /**
  * Class for the monitor representing the Storehouse Sector of the farm.
+ * Farmers store the corn cobs in a configurable number of storing bays, shared by all teams, each serving one farmer at a
+ * time. A farmer holds the monitor's lock only to take and leave a bay, so the farmers in different bays unload
+ * concurrently. The corn cobs stored are kept in a striped counter (LongAdder): the farmers add to it without contending
+ * with each other, and it is read without blocking them.
  * @author Filipe Pires (85122) and João Alegria (85048)
  */
 public class Storehouse implements StorehouseFarmerInt, StorehouseCCInt{
     
+    /**
+     * State of a team of farmers inside the Storehouse. Each team goes through its harvest runs independently.
+     */
+    private class Team {
+        
+        private final MonitorMetadata metadata;
+        private final PhaseBarrier allInStorehouse = new PhaseBarrier(rl);
+        private final Condition prepareOrder = rl.newCondition();
+        private final LongAdder cornCobs=new LongAdder();
+        
+        private int farmersInStorehouse=0;
+        private int farmersSelected=0;
+        private boolean prepareOrderGiven=false;
+        private boolean stopHarvest=false;
+        private boolean proxyInMonitor=false;
+        private int entitiesToStop=0;
+        
+        /**
+         * Team constructor.
+         * @param metadata MonitorMetadata instance containing the parameters to the team's current harvest run
+         */
+        private Team(MonitorMetadata metadata) {
+            this.metadata=metadata;
+        }
+    }
+    
     //Monitor variables
 
     private UiAndMainControlsFI fi;
     private MonitorMetadata metadata;
     
-    private ReentrantLock rl = new ReentrantLock();
-    private Condition allInStorehouse = rl.newCondition();
-    private Condition prepareOrder = rl.newCondition();
+    private MonitorLock rl = new MonitorLock(new MonitorMetrics(0, "Storehouse"));
     
-    private Map<Integer, Integer> positions;
-    private List<Integer> availablePosition;
+    private int[] positions;
+    private SlotAllocator availablePosition;
+    private SlotAllocator availableBay;
+    private Condition bayFree = rl.newCondition();
+    private SplittableRandom[] random;
+    private Team[] teams;
     
-    private int farmersInStorehouse;
-    private int farmersSelected;
-    private boolean prepareOrderGiven;
-    private boolean stopHarvest=false;
     private boolean endSimulation=false;
-    private boolean proxyInMonitor=false;
-    private int entitiesToStop=0;
-    private int cornCobs=0;
+    private final LongAdder cornCobs=new LongAdder();
     
     //Constructors
     
@@ -49,18 +76,19 @@ public class Storehouse implements StorehouseFarmerInt, StorehouseCCInt{
      * Storehouse monitor constructor.
      * @param fi UiAndMainControlsFI instance enabling the access to the farm infrastructure ui and websocket client
      * @param metadata MonitorMetadata instance containing the parameters to the current harvest run
+     * @param bays int containing the number of storing bays
      */
-    public Storehouse(UiAndMainControlsFI fi, MonitorMetadata metadata) {
+    public Storehouse(UiAndMainControlsFI fi, MonitorMetadata metadata, int bays) {
         this.fi = fi;
         this.metadata=metadata;
-        farmersInStorehouse = 0;
-        farmersSelected = 0;
-        //farmersMetadata = new HashMap();
-        prepareOrderGiven = false;
-        positions=new HashMap<Integer, Integer>();
-        availablePosition=new ArrayList<Integer>();
-        for(int i=0; i<this.metadata.MAXNUMBERFARMERS;i++){
-            availablePosition.add(i);
+        positions=new int[this.metadata.MAXNUMBERFARMERS+1];
+        Arrays.fill(positions, -1);
+        availablePosition=new SlotAllocator(this.metadata.MAXNUMBERFARMERS);
+        availableBay=new SlotAllocator(Math.max(1, bays));
+        random=this.metadata.newRandoms("Storehouse");
+        teams=new Team[this.metadata.NUMBERTEAMS];
+        for(int i=0; i<teams.length; i++){
+            teams[i]=new Team(this.metadata.team(i));
         }
     }
     
@@ -70,22 +98,44 @@ public class Storehouse implements StorehouseFarmerInt, StorehouseCCInt{
     /**
      * After collecting the cobs, each farmer must store the collected corn cobs in the storehouse 
      * before entering and preparing for another run.
-     * If the farmer is carrying cobs the cobs are added to the cobs in the storehouse and removed from the farmer.
+     * The farmer waits for a free storing bay and unloads there, outside the monitor's lock.
+     * If the simulation ends while waiting, the farmer stops waiting and unloads at once, without a bay.
+     * If the farmer is carrying cobs the cobs are added to the cobs in the storehouse.
+     * The storehouse's corn cobs are shared by all teams.
      * @param farmerId int containing the farmer identifier
+     * @param cornCobs int containing the number of corn cobs carried by the farmer
      */
     @Override
-    public void farmerStore(int farmerId){
+    public void farmerStore(int farmerId, int cornCobs){
+        int bay=-1;
+        this.waitRandomDelay(farmerId);
         rl.lock();
         try {
-            this.waitRandomDelay();
-            this.fi.sendMessage("presentInStoring;"+farmerId);
-            this.fi.presentStoringFarmer(farmerId);
-            int cobs = ((Farmer)Thread.currentThread()).getCornCobs();
-            this.cornCobs+=cobs;
-            ((Farmer)Thread.currentThread()).setCornCobs(0);
-            this.fi.updateStorehouseCornCobs(this.cornCobs);
-            this.fi.sendMessage("updateStorehouseCobs;"+this.cornCobs);
-            this.waitTimeout();
+            while(this.availableBay.available()==0 && !this.endSimulation){
+                this.bayFree.await();
+            }
+            if(!this.endSimulation){
+                bay=this.availableBay.acquire(this.random[farmerId]);
+                this.fi.sendMessage(new Message(MessageType.PRESENT_IN_STORING, farmerId, bay));
+                this.fi.presentStoringFarmer(farmerId, bay);
+            }
+        } catch (InterruptedException ex) {
+            Logger.getLogger(Storehouse.class.getName()).log(Level.SEVERE, null, ex);
+        } finally {
+            rl.unlock();
+        }
+        this.cornCobs.add(cornCobs);
+        this.teamOf(farmerId).cornCobs.add(cornCobs);
+        if(bay>=0){
+            this.waitTimeout(this.teamOf(farmerId));
+        }
+        rl.lock();
+        try {
+            if(bay>=0){
+                this.availableBay.release(bay);
+                this.bayFree.signal();
+            }
+            this.presentCornCobs();
         } finally {
             rl.unlock();
         }
@@ -93,38 +143,32 @@ public class Storehouse implements StorehouseFarmerInt, StorehouseCCInt{
     
     /**
      * Registers the entry of a farmer in the storehouse.
-     * Farmers must wait for all farmers the be inside the storehouse.
+     * Farmers must wait for all farmers of their team the be inside the storehouse.
      * @param farmerId int containing the farmer identifier
      * @throws fi.utils.StopHarvestException when the harvest run has stopped
      * @throws fi.utils.EndSimulationException when the simulation has ended
      */
     @Override
     public void farmerEnter(int farmerId) throws StopHarvestException, EndSimulationException{
+        this.waitRandomDelay(farmerId);
         rl.lock();
         try {
-            this.waitRandomDelay();
-            farmersInStorehouse++;
+            Team team=this.teamOf(farmerId);
+            team.farmersInStorehouse++;
             this.selectSpot(farmerId);
             System.out.println("[Storehouse] Farmer " + farmerId + " entered.");
-            while(farmersInStorehouse<this.metadata.MAXNUMBERFARMERS){
-                allInStorehouse.await();
+            int phase=team.allInStorehouse.arrive(team.metadata.MAXNUMBERFARMERS);
+            while(!team.allInStorehouse.hasAdvanced(phase)){
+                team.allInStorehouse.await();
                 
-                if(this.stopHarvest){
-                    entitiesToStop--;
-                    farmersInStorehouse--;
-                    this.availablePosition.add(this.positions.get(farmerId));
-                    this.positions.remove(farmerId);
-                    if(entitiesToStop==0){
-                        prepareOrderGiven=false;
-                        stopHarvest=false;
-                    }
-                    throw new StopHarvestException();
+                if(team.stopHarvest){
+                    team.allInStorehouse.depart(phase);
+                    this.stop(team, farmerId);
                 }
                 if(this.endSimulation){
                     throw new EndSimulationException();
                 }
             }
-            allInStorehouse.signalAll();
         } catch (InterruptedException ex) {
             Logger.getLogger(Storehouse.class.getName()).log(Level.SEVERE, null, ex);
         } finally {
@@ -133,7 +177,7 @@ public class Storehouse implements StorehouseFarmerInt, StorehouseCCInt{
     }
     
     /**
-     * Farmers must wait for a prepare order given by the Control Center.
+     * Farmers must wait for a prepare order given by the Control Center to their team.
      * Farmers must execute this method after entering in the storehouse.
      * @param farmerId int containing the farmer identifier
      * @throws fi.utils.StopHarvestException when the harvest run has stopped
@@ -141,34 +185,30 @@ public class Storehouse implements StorehouseFarmerInt, StorehouseCCInt{
      */
     @Override
     public void farmerWaitPrepareOrder(int farmerId) throws StopHarvestException, EndSimulationException {
+        this.waitRandomDelay(farmerId);
         rl.lock();
         try {
-            this.waitRandomDelay();
-            while(!prepareOrderGiven){
-                prepareOrder.await();
-                if(this.stopHarvest){
-                    entitiesToStop--;
-                    farmersInStorehouse--;
-                    this.availablePosition.add(this.positions.get(farmerId));
-                    this.positions.remove(farmerId);
-                    if(entitiesToStop==0){
-                        prepareOrderGiven=false;
-                        stopHarvest=false;
-                    }
-                    throw new StopHarvestException();
+            Team team=this.teamOf(farmerId);
+            if(this.endSimulation){
+                throw new EndSimulationException();
+            }
+            while(!team.prepareOrderGiven){
+                team.prepareOrder.await();
+                if(team.stopHarvest){
+                    this.stop(team, farmerId);
                 }
                 if(this.endSimulation){
                     throw new EndSimulationException();
                 }
             }
-            farmersSelected++;
-            farmersInStorehouse--;
-            this.availablePosition.add(this.positions.get(farmerId));
-            this.positions.remove(farmerId);
+            team.farmersSelected++;
+            team.farmersInStorehouse--;
+            this.availablePosition.release(this.positions[farmerId]);
+            this.positions[farmerId]=-1;
             
-            if(farmersSelected==metadata.NUMBERFARMERS){
-                farmersSelected = 0;
-                prepareOrderGiven = false;
+            if(team.farmersSelected==team.metadata.NUMBERFARMERS){
+                team.farmersSelected = 0;
+                team.prepareOrderGiven = false;
             }
 
         } catch (InterruptedException ex) {
@@ -181,33 +221,30 @@ public class Storehouse implements StorehouseFarmerInt, StorehouseCCInt{
     //Methods executed by Message Processor
     
     /**
-     * Control Center Proxy must wait for all farmers to enter in the Storehouse to notify the Control Center.
+     * Control Center Proxy must wait for all farmers of a team to enter in the Storehouse to notify the Control Center.
+     * @param team int containing the team identifier
      * @throws fi.utils.StopHarvestException when the harvest run has stopped
      * @throws fi.utils.EndSimulationException when the simulation has ended
      */
     @Override
-    public void waitAllFarmersReady() throws StopHarvestException, EndSimulationException{
+    public void waitAllFarmersReady(int team) throws StopHarvestException, EndSimulationException{
+        this.waitRandomDelay(this.metadata.controllerOf(team));
         rl.lock();
         try {
-            this.waitRandomDelay();
-            this.proxyInMonitor=true;
-            while(farmersInStorehouse<metadata.MAXNUMBERFARMERS){
-                allInStorehouse.await();
+            Team t=this.teams[team];
+            t.proxyInMonitor=true;
+            while(t.farmersInStorehouse<t.metadata.MAXNUMBERFARMERS){
+                t.allInStorehouse.await();
                 
-                if(this.stopHarvest){
-                    this.entitiesToStop--;
-                    this.proxyInMonitor=false;
-                    if(entitiesToStop==0){
-                        prepareOrderGiven=false;
-                        stopHarvest=false;
-                    }
-                    throw new StopHarvestException();
+                if(t.stopHarvest){
+                    t.proxyInMonitor=false;
+                    this.stop(t, 0);
                 }
                 if(this.endSimulation){
                     throw new EndSimulationException();
                 }
             }
-            this.proxyInMonitor=false;
+            t.proxyInMonitor=false;
         } catch (InterruptedException ex) {
             Logger.getLogger(Storehouse.class.getName()).log(Level.SEVERE, null, ex);
         } finally {
@@ -216,51 +253,76 @@ public class Storehouse implements StorehouseFarmerInt, StorehouseCCInt{
     }
     
     /**
-     * Notifies all the farmers waiting for a prepare order.
-     * Simultaneously defines the characteristics of the current harvest run, which are:
+     * Notifies all the farmers of a team waiting for a prepare order.
+     * Simultaneously defines the characteristics of the team's current harvest run, which are:
      * 1. The number of selected farmers
      * 2. The number of corn cobs each farmer must collect
      * 3. The maximum number of steps each farmer may do in the path area
      * 4. The timeout to take in consideration in the path and granary areas
+     * @param team int containing the team identifier
+     * @param numberOfFarmers int containing the number of selected farmers
+     * @param numberOfCornCobs int containing the number of corn cobs each farmer must collect
+     * @param maxNumberOfSteps int containing the maximum number of steps each farmer may take in the path area
+     * @param timeout int containing the timeout to consider in the path and granary area
+     */
+    @Override
+    public void sendSelectionAndPrepareOrder(int team, int numberOfFarmers, int numberOfCornCobs, int maxNumberOfSteps, int timeout) {
+        this.sendSelectionAndPrepareOrder(team, numberOfFarmers, numberOfCornCobs, maxNumberOfSteps, timeout, () -> false);
+    }
+    
+    /**
+     * Same as the prepare order above, unless the order was cancelled in the meantime.
+     * The cancellation is checked under the monitor's lock, so a stop order given after the check (which must take this
+     * lock to stop the team) always finds the harvest run prepared, and a team driver halted before it never prepares it.
+     * @param team int containing the team identifier
      * @param numberOfFarmers int containing the number of selected farmers
      * @param numberOfCornCobs int containing the number of corn cobs each farmer must collect
      * @param maxNumberOfSteps int containing the maximum number of steps each farmer may take in the path area
      * @param timeout int containing the timeout to consider in the path and granary area
+     * @param cancelled condition telling whether the order was cancelled
+     * @return true if the order was given, false if it was cancelled
      */
     @Override
-    public void sendSelectionAndPrepareOrder(int numberOfFarmers, int numberOfCornCobs, int maxNumberOfSteps, int timeout) {
+    public boolean sendSelectionAndPrepareOrder(int team, int numberOfFarmers, int numberOfCornCobs, int maxNumberOfSteps, int timeout, BooleanSupplier cancelled) {
+        this.waitRandomDelay(this.metadata.controllerOf(team));
         rl.lock();
         try{
-            this.waitRandomDelay();
-            this.metadata.NUMBERFARMERS = numberOfFarmers;
-            this.metadata.NUMBERCORNCOBS = numberOfCornCobs;
-            this.metadata.NUMBERSTEPS = maxNumberOfSteps;
-            this.metadata.TIMEOUT = timeout;
-            this.prepareOrderGiven = true;
-            this.prepareOrder.signalAll();
+            if(cancelled.getAsBoolean()){
+                return false;
+            }
+            Team t=this.teams[team];
+            t.metadata.NUMBERFARMERS = numberOfFarmers;
+            t.metadata.NUMBERCORNCOBS = numberOfCornCobs;
+            t.metadata.NUMBERSTEPS = maxNumberOfSteps;
+            t.metadata.TIMEOUT = timeout;
+            t.prepareOrderGiven = true;
+            t.prepareOrder.signalAll();
+            return true;
         }
         finally{
             rl.unlock();
         }
-        
     }
     
     /**
-     * Notifies every entity in the monitor that either the harvest run has stopped or the simulation has ended. 
+     * Notifies every entity of a team in the monitor that either the team's harvest run has stopped or the simulation has ended.
+     * The end of the simulation applies to every team.
+     * @param team int containing the team identifier
      * @param action string containing the action to perform
      */
     @Override
-    public void control(String action) {
+    public void control(int team, String action) {
+        this.waitRandomDelay(this.metadata.controllerOf(team));
         rl.lock();
         try{
-            this.waitRandomDelay();
             switch(action){
                 case "stopHarvest":
-                    if(this.farmersInStorehouse!=0 || proxyInMonitor){
-                        this.stopHarvest=true;
-                        this.entitiesToStop=this.farmersInStorehouse;
-                        if(proxyInMonitor){
-                            this.entitiesToStop++;
+                    Team t=this.teams[team];
+                    if(t.farmersInStorehouse!=0 || t.proxyInMonitor){
+                        t.stopHarvest=true;
+                        t.entitiesToStop=t.farmersInStorehouse;
+                        if(t.proxyInMonitor){
+                            t.entitiesToStop++;
                         }
                     }
                     break;
@@ -269,34 +331,109 @@ public class Storehouse implements StorehouseFarmerInt, StorehouseCCInt{
                     break;
             }
 
-            this.allInStorehouse.signalAll();
-            this.prepareOrder.signalAll();
+            for(Team t : this.teams){
+                t.allInStorehouse.wakeAll();
+                t.prepareOrder.signalAll();
+            }
+            this.bayFree.signalAll();
         }
         finally{
             rl.unlock();
         }
     }
     
+    /**
+     * Retrieves the number of corn cobs stored in the storehouse.
+     * @return long containing the number of corn cobs in the storehouse
+     */
+    @Override
+    public long getCornCobs() {
+        return this.cornCobs.sum();
+    }
+    
+    /**
+     * Retrieves the number of corn cobs stored in the storehouse by the farmers of a team.
+     * @param team int containing the team identifier
+     * @return long containing the number of corn cobs stored by the team
+     */
+    @Override
+    public long getCornCobs(int team) {
+        return this.teams[team].cornCobs.sum();
+    }
+    
+    /**
+     * Retrieves the contention metrics of the storehouse monitor.
+     * They are read without holding the monitor's lock, so they may be slightly stale.
+     * @return MonitorMetrics instance of the monitor
+     */
+    public MonitorMetrics getMetrics() {
+        return this.rl.getMetrics();
+    }
+    
     //Aux Methods
     
+    /**
+     * Retrieves the team of a farmer.
+     * @param farmerId int containing the farmer identifier
+     * @return the state of the farmer's team
+     */
+    private Team teamOf(int farmerId){
+        return this.teams[this.metadata.teamOf(farmerId)];
+    }
+    
+    /**
+     * Removes an entity of a team from the monitor when the team's harvest run has stopped.
+     * @param team the state of the entity's team
+     * @param farmerId int containing the farmer identifier (0 for the Control Center Proxy)
+     * @throws fi.utils.StopHarvestException always, to stop the entity's current harvest run
+     */
+    private void stop(Team team, int farmerId) throws StopHarvestException{
+        team.entitiesToStop--;
+        if(farmerId!=0){
+            team.farmersInStorehouse--;
+            this.availablePosition.release(this.positions[farmerId]);
+            this.positions[farmerId]=-1;
+        }
+        if(team.entitiesToStop==0){
+            team.prepareOrderGiven=false;
+            team.stopHarvest=false;
+        }
+        throw new StopHarvestException();
+    }
+    
+    /**
+     * Presents the corn cobs stored in the storehouse.
+     * Must be called while holding the monitor's lock, so that the presented values follow the order in which the farmers
+     * leave their bays.
+     */
+    private void presentCornCobs(){
+        long stored=this.cornCobs.sum();
+        this.fi.updateStorehouseCornCobs(stored);
+        this.fi.sendMessage(new Message(MessageType.UPDATE_STOREHOUSE_COBS, stored));
+    }
+    
     /**
      * Selects a spot in the Storehouse position for a farmer to settle on.
      * @param farmerId int containing the farmer identifier
      */
     private void selectSpot(int farmerId){
-        int randomPosition=(int)(Math.random()*this.availablePosition.size());
-        this.positions.put(farmerId, availablePosition.get(randomPosition));
-        this.availablePosition.remove(randomPosition);
-        this.fi.presentFarmerInStorehouse(farmerId,positions.get(farmerId));
-        this.fi.sendMessage("presentInStorehouse;"+farmerId+";"+positions.get(farmerId));
+        this.positions[farmerId]=this.availablePosition.acquire(this.random[farmerId]);
+        this.fi.presentFarmerInStorehouse(farmerId,positions[farmerId]);
+        this.fi.sendMessage(new Message(MessageType.PRESENT_IN_STOREHOUSE, farmerId, positions[farmerId]));
     }
     
     /**
      * Auxiliary function created to make each thread wait a random delay.
+     * Must be called before acquiring the monitor's lock, so that the farm areas are not serialized on the delays.
+     * The random stream of a team's controller is shared by the threads handling the team's orders, so it is drawn under its own lock.
+     * @param entity int containing the farmer identifier (or the controller of a team, see MonitorMetadata.controllerOf)
      */
-    private void waitRandomDelay(){
+    private void waitRandomDelay(int entity){
+        int randomDelay;
+        synchronized(this.random[entity]){
+            randomDelay=(int)(this.random[entity].nextDouble()*(this.metadata.MAXDELAY));
+        }
         try {
-            int randomDelay=(int)(Math.random()*(this.metadata.MAXDELAY));
             Thread.sleep(randomDelay);
         } catch (InterruptedException ex) {
             Logger.getLogger(Storehouse.class.getName()).log(Level.SEVERE, null, ex);
@@ -305,10 +442,12 @@ public class Storehouse implements StorehouseFarmerInt, StorehouseCCInt{
     
     /**
      * Auxiliary function created to make each thread wait the specified timeout defined by the user.
+     * Must be called without holding the monitor's lock.
+     * @param team the state of the team whose timeout applies
      */
-    private void waitTimeout(){
+    private void waitTimeout(Team team){
         try {
-            Thread.sleep(this.metadata.TIMEOUT);
+            Thread.sleep(team.metadata.TIMEOUT);
         } catch (InterruptedException ex) {
             Logger.getLogger(Path.class.getName()).log(Level.SEVERE, null, ex);
         }
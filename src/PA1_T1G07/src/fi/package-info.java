@@ -1,5 +1,5 @@
 /**
- * Provides the FarmInfrastructure class and the interface it implements.
+ * Provides the headless FarmEngine, its Swing view (FarmInfrastructure) and the interfaces they implement.
  * Within this package there are several sub-packages for interfaces, monitors, farmer threads and utilities.
  */
 package fi;
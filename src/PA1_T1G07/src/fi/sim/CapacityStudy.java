@@ -0,0 +1,145 @@
+package fi.sim;
+
+import common.Configuration;
+import common.Message;
+import common.MessageType;
+import fi.FarmEngine;
+import fi.UiAndMainControlsFI;
+import fi.utils.MonitorMetadata;
+import fi.views.NoOpFarmView;
+
+/**
+ * Capacity study of the farm, run on the discrete-event simulation.
+ * The study plays the role of the Control Center, ordering one full harvest after the other (prepare, start, collect and
+ * return) with every farmer selected, and checks that each order gets the same reply the Farm Infrastructure would send.
+ * For each configured number of farmers it reports the harvests simulated per second of real time, the simulated time
+ * each harvest takes and the number of messages and events per harvest.
+ * Configuration (-Dharvest.sim.*): farmers (comma separated list, default 5,50,500), harvests (default 1000),
+ * cobs (corn cobs collected by each farmer, default 1), steps (maximum steps in the path, default 2),
+ * timeout (ms, default 500) and delay (maximum random delay in ms, default the one of the Farm Infrastructure).
+ * The path length is the one of the Farm Infrastructure. The simulation is deterministic: runs with the same seed
+ * (-Dharvest.seed, random by default) simulate exactly the same harvests.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public class CapacityStudy {
+
+    /**
+     * Farm Infrastructure controls that discard the presentation updates and keep the replies sent to the Control Center.
+     */
+    private static class StudyControls extends NoOpFarmView implements UiAndMainControlsFI {
+
+        /**
+         * Number of messages sent to the Control Center.
+         */
+        private long messages = 0;
+        /**
+         * Last reply (ALL_FARMERS_*) sent to the Control Center.
+         */
+        private MessageType reply;
+
+        @Override
+        public void sendMessage(Message message) {
+            this.messages++;
+            switch (message.getType()) {
+                case ALL_FARMERS_READY_TO_START:
+                case ALL_FARMERS_READY_TO_COLLECT:
+                case ALL_FARMERS_READY_TO_RETURN:
+                case ALL_FARMERS_READY_WAITING:
+                    this.reply = message.getType();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void closeSocketClient() {
+        }
+    }
+
+    /**
+     * Controls given to the simulated farm.
+     */
+    private final StudyControls controls = new StudyControls();
+    /**
+     * Simulated farm.
+     */
+    private final SimulatedFarm farm;
+    /**
+     * Number of farmers of the study.
+     */
+    private final int farmers;
+
+    /**
+     * Class constructor. Creates the simulated farm and starts its farmers.
+     * @param farmers number of farmers.
+     * @param delay maximum random delay (in ms).
+     * @param seed seed of the simulation.
+     */
+    public CapacityStudy(int farmers, int delay, long seed) {
+        this.farmers = farmers;
+        this.farm = new SimulatedFarm(this.controls, new MonitorMetadata(farmers, delay, seed), FarmEngine.pathSize,
+                Math.max(farmers, FarmEngine.pathWidth), FarmEngine.granaryLanes, FarmEngine.storehouseBays);
+        this.farm.start();
+        this.order(new Message(MessageType.WAIT_SIMULATION_READY), MessageType.ALL_FARMERS_READY_WAITING);
+    }
+
+    /**
+     * Runs a number of full harvests.
+     * @param harvests number of harvests.
+     * @param cobs number of corn cobs collected by each farmer.
+     * @param steps maximum number of steps of the farmers in the path.
+     * @param timeout timeout (in ms) of each movement.
+     */
+    public void run(int harvests, int cobs, int steps, int timeout) {
+        for (int h = 0; h < harvests; h++) {
+            this.order(new Message(MessageType.PREPARE_ORDER, this.farmers, cobs, steps, timeout), MessageType.ALL_FARMERS_READY_TO_START);
+            this.order(new Message(MessageType.START_HARVEST_ORDER), MessageType.ALL_FARMERS_READY_TO_COLLECT);
+            this.order(new Message(MessageType.COLLECT_ORDER), MessageType.ALL_FARMERS_READY_TO_RETURN);
+            this.order(new Message(MessageType.RETURN_ORDER), MessageType.ALL_FARMERS_READY_WAITING);
+        }
+    }
+
+    /**
+     * Gives an order to the farm and checks its reply.
+     * @param order order given.
+     * @param expected reply expected from the farm.
+     */
+    private void order(Message order, MessageType expected) {
+        this.controls.reply = null;
+        this.farm.processMessage(order);
+        if (this.controls.reply != expected) {
+            throw new IllegalStateException("Expected " + expected + " after " + order.getType() + " but got " + this.controls.reply);
+        }
+    }
+
+    /**
+     * Main function running the study for every configured number of farmers.
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        int harvests = Configuration.getInt("sim.harvests", 1000);
+        int cobs = Configuration.getInt("sim.cobs", 1);
+        int steps = Configuration.getInt("sim.steps", 2);
+        int timeout = Configuration.getInt("sim.timeout", 500);
+        int delay = Configuration.getInt("sim.delay", FarmEngine.maxDelay);
+        String[] farmerCounts = Configuration.getString("sim.farmers", "5,50,500").split(",");
+        long seed = Configuration.getLong("seed", System.nanoTime());
+
+        System.out.printf("Capacity study: %d harvests, path of %d, up to %d steps, %d cobs per farmer, timeout %d ms, delay up to %d ms, seed %d%n",
+                harvests, FarmEngine.pathSize, steps, cobs, timeout, delay, seed);
+        System.out.printf("%8s %12s %18s %14s %14s%n", "farmers", "harvests/s", "simulated s/harv", "msgs/harvest", "events/harvest");
+        for (String count : farmerCounts) {
+            CapacityStudy study = new CapacityStudy(Integer.parseInt(count.trim()), delay, seed);
+            long messages = study.controls.messages;
+            long events = study.farm.getEvents();
+            long virtualStart = study.farm.getVirtualTime();
+            long start = System.nanoTime();
+            study.run(harvests, cobs, steps, timeout);
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%8d %12.1f %18.2f %14d %14d%n", study.farmers, harvests / elapsed,
+                    (study.farm.getVirtualTime() - virtualStart) / 1e3 / harvests, (study.controls.messages - messages) / harvests,
+                    (study.farm.getEvents() - events) / harvests);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package fi.sim;
+
+import java.util.PriorityQueue;
+
+/**
+ * Virtual clock and priority queue of the events of a discrete-event simulation.
+ * Events are run in order of their virtual time (in ms); events scheduled for the same time are run in the order they
+ * were scheduled. Running an event advances the clock to its time, so delays cost no real time at all.
+ * Not thread-safe: the events must be scheduled and run by a single thread.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public class EventQueue {
+
+    /**
+     * Event scheduled in the queue.
+     */
+    private static class Event implements Comparable<Event> {
+
+        /**
+         * Virtual time (in ms) at which the event happens.
+         */
+        private final long time;
+        /**
+         * Order in which the event was scheduled, used to break ties between events happening at the same time.
+         */
+        private final long sequence;
+        /**
+         * Action performed when the event happens.
+         */
+        private final Runnable action;
+
+        /**
+         * Class constructor.
+         * @param time virtual time (in ms) at which the event happens.
+         * @param sequence order in which the event was scheduled.
+         * @param action action performed when the event happens.
+         */
+        private Event(long time, long sequence, Runnable action) {
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            if (this.time != other.time) {
+                return Long.compare(this.time, other.time);
+            }
+            return Long.compare(this.sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Events waiting to happen, ordered by time.
+     */
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    /**
+     * Current virtual time (in ms).
+     */
+    private long now = 0;
+    /**
+     * Number of events scheduled so far.
+     */
+    private long scheduled = 0;
+    /**
+     * Number of events run so far.
+     */
+    private long processed = 0;
+
+    /**
+     * Auxiliary method to retrieve the current virtual time.
+     * @return current virtual time (in ms).
+     */
+    public long now() {
+        return this.now;
+    }
+
+    /**
+     * Schedules an event after a delay.
+     * @param delay delay (in ms) from the current virtual time.
+     * @param action action performed when the event happens.
+     */
+    public void schedule(long delay, Runnable action) {
+        this.scheduleAt(this.now + Math.max(0, delay), action);
+    }
+
+    /**
+     * Schedules an event at a given time. Events in the past happen at the current time.
+     * @param time virtual time (in ms) at which the event happens.
+     * @param action action performed when the event happens.
+     */
+    public void scheduleAt(long time, Runnable action) {
+        this.events.add(new Event(Math.max(this.now, time), this.scheduled++, action));
+    }
+
+    /**
+     * Runs the events in order until there are none left, that is, until every entity waits for something outside the
+     * simulation.
+     */
+    public void runUntilIdle() {
+        Event event;
+        while ((event = this.events.poll()) != null) {
+            this.now = event.time;
+            this.processed++;
+            event.action.run();
+        }
+    }
+
+    /**
+     * Auxiliary method to retrieve the number of events run.
+     * @return number of events run so far.
+     */
+    public long getProcessed() {
+        return this.processed;
+    }
+}
@@ -0,0 +1,1001 @@
+package fi.sim;
+
+import common.Message;
+import common.MessageProcessor;
+import common.MessageType;
+import fi.FarmEngine;
+import fi.UiAndMainControlsFI;
+import fi.monitors.CornCobStock;
+import fi.monitors.SlotAllocator;
+import fi.utils.MonitorMetadata;
+import fi.workers.FarmerState;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Discrete-event implementation of the farm, alternative to the monitors and the farmer threads.
+ * The farmers go through the same life-cycle (FarmerState INITIAL to STORE) and the farm areas follow the same rules as
+ * the monitors, but everything runs in a single thread on a virtual clock: the random delays and the timeouts advance the
+ * simulated time instead of sleeping.
+ * The lock of each monitor is modeled as well: a farmer (or the Control Center Proxy) holds the lock of an area during its
+ * delay and timeout, so entities entering the same area are served one at a time, as in the monitors.
+ * Collecting and storing are the exceptions: the farmers collect in the granary's lanes and store in the storehouse's bays,
+ * each serving one farmer at a time, and only hold the area's lock to take a lane or bay and to leave it once done.
+ * In the concurrent path mode (-Dharvest.path.concurrent) the farmers walk without taking turns or holding the path's lock,
+ * each one moving as soon as his timeout elapses.
+ * The farm reacts to the same Control Center orders as the Control Center Proxy and produces the same stream of messages
+ * and presentation updates. Each order runs the simulation until every entity waits for the next order.
+ * An autonomous harvest order runs the harvest runs back-to-back, giving each order as soon as the previous one is done,
+ * until the granary is empty, the storehouse holds the target number of corn cobs or a harvest run stores no corn cobs.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public class SimulatedFarm implements MessageProcessor {
+
+    /**
+     * Index of the storehouse's lock.
+     */
+    private static final int STOREHOUSE = 0;
+    /**
+     * Index of the standing area's lock.
+     */
+    private static final int STANDING = 1;
+    /**
+     * Index of the path's lock.
+     */
+    private static final int PATH = 2;
+    /**
+     * Index of the granary's lock.
+     */
+    private static final int GRANARY = 3;
+
+    /**
+     * Farm area where farmers settle in a random free position.
+     */
+    private static class Area {
+
+        /**
+         * Free positions of the area.
+         */
+        private final SlotAllocator availablePosition;
+        /**
+         * Position of each farmer inside the area (-1 if outside), indexed by farmer identifier.
+         */
+        private final int[] positions;
+        /**
+         * Number of farmers inside the area.
+         */
+        private int farmersInside = 0;
+
+        /**
+         * Class constructor.
+         * @param farmers maximum number of farmers.
+         */
+        private Area(int farmers) {
+            this.availablePosition = new SlotAllocator(farmers);
+            this.positions = new int[farmers + 1];
+            Arrays.fill(this.positions, -1);
+        }
+
+        /**
+         * Settles a farmer in a random free position.
+         * @param farmerId farmer identifier.
+         * @param random generator choosing the position.
+         * @return position taken by the farmer.
+         */
+        private int enter(int farmerId, SplittableRandom random) {
+            this.farmersInside++;
+            return this.settle(farmerId, random);
+        }
+
+        /**
+         * Moves a farmer already inside the area to a random free position.
+         * @param farmerId farmer identifier.
+         * @param random generator choosing the position.
+         * @return position taken by the farmer.
+         */
+        private int settle(int farmerId, SplittableRandom random) {
+            this.positions[farmerId] = this.availablePosition.acquire(random);
+            return this.positions[farmerId];
+        }
+
+        /**
+         * Frees the position of a farmer, without leaving the area.
+         * @param farmerId farmer identifier.
+         */
+        private void release(int farmerId) {
+            this.availablePosition.release(this.positions[farmerId]);
+            this.positions[farmerId] = -1;
+        }
+
+        /**
+         * Removes a farmer from the area.
+         * @param farmerId farmer identifier.
+         */
+        private void leave(int farmerId) {
+            this.release(farmerId);
+            this.farmersInside--;
+        }
+    }
+
+    /**
+     * Barrier releasing the entities that arrived once all the expected ones arrived.
+     */
+    private class Barrier {
+
+        /**
+         * Actions resumed when the barrier is released.
+         */
+        private final ArrayList<Runnable> arrived = new ArrayList<>();
+
+        /**
+         * Registers an arrival.
+         * @param parties number of expected arrivals.
+         * @param resume action resumed when the barrier is released.
+         * @return true if the arrival released the barrier.
+         */
+        private boolean arrive(int parties, Runnable resume) {
+            this.arrived.add(resume);
+            if (this.arrived.size() < parties) {
+                return false;
+            }
+            release(this.arrived);
+            return true;
+        }
+    }
+
+    /**
+     * Farm Infrastructure controls (interface and communication with the Control Center).
+     */
+    private final UiAndMainControlsFI fi;
+    /**
+     * Parameters of the current harvest run.
+     */
+    private final MonitorMetadata metadata;
+    /**
+     * Virtual clock and pending events.
+     */
+    private final EventQueue clock = new EventQueue();
+    /**
+     * Source of the random delays, positions and steps, seeded with the seed of the simulation.
+     */
+    private final SplittableRandom random;
+    /**
+     * Length of the path.
+     */
+    private final int pathSize;
+    /**
+     * Number of positions of each column of the path.
+     */
+    private final int pathWidth;
+    /**
+     * Virtual time at which the lock of each area is released.
+     */
+    private final long[] lockFree = new long[4];
+    /**
+     * Virtual time at which each collection lane of the granary is free.
+     */
+    private final long[] laneFree;
+    /**
+     * Virtual time at which each storing bay of the storehouse is free.
+     */
+    private final long[] bayFree;
+
+    /**
+     * Current state of each farmer, indexed by farmer identifier.
+     */
+    private final FarmerState[] states;
+    /**
+     * Corn cobs carried by each farmer, indexed by farmer identifier.
+     */
+    private final int[] cornCobs;
+
+    /**
+     * Storehouse area.
+     */
+    private Area storehouse;
+    /**
+     * Standing area.
+     */
+    private Area standing;
+    /**
+     * Granary area.
+     */
+    private Area granary;
+
+    /**
+     * Occupation of the path (farmer identifier or 0), indexed by column and position.
+     */
+    private int[][] path;
+    /**
+     * Free positions of each column of the path.
+     */
+    private SlotAllocator[] pathPositions;
+    /**
+     * Column of each farmer in the path, indexed by farmer identifier.
+     */
+    private final int[] depths;
+    /**
+     * Position of each farmer in its column of the path, indexed by farmer identifier.
+     */
+    private final int[] positions;
+    /**
+     * Direction of each farmer in the path (true in the Granary-Storehouse direction), indexed by farmer identifier.
+     */
+    private final boolean[] reverse;
+    /**
+     * Whether each farmer waits for its turn to move in the path, indexed by farmer identifier.
+     */
+    private final boolean[] waitingTurn;
+    /**
+     * Next farmer of the ring of farmers in the path (by entry order), indexed by farmer identifier.
+     */
+    private final int[] next;
+    /**
+     * Previous farmer of the ring of farmers in the path, indexed by farmer identifier.
+     */
+    private final int[] previous;
+    /**
+     * First farmer of the ring (0 if the path is empty).
+     */
+    private int firstFarmer = 0;
+    /**
+     * Farmer holding the turn to move in the path.
+     */
+    private int currentFarmerToMove = 0;
+    /**
+     * Number of farmers in the path.
+     */
+    private int farmersInPath = 0;
+
+    /**
+     * Barrier of the farmers entering the storehouse.
+     */
+    private Barrier allInStorehouse;
+    /**
+     * Barrier of the farmers entering the standing area.
+     */
+    private Barrier allInStanding;
+    /**
+     * Barrier of the farmers entering the path.
+     */
+    private Barrier allInPath;
+    /**
+     * Barrier of the farmers entering the granary.
+     */
+    private Barrier allInGranary;
+    /**
+     * Barrier of the farmers collecting corn cobs.
+     */
+    private Barrier allCollected;
+
+    /**
+     * Farmers waiting for the prepare order, in order of arrival.
+     */
+    private final ArrayDeque<Integer> prepareWaiters = new ArrayDeque<>();
+    /**
+     * Farmers waiting for the start order.
+     */
+    private final ArrayList<Runnable> startWaiters = new ArrayList<>();
+    /**
+     * Farmers waiting for the collect order.
+     */
+    private final ArrayList<Runnable> collectWaiters = new ArrayList<>();
+    /**
+     * Farmers waiting for the return order.
+     */
+    private final ArrayList<Runnable> returnWaiters = new ArrayList<>();
+    /**
+     * Whether the prepare order was given and not all selected farmers left the storehouse.
+     */
+    private boolean prepareOrderGiven = false;
+    /**
+     * Number of farmers that left the storehouse after the prepare order.
+     */
+    private int farmersSelected = 0;
+    /**
+     * Whether the start order was given and not all farmers left the standing area.
+     */
+    private boolean startOrderGiven = false;
+    /**
+     * Whether the collect order was given and not all farmers collected.
+     */
+    private boolean readyToCollect = false;
+    /**
+     * Whether the return order was given and not all farmers left the granary.
+     */
+    private boolean readyToReturn = false;
+    /**
+     * Number of farmers that collected corn cobs.
+     */
+    private int farmersCollected = 0;
+    /**
+     * Corn cobs in the granary (the same stock as the Granary monitor's), regrowing on the virtual clock.
+     */
+    private final CornCobStock granaryCornCobs = new CornCobStock(FarmEngine.granaryCornCobs, FarmEngine.granaryRegrowth,
+            () -> this.clock.now() * 1000000L);
+    /**
+     * Corn cobs in the storehouse.
+     */
+    private long storehouseCornCobs = 0;
+
+    /**
+     * Condition the Control Center Proxy waits for (null if it is not waiting).
+     */
+    private BooleanSupplier proxyCondition;
+    /**
+     * Message sent to the Control Center when the Control Center Proxy's condition holds.
+     */
+    private MessageType proxyReply;
+    /**
+     * Prepare order repeated by the autonomous harvest in progress (null if there is none).
+     */
+    private Message autonomousOrder;
+    /**
+     * Number of corn cobs in the storehouse at which the autonomous harvest ends (0 to harvest until the granary is empty).
+     */
+    private long autonomousTarget;
+    /**
+     * Corn cobs in the storehouse when the last autonomous harvest run started.
+     */
+    private long autonomousStored;
+    /**
+     * Whether the simulation has ended.
+     */
+    private boolean endSimulation = false;
+
+    /**
+     * Class constructor. The farmers start their life-cycle with start().
+     * @param fi Farm Infrastructure controls receiving the messages and presentation updates.
+     * @param metadata parameters of the harvest runs (maximum number of farmers and maximum delay).
+     * @param pathSize length of the path.
+     * @param pathWidth number of positions of each column of the path (at least the maximum number of farmers).
+     * @param lanes number of collection lanes of the granary.
+     * @param bays number of storing bays of the storehouse.
+     */
+    public SimulatedFarm(UiAndMainControlsFI fi, MonitorMetadata metadata, int pathSize, int pathWidth, int lanes, int bays) {
+        this.fi = fi;
+        this.metadata = metadata;
+        this.random = new SplittableRandom(metadata.SEED);
+        this.pathSize = pathSize;
+        this.pathWidth = pathWidth;
+        this.laneFree = new long[Math.max(1, lanes)];
+        this.bayFree = new long[Math.max(1, bays)];
+        int farmers = metadata.MAXNUMBERFARMERS;
+        this.states = new FarmerState[farmers + 1];
+        this.cornCobs = new int[farmers + 1];
+        this.depths = new int[farmers + 1];
+        this.positions = new int[farmers + 1];
+        this.reverse = new boolean[farmers + 1];
+        this.waitingTurn = new boolean[farmers + 1];
+        this.next = new int[farmers + 1];
+        this.previous = new int[farmers + 1];
+        this.reset();
+    }
+
+    /**
+     * Starts the farmers' life-cycle, running the simulation until they all wait in the storehouse.
+     */
+    public synchronized void start() {
+        for (int farmerId = 1; farmerId <= this.metadata.MAXNUMBERFARMERS; farmerId++) {
+            this.storehouseEnter(farmerId);
+        }
+        this.clock.runUntilIdle();
+    }
+
+    /**
+     * Handles an order of the Control Center, as the Control Center Proxy does, and runs the simulation until every entity
+     * waits for the next order.
+     * @param message message received from the Control Center.
+     */
+    @Override
+    public synchronized void processMessage(Message message) {
+        if (this.endSimulation) {
+            return;
+        }
+        this.order(message);
+        if (!this.endSimulation) {
+            this.clock.runUntilIdle();
+        }
+    }
+
+    /**
+     * Gives an order to the farm, scheduling what the Control Center Proxy does on its behalf.
+     * @param message message containing the order.
+     */
+    private void order(Message message) {
+        switch (message.getType()) {
+            case WAIT_SIMULATION_READY:
+                this.call(STOREHOUSE, this.delay(), () -> this.awaitProxy(() -> this.storehouse.farmersInside >= this.metadata.MAXNUMBERFARMERS,
+                        MessageType.ALL_FARMERS_READY_WAITING));
+                break;
+            case PREPARE_ORDER:
+                this.call(STOREHOUSE, this.delay(), () -> {
+                    this.metadata.NUMBERFARMERS = message.getArg(0);
+                    this.metadata.NUMBERCORNCOBS = message.getArg(1);
+                    this.metadata.NUMBERSTEPS = message.getArg(2);
+                    this.metadata.TIMEOUT = message.getArg(3);
+                    this.prepareOrderGiven = true;
+                    this.selectFarmers();
+                    this.call(STANDING, this.delay(), () -> this.awaitProxy(() -> this.standing.farmersInside >= this.metadata.NUMBERFARMERS,
+                            MessageType.ALL_FARMERS_READY_TO_START));
+                });
+                break;
+            case START_HARVEST_ORDER:
+                this.call(STANDING, this.delay(), () -> {
+                    this.startOrderGiven = true;
+                    this.release(this.startWaiters);
+                    this.call(GRANARY, this.delay(), () -> this.awaitProxy(() -> this.granary.farmersInside >= this.metadata.NUMBERFARMERS,
+                            MessageType.ALL_FARMERS_READY_TO_COLLECT));
+                });
+                break;
+            case COLLECT_ORDER:
+                this.call(GRANARY, this.delay(), () -> {
+                    this.readyToCollect = true;
+                    this.release(this.collectWaiters);
+                    this.call(GRANARY, this.delay(), () -> this.awaitProxy(() -> this.farmersCollected >= this.metadata.NUMBERFARMERS,
+                            MessageType.ALL_FARMERS_READY_TO_RETURN));
+                });
+                break;
+            case RETURN_ORDER:
+                this.call(GRANARY, this.delay(), () -> {
+                    this.readyToReturn = true;
+                    this.release(this.returnWaiters);
+                    this.call(STOREHOUSE, this.delay(), () -> this.awaitProxy(() -> this.storehouse.farmersInside >= this.metadata.MAXNUMBERFARMERS,
+                            MessageType.ALL_FARMERS_READY_WAITING));
+                });
+                break;
+            case AUTONOMOUS_HARVEST_ORDER:
+                this.autonomousOrder = new Message(MessageType.PREPARE_ORDER, message.getArg(0), message.getArg(1),
+                        message.getArg(2), message.getArg(3));
+                this.autonomousTarget = message.getLongArg(4);
+                this.autonomousStored = -1;
+                this.call(STOREHOUSE, this.delay(), () -> this.awaitProxy(() -> this.storehouse.farmersInside >= this.metadata.MAXNUMBERFARMERS,
+                        MessageType.ALL_FARMERS_READY_WAITING));
+                break;
+            case STOP_HARVEST_ORDER:
+                this.autonomousOrder = null;
+                this.stopHarvest();
+                this.call(STOREHOUSE, this.delay(), () -> this.awaitProxy(() -> this.storehouse.farmersInside >= this.metadata.MAXNUMBERFARMERS,
+                        MessageType.ALL_FARMERS_READY_WAITING));
+                break;
+            case END_SIMULATION_ORDER:
+                this.endSimulation = true;
+                this.fi.closeSocketClient();
+                this.fi.close();
+                break;
+        }
+    }
+
+    /**
+     * Auxiliary method to retrieve the current virtual time.
+     * @return simulated time (in ms) since the farmers started.
+     */
+    public synchronized long getVirtualTime() {
+        return this.clock.now();
+    }
+
+    /**
+     * Auxiliary method to retrieve the number of events simulated.
+     * @return number of events run so far.
+     */
+    public synchronized long getEvents() {
+        return this.clock.getProcessed();
+    }
+
+    //Farmers' life-cycle
+
+    /**
+     * A farmer enters the storehouse and waits for all farmers to be inside.
+     * @param farmerId farmer identifier.
+     */
+    private void storehouseEnter(int farmerId) {
+        this.states[farmerId] = FarmerState.INITIAL;
+        this.call(STOREHOUSE, this.delay(), () -> {
+            int position = this.storehouse.enter(farmerId, this.random);
+            this.fi.presentFarmerInStorehouse(farmerId, position);
+            this.fi.sendMessage(new Message(MessageType.PRESENT_IN_STOREHOUSE, farmerId, position));
+            this.allInStorehouse.arrive(this.metadata.MAXNUMBERFARMERS, () -> this.waitPrepareOrder(farmerId));
+            this.checkProxy();
+        });
+    }
+
+    /**
+     * A farmer waits in the storehouse for the prepare order.
+     * @param farmerId farmer identifier.
+     */
+    private void waitPrepareOrder(int farmerId) {
+        this.call(STOREHOUSE, this.delay(), () -> {
+            this.prepareWaiters.add(farmerId);
+            this.selectFarmers();
+        });
+    }
+
+    /**
+     * Lets the farmers waiting for the prepare order leave the storehouse, until the selected number of farmers left.
+     */
+    private void selectFarmers() {
+        while (this.prepareOrderGiven && !this.prepareWaiters.isEmpty()) {
+            int farmerId = this.prepareWaiters.poll();
+            this.storehouse.leave(farmerId);
+            this.farmersSelected++;
+            if (this.farmersSelected == this.metadata.NUMBERFARMERS) {
+                this.farmersSelected = 0;
+                this.prepareOrderGiven = false;
+            }
+            this.clock.schedule(0, () -> this.standingEnter(farmerId));
+        }
+    }
+
+    /**
+     * A farmer enters the standing area and waits for all selected farmers to be inside.
+     * @param farmerId farmer identifier.
+     */
+    private void standingEnter(int farmerId) {
+        this.states[farmerId] = FarmerState.PREPARE;
+        this.call(STANDING, this.delay(), () -> {
+            int position = this.standing.enter(farmerId, this.random);
+            this.fi.presentFarmerInStandingArea(farmerId, position);
+            this.fi.sendMessage(new Message(MessageType.PRESENT_IN_STANDING, farmerId, position));
+            this.allInStanding.arrive(this.metadata.NUMBERFARMERS, () -> this.waitStartOrder(farmerId));
+            this.checkProxy();
+        });
+    }
+
+    /**
+     * A farmer waits in the standing area for the start order.
+     * @param farmerId farmer identifier.
+     */
+    private void waitStartOrder(int farmerId) {
+        this.call(STANDING, this.delay(), () -> {
+            Runnable leave = () -> {
+                this.standing.leave(farmerId);
+                if (this.standing.farmersInside == 0) {
+                    this.startOrderGiven = false;
+                }
+                this.pathEnter(farmerId, false);
+            };
+            if (this.startOrderGiven) {
+                leave.run();
+            } else {
+                this.startWaiters.add(leave);
+            }
+        });
+    }
+
+    /**
+     * A farmer enters the path (in either direction) and waits for all selected farmers to be inside.
+     * The last farmer to enter gives the first turn to the first farmer of the ring.
+     * @param farmerId farmer identifier.
+     * @param reverse true if the farmer walks in the Granary-Storehouse direction.
+     */
+    private void pathEnter(int farmerId, boolean reverse) {
+        this.states[farmerId] = reverse ? FarmerState.RETURN : FarmerState.WALK;
+        this.call(PATH, this.delay() + this.metadata.TIMEOUT, () -> {
+            this.farmersInPath++;
+            this.joinRing(farmerId);
+            this.reverse[farmerId] = reverse;
+            this.depths[farmerId] = reverse ? this.pathSize : -1;
+            this.positions[farmerId] = -1;
+            this.selectPathSpot(farmerId, true);
+            if (this.allInPath.arrive(this.metadata.NUMBERFARMERS, () -> this.walk(farmerId))) {
+                this.currentFarmerToMove = this.firstFarmer;
+            }
+        });
+    }
+
+    /**
+     * A farmer starts walking through the path and waits for its turn (or walks on his own in the concurrent path mode).
+     * @param farmerId farmer identifier.
+     */
+    private void walk(int farmerId) {
+        if (FarmEngine.concurrentPath) {
+            this.clock.schedule(this.delay(), () -> this.step(farmerId));
+            return;
+        }
+        this.call(PATH, this.delay(), () -> {
+            this.waitingTurn[farmerId] = true;
+            if (this.currentFarmerToMove == farmerId) {
+                this.move(farmerId);
+            }
+        });
+    }
+
+    /**
+     * A farmer walking in the concurrent path mode moves forward once his timeout elapses, until he leaves the path.
+     * @param farmerId farmer identifier.
+     */
+    private void step(int farmerId) {
+        this.clock.schedule(this.metadata.TIMEOUT, () -> {
+            this.selectPathSpot(farmerId, false);
+            boolean reverse = this.reverse[farmerId];
+            if (reverse ? this.depths[farmerId] >= 0 : this.depths[farmerId] < this.pathSize) {
+                this.step(farmerId);
+                return;
+            }
+            this.farmersInPath--;
+            this.leaveRing(farmerId);
+            if (reverse) {
+                this.storehouseStore(farmerId);
+            } else {
+                this.granaryEnter(farmerId);
+            }
+        });
+    }
+
+    /**
+     * A farmer holding the turn moves forward in the path and passes the turn to the next farmer of the ring.
+     * @param farmerId farmer identifier.
+     */
+    private void move(int farmerId) {
+        this.waitingTurn[farmerId] = false;
+        this.call(PATH, this.metadata.TIMEOUT, () -> {
+            this.selectPathSpot(farmerId, false);
+            if (this.farmersInPath > 1) {
+                this.currentFarmerToMove = this.next[farmerId];
+            }
+            boolean reverse = this.reverse[farmerId];
+            boolean out = reverse ? this.depths[farmerId] < 0 : this.depths[farmerId] >= this.pathSize;
+            if (out) {
+                this.farmersInPath--;
+                this.leaveRing(farmerId);
+            }
+            int nextFarmer = this.currentFarmerToMove;
+            if (nextFarmer != farmerId && this.waitingTurn[nextFarmer]) {
+                this.move(nextFarmer);
+            }
+            if (out) {
+                if (reverse) {
+                    this.storehouseStore(farmerId);
+                } else {
+                    this.granaryEnter(farmerId);
+                }
+            } else if (nextFarmer == farmerId) {
+                this.move(farmerId);
+            } else {
+                this.waitingTurn[farmerId] = true;
+            }
+        });
+    }
+
+    /**
+     * A farmer enters the granary and waits for all selected farmers to be inside.
+     * @param farmerId farmer identifier.
+     */
+    private void granaryEnter(int farmerId) {
+        this.call(GRANARY, this.delay(), () -> {
+            this.presentInGranary(farmerId, this.granary.enter(farmerId, this.random));
+            this.allInGranary.arrive(this.metadata.NUMBERFARMERS, () -> this.waitCollectOrder(farmerId));
+            this.checkProxy();
+        });
+    }
+
+    /**
+     * A farmer waits in the granary for the collect order.
+     * @param farmerId farmer identifier.
+     */
+    private void waitCollectOrder(int farmerId) {
+        this.states[farmerId] = FarmerState.WAITTOCOLLECT;
+        this.call(GRANARY, this.delay(), () -> {
+            if (this.readyToCollect) {
+                this.collect(farmerId);
+            } else {
+                this.collectWaiters.add(() -> this.collect(farmerId));
+            }
+        });
+    }
+
+    /**
+     * A farmer collects corn cobs and waits for all selected farmers to collect.
+     * @param farmerId farmer identifier.
+     */
+    private void collect(int farmerId) {
+        this.states[farmerId] = FarmerState.COLLECT;
+        this.call(GRANARY, this.delay(), () -> {
+            int lane = earliest(this.laneFree);
+            long start = Math.max(this.clock.now(), this.laneFree[lane]);
+            this.laneFree[lane] = start + this.metadata.TIMEOUT;
+            int collectingLane = lane;
+            this.clock.scheduleAt(start, () -> {
+                this.granary.release(farmerId);
+                this.fi.presentCollectingFarmer(farmerId, collectingLane);
+                this.fi.sendMessage(new Message(MessageType.PRESENT_IN_COLLECTING, farmerId, collectingLane));
+                this.cornCobs[farmerId] = (int) this.granaryCornCobs.reserve(Math.min(this.metadata.NUMBERCORNCOBS,
+                        this.metadata.FARMERCAPACITY));
+                this.presentGranaryCornCobs();
+                this.farmersCollected++;
+            });
+            this.clock.scheduleAt(this.laneFree[lane], () -> this.call(GRANARY, 0, () -> {
+                this.presentInGranary(farmerId, this.granary.settle(farmerId, this.random));
+                if (this.allCollected.arrive(this.metadata.NUMBERFARMERS, () -> this.waitReturnOrder(farmerId))) {
+                    this.readyToCollect = false;
+                }
+                this.checkProxy();
+            }));
+        });
+    }
+
+    /**
+     * A farmer waits in the granary for the return order.
+     * @param farmerId farmer identifier.
+     */
+    private void waitReturnOrder(int farmerId) {
+        this.states[farmerId] = FarmerState.WAITTORETURN;
+        this.call(GRANARY, this.delay(), () -> {
+            Runnable leave = () -> {
+                this.granary.leave(farmerId);
+                this.farmersCollected--;
+                if (this.granary.farmersInside == 0) {
+                    this.readyToReturn = false;
+                }
+                this.pathEnter(farmerId, true);
+            };
+            if (this.readyToReturn) {
+                leave.run();
+            } else {
+                this.returnWaiters.add(leave);
+            }
+        });
+    }
+
+    /**
+     * A farmer stores its corn cobs in the storehouse and starts a new life-cycle.
+     * @param farmerId farmer identifier.
+     */
+    private void storehouseStore(int farmerId) {
+        this.states[farmerId] = FarmerState.STORE;
+        this.call(STOREHOUSE, this.delay(), () -> {
+            int bay = earliest(this.bayFree);
+            long start = Math.max(this.clock.now(), this.bayFree[bay]);
+            this.bayFree[bay] = start + this.metadata.TIMEOUT;
+            int storingBay = bay;
+            this.clock.scheduleAt(start, () -> {
+                this.fi.presentStoringFarmer(farmerId, storingBay);
+                this.fi.sendMessage(new Message(MessageType.PRESENT_IN_STORING, farmerId, storingBay));
+            });
+            this.clock.scheduleAt(this.bayFree[bay], () -> this.call(STOREHOUSE, 0, () -> {
+                this.storehouseCornCobs += this.cornCobs[farmerId];
+                this.cornCobs[farmerId] = 0;
+                this.fi.updateStorehouseCornCobs(this.storehouseCornCobs);
+                this.fi.sendMessage(new Message(MessageType.UPDATE_STOREHOUSE_COBS, this.storehouseCornCobs));
+                this.storehouseEnter(farmerId);
+            }));
+        });
+    }
+
+    //Aux Methods
+
+    /**
+     * Stops the current harvest run: the farmers in the granary put their corn cobs back, the ones in the path drop them,
+     * and every farmer goes back to the storehouse. Orders are only handled when every entity waits, so no farmer is in
+     * the middle of an action.
+     */
+    private void stopHarvest() {
+        for (int farmerId = 1; farmerId <= this.metadata.MAXNUMBERFARMERS; farmerId++) {
+            if (this.states[farmerId] == FarmerState.COLLECT || this.states[farmerId] == FarmerState.WAITTORETURN) {
+                this.granaryCornCobs.putBack(this.cornCobs[farmerId]);
+            }
+            this.cornCobs[farmerId] = 0;
+        }
+        this.presentGranaryCornCobs();
+        this.reset();
+        for (int farmerId = 1; farmerId <= this.metadata.MAXNUMBERFARMERS; farmerId++) {
+            this.storehouseEnter(farmerId);
+        }
+    }
+
+    /**
+     * Empties every farm area and forgets the orders given, keeping the corn cobs.
+     */
+    private void reset() {
+        int farmers = this.metadata.MAXNUMBERFARMERS;
+        this.storehouse = new Area(farmers);
+        this.standing = new Area(farmers);
+        this.granary = new Area(farmers);
+        this.path = new int[this.pathSize][this.pathWidth];
+        this.pathPositions = new SlotAllocator[this.pathSize];
+        for (int i = 0; i < this.pathSize; i++) {
+            this.pathPositions[i] = new SlotAllocator(this.pathWidth);
+        }
+        Arrays.fill(this.waitingTurn, false);
+        this.firstFarmer = 0;
+        this.currentFarmerToMove = 0;
+        this.farmersInPath = 0;
+        this.allInStorehouse = new Barrier();
+        this.allInStanding = new Barrier();
+        this.allInPath = new Barrier();
+        this.allInGranary = new Barrier();
+        this.allCollected = new Barrier();
+        this.prepareWaiters.clear();
+        this.startWaiters.clear();
+        this.collectWaiters.clear();
+        this.returnWaiters.clear();
+        this.prepareOrderGiven = false;
+        this.farmersSelected = 0;
+        this.startOrderGiven = false;
+        this.readyToCollect = false;
+        this.readyToReturn = false;
+        this.farmersCollected = 0;
+        Arrays.fill(this.laneFree, 0);
+        Arrays.fill(this.bayFree, 0);
+        this.proxyCondition = null;
+    }
+
+    /**
+     * Performs an action on a farm area while holding its lock.
+     * The lock is taken as soon as it is free and held for the given duration; the action happens when the lock is released.
+     * @param area index of the area's lock.
+     * @param duration time (in ms) the lock is held.
+     * @param action action performed.
+     */
+    private void call(int area, long duration, Runnable action) {
+        long start = Math.max(this.clock.now(), this.lockFree[area]);
+        this.lockFree[area] = start + duration;
+        this.clock.scheduleAt(this.lockFree[area], action);
+    }
+
+    /**
+     * Presents the corn cobs left in the granary.
+     */
+    private void presentGranaryCornCobs() {
+        long left = this.granaryCornCobs.get();
+        this.fi.updateGranaryCornCobs(left);
+        this.fi.sendMessage(new Message(MessageType.UPDATE_GRANARY_COBS, left));
+    }
+
+    /**
+     * Finds the lane or bay that is free the earliest.
+     * @param free virtual time at which each lane or bay is free.
+     * @return the index of the lane or bay.
+     */
+    private static int earliest(long[] free) {
+        int earliest = 0;
+        for (int i = 1; i < free.length; i++) {
+            if (free[i] < free[earliest]) {
+                earliest = i;
+            }
+        }
+        return earliest;
+    }
+
+    /**
+     * Resumes the actions of the entities waiting for something, in the order they started waiting.
+     * @param waiting actions to resume, emptied by the method.
+     */
+    private void release(ArrayList<Runnable> waiting) {
+        for (Runnable resume : waiting) {
+            this.clock.schedule(0, resume);
+        }
+        waiting.clear();
+    }
+
+    /**
+     * Makes the Control Center Proxy wait for a condition before replying to the Control Center.
+     * @param condition condition to wait for.
+     * @param reply message sent when the condition holds.
+     */
+    private void awaitProxy(BooleanSupplier condition, MessageType reply) {
+        this.proxyCondition = condition;
+        this.proxyReply = reply;
+        this.checkProxy();
+    }
+
+    /**
+     * Replies to the Control Center if the condition the Control Center Proxy waits for holds.
+     */
+    private void checkProxy() {
+        if (this.proxyCondition != null && this.proxyCondition.getAsBoolean()) {
+            this.proxyCondition = null;
+            if (this.autonomousOrder == null || !this.nextAutonomousOrder(this.proxyReply)) {
+                this.fi.sendMessage(new Message(this.proxyReply));
+            }
+        }
+    }
+
+    /**
+     * Gives the order following a reply of the Control Center Proxy during an autonomous harvest.
+     * @param reply reply the Control Center Proxy would send to the Control Center.
+     * @return true if the autonomous harvest goes on, false if it ended (and the reply must be sent to the Control Center).
+     */
+    private boolean nextAutonomousOrder(MessageType reply) {
+        switch (reply) {
+            case ALL_FARMERS_READY_TO_START:
+                this.order(new Message(MessageType.START_HARVEST_ORDER));
+                return true;
+            case ALL_FARMERS_READY_TO_COLLECT:
+                this.order(new Message(MessageType.COLLECT_ORDER));
+                return true;
+            case ALL_FARMERS_READY_TO_RETURN:
+                this.order(new Message(MessageType.RETURN_ORDER));
+                return true;
+            default:
+                if (this.granaryCornCobs.get() <= 0 || this.storehouseCornCobs == this.autonomousStored
+                        || (this.autonomousTarget > 0 && this.storehouseCornCobs >= this.autonomousTarget)) {
+                    this.autonomousOrder = null;
+                    return false;
+                }
+                this.autonomousStored = this.storehouseCornCobs;
+                this.order(this.autonomousOrder);
+                return true;
+        }
+    }
+
+    /**
+     * Presents a farmer in a position of the granary.
+     * @param farmerId farmer identifier.
+     * @param position position of the farmer.
+     */
+    private void presentInGranary(int farmerId, int position) {
+        this.fi.presentFarmerInGranary(farmerId, position);
+        this.fi.sendMessage(new Message(MessageType.PRESENT_IN_GRANARY, farmerId, position));
+    }
+
+    /**
+     * Moves a farmer forward in the path, as the Path monitor does: one step when entering, or a random number of steps
+     * between 1 and the maximum defined, to a random free position of the new column.
+     * @param farmerId farmer identifier.
+     * @param first true if the farmer is entering the path.
+     */
+    private void selectPathSpot(int farmerId, boolean first) {
+        int numberOfSteps = first ? 1 : (int) Math.round(this.random.nextDouble() * (this.metadata.NUMBERSTEPS - 1)) + 1;
+        int depth = this.depths[farmerId];
+        int newDepth = this.reverse[farmerId] ? depth - numberOfSteps : depth + numberOfSteps;
+        if (depth >= 0 && depth < this.pathSize) {
+            this.path[depth][this.positions[farmerId]] = 0;
+            this.pathPositions[depth].release(this.positions[farmerId]);
+        }
+        this.depths[farmerId] = newDepth;
+        if (newDepth >= this.pathSize || newDepth < 0) {
+            return;
+        }
+        int position = this.pathPositions[newDepth].acquire(this.random);
+        this.path[newDepth][position] = farmerId;
+        this.positions[farmerId] = position;
+        this.fi.presentFarmerInPath(farmerId, position, newDepth);
+        this.fi.sendMessage(new Message(MessageType.PRESENT_IN_PATH, farmerId, position, newDepth));
+    }
+
+    /**
+     * Adds a farmer at the end of the ring of farmers inside the path.
+     * @param farmerId farmer identifier.
+     */
+    private void joinRing(int farmerId) {
+        if (this.firstFarmer == 0) {
+            this.firstFarmer = farmerId;
+            this.next[farmerId] = farmerId;
+            this.previous[farmerId] = farmerId;
+            return;
+        }
+        int last = this.previous[this.firstFarmer];
+        this.next[last] = farmerId;
+        this.previous[farmerId] = last;
+        this.next[farmerId] = this.firstFarmer;
+        this.previous[this.firstFarmer] = farmerId;
+    }
+
+    /**
+     * Removes a farmer from the ring of farmers inside the path.
+     * @param farmerId farmer identifier.
+     */
+    private void leaveRing(int farmerId) {
+        if (this.next[farmerId] == farmerId) {
+            this.firstFarmer = 0;
+        } else {
+            this.next[this.previous[farmerId]] = this.next[farmerId];
+            this.previous[this.next[farmerId]] = this.previous[farmerId];
+            if (this.firstFarmer == farmerId) {
+                this.firstFarmer = this.next[farmerId];
+            }
+        }
+    }
+
+    /**
+     * Draws a random delay, as the monitors do on every entry.
+     * @return delay (in ms) between 0 and the maximum delay.
+     */
+    private long delay() {
+        return (long) (this.random.nextDouble() * this.metadata.MAXDELAY);
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * Provides the discrete-event simulation of the farm: a virtual clock with its event queue, the simulated farm (an
+ * alternative to the monitors and farmer threads that reacts to the same orders and produces the same messages) and a
+ * capacity study running many harvests in virtual time, run with: java fi.sim.CapacityStudy
+ */
+package fi.sim;
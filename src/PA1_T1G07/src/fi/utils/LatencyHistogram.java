@@ -0,0 +1,121 @@
+package fi.utils;
+
+/**
+ * Histogram of durations (in ns) with logarithmic buckets, in the style of HdrHistogram.
+ * Each power of two is split in 8 linear sub-buckets, so recording is a couple of shifts and an array increment and every
+ * recorded value is kept with a relative error below 12.5%, whatever its magnitude.
+ * It is not thread-safe: the monitors record their durations while holding their lock, and the readers (reports) tolerate
+ * a slightly stale view of the counters.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of bits of each value kept exactly (8 sub-buckets per power of two).
+     */
+    private static final int SUBBUCKETBITS = 3;
+    /**
+     * Number of sub-buckets per power of two.
+     */
+    private static final int SUBBUCKETS = 1 << SUBBUCKETBITS;
+
+    /**
+     * Number of values recorded in each bucket.
+     */
+    private final long[] counts = new long[64 * SUBBUCKETS];
+    /**
+     * Number of values recorded.
+     */
+    private long count = 0;
+    /**
+     * Sum of the values recorded.
+     */
+    private long total = 0;
+    /**
+     * Largest value recorded.
+     */
+    private long max = 0;
+
+    /**
+     * Records a duration.
+     * @param nanos duration in ns (negative durations are recorded as 0).
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        this.counts[bucketOf(value)]++;
+        this.count++;
+        this.total += value;
+        if (value > this.max) {
+            this.max = value;
+        }
+    }
+
+    /**
+     * Retrieves the number of values recorded.
+     * @return the number of values recorded.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Retrieves the largest value recorded.
+     * @return the largest value recorded (in ns).
+     */
+    public long getMax() {
+        return this.max;
+    }
+
+    /**
+     * Retrieves the mean of the values recorded.
+     * @return the mean value (in ns), 0 if no value was recorded.
+     */
+    public long getMean() {
+        return this.count == 0 ? 0 : this.total / this.count;
+    }
+
+    /**
+     * Retrieves the value below which a percentage of the recorded values fall.
+     * @param percentile percentage of the values (between 0 and 100).
+     * @return the value at the percentile (in ns), 0 if no value was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long rank = (long) Math.ceil(percentile / 100 * this.count);
+        long seen = 0;
+        for (int i = 0; i < this.counts.length; i++) {
+            seen += this.counts[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(valueOf(i), this.max);
+            }
+        }
+        return this.max;
+    }
+
+    /**
+     * Auxiliary method to find the bucket of a value.
+     * @param value value to record (not negative).
+     * @return the index of the bucket.
+     */
+    private static int bucketOf(long value) {
+        if (value < SUBBUCKETS) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (magnitude - SUBBUCKETBITS)) & (SUBBUCKETS - 1);
+        return (magnitude - SUBBUCKETBITS + 1) * SUBBUCKETS + subBucket;
+    }
+
+    /**
+     * Auxiliary method to find the largest value kept in a bucket.
+     * @param bucket index of the bucket.
+     * @return the largest value of the bucket.
+     */
+    private static long valueOf(int bucket) {
+        if (bucket < SUBBUCKETS) {
+            return bucket;
+        }
+        int magnitude = bucket / SUBBUCKETS + SUBBUCKETBITS - 1;
+        long lowest = (long) (SUBBUCKETS + bucket % SUBBUCKETS) << (magnitude - SUBBUCKETBITS);
+        return lowest + (1L << (magnitude - SUBBUCKETBITS)) - 1;
+    }
+}
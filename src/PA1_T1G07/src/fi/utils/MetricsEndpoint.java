@@ -0,0 +1,86 @@
+package fi.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local HTTP endpoint exposing the contention metrics of the monitors.
+ * It listens on the loopback address only and answers GET /metrics with one line of text per monitor.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public class MetricsEndpoint {
+
+    /**
+     * Metrics of the monitors.
+     */
+    private final MonitorMetrics[] metrics;
+    /**
+     * HTTP server of the endpoint (null if it could not be started).
+     */
+    private HttpServer server;
+
+    /**
+     * Class constructor.
+     * @param metrics Metrics of the monitors.
+     */
+    public MetricsEndpoint(MonitorMetrics... metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Starts listening on a port of the loopback address. Failing to do so only disables the endpoint.
+     * @param port port of the endpoint.
+     */
+    public void start(int port) {
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            this.server.createContext("/metrics", this::handle);
+            this.server.start();
+            System.out.println("Monitor metrics available at http://localhost:" + port + "/metrics");
+        } catch (IOException ex) {
+            Logger.getLogger(MetricsEndpoint.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Stops the endpoint.
+     */
+    public void stop() {
+        if (this.server != null) {
+            this.server.stop(0);
+        }
+    }
+
+    /**
+     * Describes the metrics of all monitors, one line per monitor.
+     * @return the description of the metrics.
+     */
+    public String report() {
+        StringBuilder text = new StringBuilder();
+        for (MonitorMetrics m : this.metrics) {
+            text.append(m).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Answers a request to the endpoint.
+     * @param exchange request and its response.
+     * @throws IOException if the response could not be sent.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] body = this.report().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
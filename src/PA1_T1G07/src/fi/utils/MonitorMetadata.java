@@ -1,7 +1,12 @@
 package fi.utils;
 
+import common.Configuration;
+import java.util.SplittableRandom;
+
 /**
  * Auxiliary object created to centralize some information about the simulated harvest.
+ * The farmers may be split in several teams of consecutive identifiers, harvesting concurrently on the same farm areas.
+ * Each team has its own metadata (retrieved with team()), holding its size and the parameters of its current harvest run.
  * @author Filipe Pires (85122) and João Alegria (85048)
  */
 public class MonitorMetadata {
@@ -19,9 +24,13 @@ public class MonitorMetadata {
      */
     public int NUMBERFARMERS;
     /**
-     * Number fo defined corn cobs initially in the granary.
+     * Number of corn cobs each farmer must collect in the current harvest run.
      */
     public int NUMBERCORNCOBS;
+    /**
+     * Maximum number of corn cobs each farmer carries (-Dharvest.farmer.capacity, by default 50), bounding NUMBERCORNCOBS.
+     */
+    public final int FARMERCAPACITY;
     /**
      * Maximum number of steps (positions to move forward) for the farmers when they walk in the Path monitor.
      */
@@ -30,15 +39,136 @@ public class MonitorMetadata {
      * Timeout defined (in ms) for each farmer movement.
      */
     public int TIMEOUT;
+    /**
+     * Seed of the simulation, from which every random number generator of the farm areas is derived.
+     */
+    public final long SEED;
+    /**
+     * Number of teams the farmers are split in.
+     */
+    public final int NUMBERTEAMS;
+    /**
+     * Identifier of the first farmer (of the team).
+     */
+    public final int FIRSTFARMER;
+    /**
+     * Metadata of each team (the metadata itself when there is a single team).
+     */
+    private final MonitorMetadata[] teams;
+    /**
+     * Number of farmers of every team but the last.
+     */
+    private final int teamSize;
 
     /**
      * Class constructor to define the monitor metadata to be followed by all farm areas (monitors).
+     * The seed is the one defined in the startup configuration (-Dharvest.seed), or a random one if none is defined.
      * @param numFarmers Number of defined farmers.
      * @param delay Maximum response delay.
      */
     public MonitorMetadata(int numFarmers, int delay) {
+        this(numFarmers, delay, Configuration.getLong("seed", System.nanoTime()));
+    }
+
+    /**
+     * Class constructor to define the monitor metadata to be followed by all farm areas (monitors).
+     * @param numFarmers Number of defined farmers.
+     * @param delay Maximum response delay.
+     * @param seed Seed of the simulation.
+     */
+    public MonitorMetadata(int numFarmers, int delay, long seed) {
+        this(numFarmers, delay, seed, 1);
+    }
+
+    /**
+     * Class constructor to define the monitor metadata to be followed by all farm areas (monitors), with the farmers split
+     * in teams of the same size (the last one may be smaller).
+     * @param numFarmers Number of defined farmers (of all teams).
+     * @param delay Maximum response delay.
+     * @param seed Seed of the simulation.
+     * @param numTeams Number of teams.
+     */
+    public MonitorMetadata(int numFarmers, int delay, long seed, int numTeams) {
         this.MAXNUMBERFARMERS=numFarmers;
         this.MAXDELAY=delay;
+        this.SEED=seed;
+        this.FARMERCAPACITY=Math.max(1, Configuration.getInt("farmer.capacity", 50));
+        int teams=Math.max(1, Math.min(numTeams, numFarmers));
+        this.teamSize=Math.max(1, (numFarmers+teams-1)/teams);
+        this.NUMBERTEAMS=Math.max(1, (numFarmers+this.teamSize-1)/this.teamSize);
+        this.FIRSTFARMER=1;
+        this.teams=new MonitorMetadata[this.NUMBERTEAMS];
+        if(this.NUMBERTEAMS==1){
+            this.teams[0]=this;
+            return;
+        }
+        for(int i=0; i<this.NUMBERTEAMS; i++){
+            this.teams[i]=new MonitorMetadata(this, i*this.teamSize+1, Math.min(this.teamSize, numFarmers-i*this.teamSize));
+        }
+    }
+
+    /**
+     * Class constructor of the metadata of a team.
+     * @param farm Metadata of the whole farm.
+     * @param firstFarmer Identifier of the first farmer of the team.
+     * @param numFarmers Number of farmers of the team.
+     */
+    private MonitorMetadata(MonitorMetadata farm, int firstFarmer, int numFarmers) {
+        this.MAXNUMBERFARMERS=numFarmers;
+        this.MAXDELAY=farm.MAXDELAY;
+        this.SEED=farm.SEED;
+        this.FARMERCAPACITY=farm.FARMERCAPACITY;
+        this.NUMBERTEAMS=1;
+        this.FIRSTFARMER=firstFarmer;
+        this.teams=new MonitorMetadata[]{this};
+        this.teamSize=numFarmers;
+    }
+
+    /**
+     * Auxiliary method to retrieve the metadata of a team.
+     * @param team Team identifier (starting at 0).
+     * @return the metadata of the team.
+     */
+    public MonitorMetadata team(int team) {
+        return this.teams[team];
+    }
+
+    /**
+     * Auxiliary method to retrieve the team of a farmer.
+     * @param farmerId Farmer identifier.
+     * @return the identifier of the farmer's team.
+     */
+    public int teamOf(int farmerId) {
+        return Math.min((farmerId-this.FIRSTFARMER)/this.teamSize, this.NUMBERTEAMS-1);
+    }
+
+    /**
+     * Auxiliary method to retrieve the entity giving the orders to a team (the Control Center Proxy or a team driver), as
+     * indexed in the random number generators of the farm areas.
+     * @param team Team identifier.
+     * @return 0 for the first team (ordered by the Control Center) and an index after the last farmer for the other teams.
+     */
+    public int controllerOf(int team) {
+        return team == 0 ? 0 : this.MAXNUMBERFARMERS + team;
+    }
+
+    /**
+     * Creates the random number generators of a farm area, one for each entity using it: the farmer identifier for each
+     * farmer and controllerOf() for the entity giving the orders to each team.
+     * The generators only depend on the seed and on the area, so the random choices of each entity are the same in every
+     * run with the same seed, and entities never contend for another entity's generator.
+     * A farmer's generator is only used by its farmer. A team's controller generator is shared by the threads handling
+     * that team's orders (the Control Center Proxy may handle several orders at once), so it must be drawn under its own lock.
+     * @param area name of the farm area.
+     * @return array containing the generators, indexed by entity.
+     */
+    public SplittableRandom[] newRandoms(String area) {
+        SplittableRandom root = new SplittableRandom(this.SEED * 31 + area.hashCode());
+        SplittableRandom[] randoms = new SplittableRandom[this.MAXNUMBERFARMERS + this.NUMBERTEAMS];
+        for (int i = 0; i < randoms.length; i++) {
+            randoms[i] = root.split();
+        }
+        return randoms;
     }
     
 }
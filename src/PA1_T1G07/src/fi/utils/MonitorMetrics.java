@@ -0,0 +1,146 @@
+package fi.utils;
+
+import common.Configuration;
+import common.Message;
+import common.MessageType;
+
+/**
+ * Contention metrics of a monitor (farm area), to find which monitor bottlenecks a run.
+ * It keeps histograms of the time entities wait to acquire the monitor's lock, of the time they hold it (excluding the time
+ * spent waiting on its conditions), of the time they wait on its conditions and of the time each "wait for all farmers"
+ * phase takes to complete (from its first to its last arrival), and counts the wake-ups after which the woken entity
+ * made progress (useful) or had to wait again (spurious).
+ * Everything is recorded while holding the monitor's lock, so recording costs no synchronization of its own.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public class MonitorMetrics {
+
+    /**
+     * Whether the monitors record their metrics (-Dharvest.metrics).
+     */
+    public static final boolean ENABLED = Configuration.getBoolean("metrics", true);
+
+    /**
+     * Identifier of the monitor (its index in the reports sent to the Control Center).
+     */
+    public final int ID;
+    /**
+     * Name of the monitor.
+     */
+    public final String NAME;
+    /**
+     * Time waited to acquire the monitor's lock.
+     */
+    public final LatencyHistogram lockWait = new LatencyHistogram();
+    /**
+     * Time the monitor's lock was held, excluding the time spent waiting on its conditions.
+     */
+    public final LatencyHistogram hold = new LatencyHistogram();
+    /**
+     * Time waited on the monitor's conditions.
+     */
+    public final LatencyHistogram conditionWait = new LatencyHistogram();
+    /**
+     * Time taken by the phases of the monitor's barriers to complete.
+     */
+    public final LatencyHistogram phase = new LatencyHistogram();
+    /**
+     * Number of wake-ups after which the woken entity made progress.
+     */
+    private long usefulWakeups = 0;
+    /**
+     * Number of wake-ups after which the woken entity had to wait again.
+     */
+    private long spuriousWakeups = 0;
+
+    /**
+     * Class constructor.
+     * @param id Identifier of the monitor (0 to 3 for the storehouse, standing area, path and granary).
+     * @param name Name of the monitor.
+     */
+    public MonitorMetrics(int id, String name) {
+        this.ID = id;
+        this.NAME = name;
+    }
+
+    /**
+     * Counts a wake-up of an entity waiting in the monitor.
+     * @param useful whether the woken entity made progress (true) or had to wait again (false).
+     */
+    public void recordWakeup(boolean useful) {
+        if (useful) {
+            this.usefulWakeups++;
+        } else {
+            this.spuriousWakeups++;
+        }
+    }
+
+    /**
+     * Retrieves the number of wake-ups after which the woken entity made progress.
+     * @return the number of useful wake-ups.
+     */
+    public long getUsefulWakeups() {
+        return this.usefulWakeups;
+    }
+
+    /**
+     * Retrieves the number of wake-ups after which the woken entity had to wait again.
+     * @return the number of spurious wake-ups.
+     */
+    public long getSpuriousWakeups() {
+        return this.spuriousWakeups;
+    }
+
+    /**
+     * Builds the message reporting the metrics to the Control Center (durations at the 99th percentile, in µs).
+     * @return the report message.
+     */
+    public Message toMessage() {
+        return new Message(MessageType.MONITOR_METRICS, this.ID, saturate(this.lockWait.getCount()),
+                micros(this.lockWait.getValueAtPercentile(99)), micros(this.hold.getValueAtPercentile(99)),
+                micros(this.conditionWait.getValueAtPercentile(99)), saturate(this.usefulWakeups),
+                saturate(this.spuriousWakeups), micros(this.phase.getValueAtPercentile(99)));
+    }
+
+    /**
+     * Describes the metrics in a single line of text (durations in µs).
+     * @return the description of the metrics.
+     */
+    @Override
+    public String toString() {
+        return "[" + this.NAME + "] acquisitions " + this.lockWait.getCount()
+                + ", lock wait " + describe(this.lockWait)
+                + ", hold " + describe(this.hold)
+                + ", condition wait " + describe(this.conditionWait)
+                + ", wake-ups " + this.usefulWakeups + " useful / " + this.spuriousWakeups + " spurious"
+                + ", phase " + describe(this.phase);
+    }
+
+    /**
+     * Auxiliary method to describe a histogram.
+     * @param histogram histogram to describe.
+     * @return the mean, percentiles and maximum of the histogram (in µs).
+     */
+    private static String describe(LatencyHistogram histogram) {
+        return "avg " + micros(histogram.getMean()) + " p50 " + micros(histogram.getValueAtPercentile(50))
+                + " p99 " + micros(histogram.getValueAtPercentile(99)) + " max " + micros(histogram.getMax()) + " us";
+    }
+
+    /**
+     * Auxiliary method to convert a duration to µs fitting in a message field.
+     * @param nanos duration in ns.
+     * @return the duration in µs.
+     */
+    private static int micros(long nanos) {
+        return saturate(nanos / 1000);
+    }
+
+    /**
+     * Auxiliary method to fit a counter in a message field.
+     * @param value counter.
+     * @return the counter, or the largest int if it does not fit.
+     */
+    private static int saturate(long value) {
+        return (int) Math.min(Integer.MAX_VALUE, value);
+    }
+}
@@ -0,0 +1,78 @@
+package fi.utils;
+
+import common.Message;
+
+/**
+ * Mapping of the farm of a Farm Infrastructure (a shard) onto the farm presented by a Control Center coordinating several
+ * Farm Infrastructures.
+ * Each shard keeps its own farmer identifiers and positions (starting at 1 and 0, respectively), so its farm areas work
+ * exactly as in a single Farm Infrastructure. The messages sent to the Control Center are translated at the boundary: the
+ * farmers of shard s are presented with identifiers offset by s times the number of farmers of each shard, and their
+ * positions in each area (and their collection lanes and storing bays) after the ones of the previous shards.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public class ShardMapping {
+
+    /**
+     * Index of the shard (starting at 0).
+     */
+    public final int SHARD;
+    /**
+     * Offset of the farmer identifiers (and of the positions in the storehouse, standing area and granary) of the shard.
+     */
+    public final int FARMEROFFSET;
+    /**
+     * Offset of the positions of each path column of the shard.
+     */
+    public final int PATHOFFSET;
+    /**
+     * Offset of the collection lanes of the shard.
+     */
+    public final int LANEOFFSET;
+    /**
+     * Offset of the storing bays of the shard.
+     */
+    public final int BAYOFFSET;
+
+    /**
+     * Class constructor.
+     * @param shard Index of the shard (starting at 0).
+     * @param farmers Number of farmers of each shard.
+     * @param pathWidth Number of positions of each path column of each shard.
+     * @param lanes Number of collection lanes of the granary of each shard.
+     * @param bays Number of storing bays of the storehouse of each shard.
+     */
+    public ShardMapping(int shard, int farmers, int pathWidth, int lanes, int bays) {
+        this.SHARD = shard;
+        this.FARMEROFFSET = shard * farmers;
+        this.PATHOFFSET = shard * pathWidth;
+        this.LANEOFFSET = shard * lanes;
+        this.BAYOFFSET = shard * bays;
+    }
+
+    /**
+     * Translates a message sent to the Control Center from the shard's farm to the farm of all shards.
+     * @param message message sent by the shard.
+     * @return the translated message (the message itself if nothing changes).
+     */
+    public Message toGlobal(Message message) {
+        if (this.SHARD == 0) {
+            return message;
+        }
+        switch (message.getType()) {
+            case PRESENT_IN_STOREHOUSE:
+            case PRESENT_IN_STANDING:
+            case PRESENT_IN_GRANARY:
+                return new Message(message.getType(), message.getArg(0) + this.FARMEROFFSET, message.getArg(1) + this.FARMEROFFSET);
+            case PRESENT_IN_PATH:
+                return new Message(message.getType(), message.getArg(0) + this.FARMEROFFSET, message.getArg(1) + this.PATHOFFSET,
+                        message.getArg(2));
+            case PRESENT_IN_COLLECTING:
+                return new Message(message.getType(), message.getArg(0) + this.FARMEROFFSET, message.getArg(1) + this.LANEOFFSET);
+            case PRESENT_IN_STORING:
+                return new Message(message.getType(), message.getArg(0) + this.FARMEROFFSET, message.getArg(1) + this.BAYOFFSET);
+            default:
+                return message;
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /**
  * Provides utilities for the FI.
- * Such utilities correspond to the monitors' metadata and exceptions thrown during execution.
+ * Such utilities correspond to the monitors' metadata and metrics, and exceptions thrown during execution.
  */
 package fi.utils;
@@ -0,0 +1,96 @@
+package fi.views;
+
+import fi.FarmView;
+
+/**
+ * Farm Infrastructure view that prints every update to the standard output, used when running simulations without a display.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public class LoggingFarmView implements FarmView {
+
+    /**
+     * Prints the farmer entering a position of the Storehouse.
+     * @param farmerId int identifying the farmer entering the position.
+     * @param position int identifying the Storehouse position.
+     */
+    @Override
+    public void presentFarmerInStorehouse(int farmerId, int position) {
+        System.out.println("[View] Farmer " + farmerId + " in Storehouse position " + position);
+    }
+
+    /**
+     * Prints the farmer entering a position of the Standing area.
+     * @param farmerId int identifying the farmer entering the position.
+     * @param position int identifying the Standing area position.
+     */
+    @Override
+    public void presentFarmerInStandingArea(int farmerId, int position) {
+        System.out.println("[View] Farmer " + farmerId + " in Standing area position " + position);
+    }
+
+    /**
+     * Prints the farmer entering a position of the Path area.
+     * @param farmerId int identifying the farmer entering the position.
+     * @param position int identifying the Path area line position.
+     * @param column int identifying the Path area column position.
+     */
+    @Override
+    public void presentFarmerInPath(int farmerId, int position, int column) {
+        System.out.println("[View] Farmer " + farmerId + " in Path position " + position + " of column " + column);
+    }
+
+    /**
+     * Prints the farmer entering a position of the Granary area.
+     * @param farmerId int identifying the farmer entering the position.
+     * @param position int identifying the Granary area position.
+     */
+    @Override
+    public void presentFarmerInGranary(int farmerId, int position) {
+        System.out.println("[View] Farmer " + farmerId + " in Granary position " + position);
+    }
+
+    /**
+     * Prints the farmer entering a lane of the Collecting area.
+     * @param farmerId int identifying the farmer entering the position.
+     * @param lane int identifying the collection lane.
+     */
+    @Override
+    public void presentCollectingFarmer(int farmerId, int lane) {
+        System.out.println("[View] Farmer " + farmerId + " collecting in lane " + lane);
+    }
+
+    /**
+     * Prints the farmer entering the Storing area.
+     * @param farmerId int identifying the farmer entering the position.
+     * @param bay int identifying the storing bay.
+     */
+    @Override
+    public void presentStoringFarmer(int farmerId, int bay) {
+        System.out.println("[View] Farmer " + farmerId + " storing in bay " + bay);
+    }
+
+    /**
+     * Prints the corn cobs number in the Granary area.
+     * @param actualNumber long representing the current corn cobs number.
+     */
+    @Override
+    public void updateGranaryCornCobs(long actualNumber) {
+        System.out.println("[View] Granary corn cobs: " + actualNumber);
+    }
+
+    /**
+     * Prints the corn cobs number in the Storehouse area.
+     * @param actualNumber long representing the current corn cobs number.
+     */
+    @Override
+    public void updateStorehouseCornCobs(long actualNumber) {
+        System.out.println("[View] Storehouse corn cobs: " + actualNumber);
+    }
+
+    /**
+     * Nothing to release.
+     */
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,46 @@
+package fi.views;
+
+import fi.FarmView;
+
+/**
+ * Farm Infrastructure view that discards every update, used when running simulations without a display.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public class NoOpFarmView implements FarmView {
+
+    @Override
+    public void presentFarmerInStorehouse(int farmerId, int position) {
+    }
+
+    @Override
+    public void presentFarmerInStandingArea(int farmerId, int position) {
+    }
+
+    @Override
+    public void presentFarmerInPath(int farmerId, int position, int column) {
+    }
+
+    @Override
+    public void presentFarmerInGranary(int farmerId, int position) {
+    }
+
+    @Override
+    public void presentCollectingFarmer(int farmerId, int lane) {
+    }
+
+    @Override
+    public void presentStoringFarmer(int farmerId, int bay) {
+    }
+
+    @Override
+    public void updateGranaryCornCobs(long actualNumber) {
+    }
+
+    @Override
+    public void updateStorehouseCornCobs(long actualNumber) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
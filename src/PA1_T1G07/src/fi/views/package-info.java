@@ -0,0 +1,5 @@
+/**
+ * Provides the headless implementations of the Farm Infrastructure view: a no-op sink and a logging sink.
+ * The Swing implementation is the FarmInfrastructure class itself.
+ */
+package fi.views;
@@ -8,16 +8,26 @@ import fi.ccInterfaces.GranaryCCInt;
 import fi.ccInterfaces.PathCCInt;
 import fi.ccInterfaces.StandingCCInt;
 import fi.ccInterfaces.StorehouseCCInt;
+import common.Message;
 import common.MessageProcessor;
+import common.MessageType;
 import fi.UiAndMainControlsFI;
 
 /**
  * Message processor for the Farm Infrastructure.
+ * The orders of the Control Center are given to the first team of farmers; the end of the simulation ends every team.
+ * In the autonomous harvest mode the Control Center gives a single order and the team's harvest runs follow each other
+ * back-to-back inside the Farm Infrastructure, with the Control Center only observing until it stops or ends the simulation.
  * 
  * @author Filipe Pires (85122) and João Alegria (85048)
  */
 public class CCProxy implements MessageProcessor {
 
+    /**
+     * Team of farmers driven by the Control Center.
+     */
+    public static final int TEAM = 0;
+
     /**
      * Internal class used to specify the life-cycle of the message processing
      * Thread.
@@ -27,13 +37,13 @@ public class CCProxy implements MessageProcessor {
         /**
          * Message to be handled.
          */
-        private String message;
+        private Message message;
 
         /**
          * Constructor for the thread definition.
          * @param message Message to be handled.
          */
-        public ProcessingThread(String message) {
+        public ProcessingThread(Message message) {
             this.message = message;
         }
 
@@ -43,49 +53,61 @@ public class CCProxy implements MessageProcessor {
         @Override
         public void run() {
             try {
-                String[] processedMessage = this.message.split(";");
-                switch (processedMessage[0]) {
-                case "waitSimulationReady":
-                    storeHouse.waitAllFarmersReady();
-                    fi.sendMessage("allFarmersrReadyWaiting");
+                switch (this.message.getType()) {
+                case WAIT_SIMULATION_READY:
+                    storeHouse.waitAllFarmersReady(TEAM);
+                    fi.sendMessage(new Message(MessageType.ALL_FARMERS_READY_WAITING));
                     break;
-                case "prepareOrder":
-                    storeHouse.sendSelectionAndPrepareOrder(Integer.valueOf(processedMessage[1]),
-                            Integer.valueOf(processedMessage[2]), Integer.valueOf(processedMessage[3]),
-                            Integer.valueOf(processedMessage[4]));
-                    standing.waitForAllFarmers();
-                    fi.sendMessage("allFarmersrReadyToStart");
+                case PREPARE_ORDER:
+                    storeHouse.sendSelectionAndPrepareOrder(TEAM, this.message.getArg(0), this.message.getArg(1),
+                            this.message.getArg(2), this.message.getArg(3));
+                    standing.waitForAllFarmers(TEAM);
+                    fi.sendMessage(new Message(MessageType.ALL_FARMERS_READY_TO_START));
                     break;
-                case "startHarvestOrder":
-                    standing.sendStartOrder();
-                    granary.waitAllFarmersReadyToCollect();
-                    fi.sendMessage("allFarmersrReadyToCollect");
+                case START_HARVEST_ORDER:
+                    standing.sendStartOrder(TEAM);
+                    granary.waitAllFarmersReadyToCollect(TEAM);
+                    fi.sendMessage(new Message(MessageType.ALL_FARMERS_READY_TO_COLLECT));
                     break;
-                case "collectOrder":
-                    granary.sendCollectOrder();
-                    granary.waitAllFarmersCollect();
-                    fi.sendMessage("allFarmersrReadyToReturn");
+                case COLLECT_ORDER:
+                    granary.sendCollectOrder(TEAM);
+                    granary.waitAllFarmersCollect(TEAM);
+                    fi.sendMessage(new Message(MessageType.ALL_FARMERS_READY_TO_RETURN));
                     break;
-                case "returnOrder":
-                    granary.sendReturnOrder();
-                    storeHouse.waitAllFarmersReady();
-                    fi.sendMessage("allFarmersrReadyWaiting");
+                case RETURN_ORDER:
+                    granary.sendReturnOrder(TEAM);
+                    storeHouse.waitAllFarmersReady(TEAM);
+                    fi.sendMessage(new Message(MessageType.ALL_FARMERS_READY_WAITING));
                     break;
-                case "stopHarvestOrder":
-                    storeHouse.control("stopHarvest");
-                    standing.control("stopHarvest");
-                    path.control("stopHarvest");
-                    granary.control("stopHarvest");
-                    storeHouse.waitAllFarmersReady();
-                    fi.sendMessage("allFarmersrReadyWaiting");
+                case AUTONOMOUS_HARVEST_ORDER:
+                    TeamDriver driver = new TeamDriver(TEAM, storeHouse, standing, granary, this.message.getArg(0),
+                            this.message.getArg(1), this.message.getArg(2), this.message.getArg(3), this.message.getLongArg(4));
+                    autonomous = driver;
+                    if (driver.drive()) {
+                        fi.sendMessage(new Message(MessageType.ALL_FARMERS_READY_WAITING));
+                    }
                     break;
-                case "endSimulationOrder":
-                    storeHouse.control("endSimulation");
-                    standing.control("endSimulation");
-                    path.control("endSimulation");
-                    granary.control("endSimulation");
+                case STOP_HARVEST_ORDER:
+                    TeamDriver running = autonomous;
+                    if (running != null) {
+                        running.halt();
+                        autonomous = null;
+                    }
+                    storeHouse.control(TEAM, "stopHarvest");
+                    standing.control(TEAM, "stopHarvest");
+                    path.control(TEAM, "stopHarvest");
+                    granary.control(TEAM, "stopHarvest");
+                    // waiting for the stopped farmers is the same as waiting for the simulation to be ready
+                    executor.execute(new ProcessingThread(new Message(MessageType.WAIT_SIMULATION_READY)));
+                    break;
+                case END_SIMULATION_ORDER:
+                    storeHouse.control(TEAM, "endSimulation");
+                    standing.control(TEAM, "endSimulation");
+                    path.control(TEAM, "endSimulation");
+                    granary.control(TEAM, "endSimulation");
                     fi.closeSocketClient();
                     fi.close();
+                    executor.shutdown();
                     break;
                 }
             } catch (StopHarvestException ex) {
@@ -113,10 +135,20 @@ public class CCProxy implements MessageProcessor {
      */
     private GranaryCCInt granary;
     
+    /**
+     * Driver of the autonomous harvest in progress, if any.
+     */
+    private volatile TeamDriver autonomous;
+    
     /**
      * Instance of the Farm Infrastructure whose messages are to be processed.
      */
     private UiAndMainControlsFI fi;
+    
+    /**
+     * Executor handling the incoming messages.
+     */
+    private CommandExecutor executor;
 
     /**
      * Class constructor where the Control Center whose messages are to be processed is defined.
@@ -129,9 +161,11 @@ public class CCProxy implements MessageProcessor {
      * @param standing Instance of the standing area.
      * @param path Instance of the path area.
      * @param granary Instance of the granary area.
+     * @param executor Executor handling the incoming messages.
      */
     public CCProxy(UiAndMainControlsFI fi, StorehouseCCInt storeHouse, StandingCCInt standing, PathCCInt path,
-            GranaryCCInt granary) {
+            GranaryCCInt granary, CommandExecutor executor) {
+        this.executor = executor;
         this.storeHouse = storeHouse;
         this.standing = standing;
         this.path = path;
@@ -141,16 +175,27 @@ public class CCProxy implements MessageProcessor {
     }
 
     /**
-     * Processes the incoming messages. For each message a new Thread is started
+     * Processes the incoming messages. Each message is handed to the command executor
      * since the Farm Infrastructure needs to process several messages at the same
-     * time.
+     * time. The orders to stop the harvest and to end the simulation are urgent: they
+     * must reach the farm areas even when every executor thread is blocked handling
+     * another order, so they skip the executor's pool. Since urgent orders must not
+     * block, waiting for the stopped farmers to return to the storehouse is left to
+     * the pool, whose blocked orders the stop order has just released.
      * 
-     * @param message string containing the message to process
+     * @param message decoded message to process
      */
     @Override
-    public void processMessage(String message) {
-        Thread processor = new Thread(new ProcessingThread(message));
-        processor.start();
+    public void processMessage(Message message) {
+        switch (message.getType()) {
+        case STOP_HARVEST_ORDER:
+        case END_SIMULATION_ORDER:
+            this.executor.executeUrgent(new ProcessingThread(message));
+            break;
+        default:
+            this.executor.execute(new ProcessingThread(message));
+            break;
+        }
     }
 
 }
@@ -0,0 +1,277 @@
+package fi.workers;
+
+import common.Configuration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executor responsible for handling the commands received by the Control Center Proxy.
+ * Two modes are available (chosen with -Dharvest.proxy.executor):
+ * 1. virtual - one virtual thread per command (only on JDK 21 or newer; falls back to the pool otherwise).
+ * 2. pool - a bounded pool of platform threads with a bounded number of waiting commands; when it is full the submitter
+ * blocks, providing backpressure to the socket server instead of creating threads without limit.
+ * Urgent commands (stopping the harvest or ending the simulation) skip both modes and run, one after the other, in a
+ * dedicated thread, so they never wait behind commands blocked in the monitors nor block the socket server. Urgent
+ * commands must therefore not block themselves, or the urgent commands after them would wait.
+ * The executor also keeps metrics about the queue depth and the handling latency of the commands.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public class CommandExecutor {
+
+    /**
+     * Time (in s) given to the running commands to finish when the executor shuts down.
+     */
+    private static final long TERMINATIONTIMEOUT = 5;
+
+    /**
+     * Executor running the commands.
+     */
+    private final ExecutorService executor;
+    /**
+     * Permits of the commands submitted to the pool and not yet finished, bounding the commands waiting for a thread
+     * (null for virtual threads).
+     */
+    private final Semaphore slots;
+    /**
+     * Executor running the urgent commands in its single dedicated thread.
+     */
+    private final ExecutorService urgent = Executors.newSingleThreadExecutor(command -> new Thread(command, "CCProxy-urgent"));
+    /**
+     * Name of the mode in use.
+     */
+    private final String mode;
+    /**
+     * Number of commands submitted but not yet started.
+     */
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    /**
+     * Maximum number of commands observed waiting at the same time.
+     */
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    /**
+     * Number of commands already handled.
+     */
+    private final AtomicLong handled = new AtomicLong();
+    /**
+     * Sum of the handling latencies (in ns), from submission to completion.
+     */
+    private final AtomicLong totalLatency = new AtomicLong();
+    /**
+     * Maximum handling latency (in ns), from submission to completion.
+     */
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    /**
+     * Class constructor.
+     * @param virtualThreads true to run each command in its own virtual thread (if supported by the JVM).
+     * @param threads number of platform threads of the pool.
+     * @param queueCapacity maximum number of commands waiting for a platform thread.
+     */
+    public CommandExecutor(boolean virtualThreads, int threads, int queueCapacity) {
+        ExecutorService virtual = virtualThreads ? newVirtualThreadPerTaskExecutor() : null;
+        if (virtual != null) {
+            this.executor = virtual;
+            this.slots = null;
+            this.mode = "virtual";
+            return;
+        }
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+        this.slots = new Semaphore(threads + queueCapacity);
+        this.mode = "pool of " + threads;
+    }
+
+    /**
+     * Creates the executor defined in the startup configuration.
+     * @return the configured command executor.
+     */
+    public static CommandExecutor configured() {
+        return new CommandExecutor(Configuration.getString("proxy.executor", "pool").equalsIgnoreCase("virtual"),
+                Configuration.getInt("proxy.threads", 4), Configuration.getInt("proxy.queue", 64));
+    }
+
+    /**
+     * Submits a command to be handled, blocking while the pool holds as many commands as it may.
+     * Commands submitted once the executor is shut down are discarded.
+     * @param command command to handle.
+     */
+    public void execute(Runnable command) {
+        long submitted = System.nanoTime();
+        if (this.slots != null) {
+            try {
+                this.slots.acquire();
+            } catch (InterruptedException ex) {
+                Logger.getLogger(CommandExecutor.class.getName()).log(Level.WARNING, "Command discarded", ex);
+                return;
+            }
+        }
+        updateMax(this.maxQueueDepth, this.queueDepth.incrementAndGet());
+        Runnable measured = this.measured(command, submitted);
+        try {
+            this.executor.execute(this.slots == null ? measured : () -> {
+                try {
+                    measured.run();
+                } finally {
+                    this.slots.release();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            this.queueDepth.decrementAndGet();
+            if (this.slots != null) {
+                this.slots.release();
+            }
+            Logger.getLogger(CommandExecutor.class.getName()).log(Level.WARNING, "Command discarded", ex);
+        }
+    }
+
+    /**
+     * Handles an urgent command in the dedicated urgent thread, outside the pool, so that it never waits behind the
+     * commands of the pool and never blocks the submitter.
+     * @param command command to handle.
+     */
+    public void executeUrgent(Runnable command) {
+        long submitted = System.nanoTime();
+        this.queueDepth.incrementAndGet();
+        try {
+            this.urgent.execute(this.measured(command, submitted));
+        } catch (RejectedExecutionException ex) {
+            this.queueDepth.decrementAndGet();
+            Logger.getLogger(CommandExecutor.class.getName()).log(Level.WARNING, "Command discarded", ex);
+        }
+    }
+
+    /**
+     * Stops accepting commands and waits for the commands already running to finish.
+     * Commands still running after the termination timeout are interrupted. The urgent command in progress is not waited
+     * for, since the order ending the simulation shuts the executor down from the urgent thread itself.
+     */
+    public void shutdown() {
+        this.urgent.shutdown();
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(TERMINATIONTIMEOUT, TimeUnit.SECONDS)) {
+                this.executor.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            this.executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        Logger.getLogger(CommandExecutor.class.getName()).log(Level.FINE, "[CCProxy] {0}", this);
+    }
+
+    /**
+     * Auxiliary method to retrieve the number of commands waiting to be handled.
+     * @return number of commands submitted but not yet started.
+     */
+    public int getQueueDepth() {
+        return this.queueDepth.get();
+    }
+
+    /**
+     * Auxiliary method to retrieve the maximum number of commands observed waiting at the same time.
+     * @return maximum queue depth.
+     */
+    public int getMaxQueueDepth() {
+        return this.maxQueueDepth.get();
+    }
+
+    /**
+     * Auxiliary method to retrieve the number of commands handled.
+     * @return number of commands handled.
+     */
+    public long getHandled() {
+        return this.handled.get();
+    }
+
+    /**
+     * Auxiliary method to retrieve the average handling latency.
+     * @return average time (in ms) from submission to completion of a command.
+     */
+    public double getAverageLatency() {
+        long count = this.handled.get();
+        return count == 0 ? 0 : this.totalLatency.get() / (count * 1e6);
+    }
+
+    /**
+     * Auxiliary method to retrieve the maximum handling latency.
+     * @return maximum time (in ms) from submission to completion of a command.
+     */
+    public double getMaxLatency() {
+        return this.maxLatency.get() / 1e6;
+    }
+
+    /**
+     * Summarizes the metrics of the executor.
+     * @return string containing the mode and the metrics of the executor.
+     */
+    @Override
+    public String toString() {
+        return String.format("Command executor (%s): %d handled, queue depth %d (max %d), latency avg %.1f ms, max %.1f ms",
+                this.mode, this.getHandled(), this.getQueueDepth(), this.getMaxQueueDepth(), this.getAverageLatency(),
+                this.getMaxLatency());
+    }
+
+    /**
+     * Wraps a command so that its queue wait and handling latency are accounted for in the metrics.
+     * @param command command to handle.
+     * @param submitted instant (in ns) when the command was submitted.
+     * @return the wrapped command.
+     */
+    private Runnable measured(Runnable command, long submitted) {
+        return () -> {
+            this.queueDepth.decrementAndGet();
+            try {
+                command.run();
+            } finally {
+                long latency = System.nanoTime() - submitted;
+                this.handled.incrementAndGet();
+                this.totalLatency.addAndGet(latency);
+                updateMax(this.maxLatency, latency);
+            }
+        };
+    }
+
+    /**
+     * Updates a maximum with a new observation.
+     * @param max current maximum.
+     * @param value new observation.
+     */
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+        }
+    }
+
+    /**
+     * Updates a maximum with a new observation.
+     * @param max current maximum.
+     * @param value new observation.
+     */
+    private static void updateMax(AtomicInteger max, int value) {
+        int current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+        }
+    }
+
+    /**
+     * Creates an executor starting a new virtual thread per task, if the running JVM supports it (JDK 21 or newer).
+     * Reflection is used so that the project still compiles for older Java versions.
+     * @return the executor, or null if virtual threads are not supported.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            System.out.println("[CCProxy] Virtual threads not supported, using a platform thread pool.");
+            return null;
+        }
+    }
+}
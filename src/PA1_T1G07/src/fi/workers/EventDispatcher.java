@@ -0,0 +1,165 @@
+package fi.workers;
+
+import common.Message;
+import fi.UiAndMainControlsFI;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Dispatcher of the notifications the farm areas give to the exterior (presentation updates and messages to the Control
+ * Center).
+ * The monitors give their notifications while holding their locks, so, instead of calling the view and the communication
+ * with the Control Center right away, the dispatcher publishes each notification as an event in a lock-free queue (many
+ * producers, one consumer) and returns. A dedicated thread drains the queue and delivers the events, in the order they were
+ * published, to the Farm Infrastructure.
+ * Closing the communication and the Farm Infrastructure waits for all the events published before to be delivered.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public class EventDispatcher implements UiAndMainControlsFI, Runnable {
+
+    /**
+     * Farm Infrastructure to which the events are delivered.
+     */
+    private final UiAndMainControlsFI fi;
+    /**
+     * Events published and not yet delivered.
+     */
+    private final Queue<Runnable> events = new ConcurrentLinkedQueue<>();
+    /**
+     * Thread delivering the events.
+     */
+    private final Thread thread;
+    /**
+     * Whether the dispatcher thread is (about to be) parked waiting for events.
+     */
+    private volatile boolean idle = false;
+    /**
+     * Whether the dispatcher was closed.
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Class constructor where the dispatcher thread is started.
+     * @param fi Farm Infrastructure to which the events are delivered.
+     */
+    public EventDispatcher(UiAndMainControlsFI fi) {
+        this.fi = fi;
+        this.thread = new Thread(this, "EventDispatcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Method containing the life-cycle of the dispatcher thread: delivers the events until the dispatcher is closed.
+     */
+    @Override
+    public void run() {
+        while (!this.closed) {
+            Runnable event = this.events.poll();
+            if (event == null) {
+                this.idle = true;
+                if (this.events.isEmpty() && !this.closed) {
+                    LockSupport.park(this);
+                }
+                this.idle = false;
+                continue;
+            }
+            try {
+                event.run();
+            } catch (RuntimeException ex) {
+                Logger.getLogger(EventDispatcher.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
+    /**
+     * Publishes an event to be delivered by the dispatcher thread, waking it up if it is waiting for events.
+     * @param event event to deliver.
+     */
+    private void publish(Runnable event) {
+        this.events.offer(event);
+        if (this.idle) {
+            LockSupport.unpark(this.thread);
+        }
+    }
+
+    /**
+     * Waits until all the events published so far are delivered.
+     */
+    private void flush() {
+        if (Thread.currentThread() == this.thread) {
+            return;
+        }
+        CountDownLatch delivered = new CountDownLatch(1);
+        this.publish(delivered::countDown);
+        try {
+            delivered.await();
+        } catch (InterruptedException ex) {
+            Logger.getLogger(EventDispatcher.class.getName()).log(Level.SEVERE, null, ex);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void sendMessage(Message message) {
+        this.publish(() -> this.fi.sendMessage(message));
+    }
+
+    @Override
+    public void closeSocketClient() {
+        this.flush();
+        this.fi.closeSocketClient();
+    }
+
+    @Override
+    public void close() {
+        this.flush();
+        this.closed = true;
+        LockSupport.unpark(this.thread);
+        this.fi.close();
+    }
+
+    @Override
+    public void presentFarmerInStorehouse(int farmerId, int position) {
+        this.publish(() -> this.fi.presentFarmerInStorehouse(farmerId, position));
+    }
+
+    @Override
+    public void presentFarmerInStandingArea(int farmerId, int position) {
+        this.publish(() -> this.fi.presentFarmerInStandingArea(farmerId, position));
+    }
+
+    @Override
+    public void presentFarmerInPath(int farmerId, int position, int column) {
+        this.publish(() -> this.fi.presentFarmerInPath(farmerId, position, column));
+    }
+
+    @Override
+    public void presentFarmerInGranary(int farmerId, int position) {
+        this.publish(() -> this.fi.presentFarmerInGranary(farmerId, position));
+    }
+
+    @Override
+    public void presentCollectingFarmer(int farmerId, int lane) {
+        this.publish(() -> this.fi.presentCollectingFarmer(farmerId, lane));
+    }
+
+    @Override
+    public void presentStoringFarmer(int farmerId, int bay) {
+        this.publish(() -> this.fi.presentStoringFarmer(farmerId, bay));
+    }
+
+    @Override
+    public void updateGranaryCornCobs(long actualNumber) {
+        this.publish(() -> this.fi.updateGranaryCornCobs(actualNumber));
+    }
+
+    @Override
+    public void updateStorehouseCornCobs(long actualNumber) {
+        this.publish(() -> this.fi.updateStorehouseCornCobs(actualNumber));
+    }
+}
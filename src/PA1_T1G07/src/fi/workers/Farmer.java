@@ -1,19 +1,34 @@
 package fi.workers;
 
+import common.Configuration;
 import fi.utils.EndSimulationException;
 import fi.utils.StopHarvestException;
 import fi.farmerInterfaces.GranaryFarmerInt;
 import fi.farmerInterfaces.PathFarmerInt;
 import fi.farmerInterfaces.StandingFarmerInt;
 import fi.farmerInterfaces.StorehouseFarmerInt;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.ThreadFactory;
 
 /**
- * Definition of the Farmer Thread for the agricultural harvest.
+ * Definition of the Farmer for the agricultural harvest.
+ * Each farmer runs in its own thread. Two modes are available (chosen with -Dharvest.farmer.threads):
+ * 1. platform - one platform thread per farmer.
+ * 2. virtual - one virtual thread per farmer (only on JDK 21 or newer; falls back to platform threads otherwise),
+ * allowing teams of many thousands of farmers, since farmers spend almost all their life blocked in the monitors.
+ * The farmer's state (such as the corn cobs it carries) is kept in the farmer and passed explicitly to the monitors,
+ * which never rely on the type of the thread calling them.
  * @author Filipe Pires (85122) and João Alegria (85048)
  */
-public class Farmer extends Thread {
+public class Farmer implements Runnable {
+    
+    /**
+     * Name of the threads' mode in use.
+     */
+    private static String threadMode;
+    /**
+     * Factory creating the threads of the farmers, according to the configured mode.
+     */
+    private static final ThreadFactory THREADS = threadFactory(Configuration.getString("farmer.threads", "platform").equalsIgnoreCase("virtual"));
     
     /**
      * Farmer's current state.
@@ -43,6 +58,10 @@ public class Farmer extends Thread {
      * Current amount of corn cobs held by the farmer.
      */
     private int cornCobs=0;
+    /**
+     * Thread running the farmer's life-cycle.
+     */
+    private Thread thread;
 
     /**
      * Class constructor to define the farmer identifier and the farm areas where he will work.
@@ -61,7 +80,23 @@ public class Farmer extends Thread {
     }
     
     /**
-     * Method containing the life-cycle of the Farmer thread.
+     * Starts the farmer's life-cycle in a new thread.
+     */
+    public void start() {
+        this.thread = THREADS.newThread(this);
+        this.thread.start();
+    }
+    
+    /**
+     * Waits for the farmer's life-cycle to end.
+     * @throws InterruptedException if the waiting thread is interrupted.
+     */
+    public void join() throws InterruptedException {
+        this.thread.join();
+    }
+    
+    /**
+     * Method containing the life-cycle of the Farmer.
      */
     @Override
     public void run() {
@@ -80,16 +115,17 @@ public class Farmer extends Thread {
                 this.state=FarmerState.WAITTOCOLLECT;
                 this.granary.farmerWaitCollectOrder(id);
                 this.state=FarmerState.COLLECT;
-                this.granary.farmerCollect(id);
+                this.cornCobs=this.granary.farmerCollect(id);
                 this.state=FarmerState.WAITTORETURN;
-                this.granary.farmerWaitReturnOrder(id);
+                this.granary.farmerWaitReturnOrder(id, this.cornCobs);
                 this.state=FarmerState.RETURN;
                 this.path.farmerReturn(id);
                 this.path.farmerGoToStorehouse(id);
                 this.state=FarmerState.STORE;
-                this.storeHouse.farmerStore(id);
+                this.storeHouse.farmerStore(id, this.cornCobs);
+                this.cornCobs=0;
             } catch (StopHarvestException ex) {
-                
+                this.cornCobs=0;
             } catch (EndSimulationException ex) {
                 System.out.println("Farmer "+this.id+" exited with success!");
                 return;
@@ -121,5 +157,33 @@ public class Farmer extends Thread {
         this.cornCobs = cornCobs;
     }
     
+    /**
+     * Auxiliary method to retrieve the mode of the farmers' threads.
+     * @return "virtual" if the farmers run in virtual threads, "platform" otherwise.
+     */
+    public static String getThreadMode() {
+        return threadMode;
+    }
     
+    /**
+     * Creates the factory of the farmers' threads.
+     * Reflection is used to create virtual threads (Thread.ofVirtual()), so that the project still compiles for older Java versions.
+     * @param virtualThreads true to run each farmer in a virtual thread (if supported by the JVM).
+     * @return the thread factory.
+     */
+    private static ThreadFactory threadFactory(boolean virtualThreads) {
+        if (virtualThreads) {
+            try {
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                builder = Class.forName("java.lang.Thread$Builder").getMethod("name", String.class, long.class).invoke(builder, "Farmer-", 1L);
+                ThreadFactory factory = (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+                threadMode = "virtual";
+                return factory;
+            } catch (ReflectiveOperationException ex) {
+                System.out.println("[Farmer] Virtual threads not supported, using platform threads.");
+            }
+        }
+        threadMode = "platform";
+        return runnable -> new Thread(runnable, "Farmer-" + ((Farmer) runnable).getID());
+    }
 }
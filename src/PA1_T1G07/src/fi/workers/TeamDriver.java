@@ -0,0 +1,186 @@
+package fi.workers;
+
+import fi.ccInterfaces.GranaryCCInt;
+import fi.ccInterfaces.StandingCCInt;
+import fi.ccInterfaces.StorehouseCCInt;
+import fi.utils.EndSimulationException;
+import fi.utils.StopHarvestException;
+
+/**
+ * Driver running the harvest of a team of farmers inside the Farm Infrastructure, without the Control Center's orders.
+ * It gives the team the same sequence of orders the Control Center Proxy gives on behalf of the Control Center (prepare,
+ * start, collect and return), one harvest run after the other, until the granary is empty, the storehouse holds the
+ * target number of corn cobs or a harvest run stores no corn cobs at all (so the goal could never be reached).
+ * A stopped harvest run is simply started over, unless the driver was halted. Whether the driver was halted is checked
+ * again when the harvest run is prepared, under the storehouse's lock, so a halted driver never prepares a run that the
+ * stop order halting it would miss.
+ * It drives the teams not driven by the Control Center and, in the autonomous harvest mode, the Control Center's team.
+ * @author Filipe Pires (85122) and João Alegria (85048)
+ */
+public class TeamDriver implements Runnable {
+
+    /**
+     * Team identifier.
+     */
+    private final int team;
+    /**
+     * Instance of the storehouse area.
+     */
+    private final StorehouseCCInt storeHouse;
+    /**
+     * Instance of the standing area.
+     */
+    private final StandingCCInt standing;
+    /**
+     * Instance of the granary area.
+     */
+    private final GranaryCCInt granary;
+    /**
+     * Number of farmers selected for each harvest run.
+     */
+    private final int farmers;
+    /**
+     * Number of corn cobs each farmer must collect.
+     */
+    private final int cornCobs;
+    /**
+     * Maximum number of steps each farmer may take in the path area.
+     */
+    private final int steps;
+    /**
+     * Timeout (in ms) of each farmer movement.
+     */
+    private final int timeout;
+    /**
+     * Number of corn cobs in the storehouse at which the harvest ends (0 to harvest until the granary is empty).
+     */
+    private final long target;
+    /**
+     * Number of corn cobs stored by the team when its last harvest run started (-1 before the first one).
+     * The team's own count is used since the other teams store in the same storehouse.
+     */
+    private long stored = -1;
+    /**
+     * Whether the driver was halted before reaching its goal.
+     */
+    private volatile boolean halted = false;
+    /**
+     * Number of harvest runs completed by the team.
+     */
+    private volatile long harvests = 0;
+
+    /**
+     * Class constructor where the team, the farm areas it works on and the parameters of its harvest runs are defined.
+     * @param team Team identifier.
+     * @param storeHouse Instance of the storehouse area.
+     * @param standing Instance of the standing area.
+     * @param granary Instance of the granary area.
+     * @param farmers Number of farmers selected for each harvest run.
+     * @param cornCobs Number of corn cobs each farmer must collect.
+     * @param steps Maximum number of steps each farmer may take in the path area.
+     * @param timeout Timeout (in ms) of each farmer movement.
+     * @param target Number of corn cobs in the storehouse at which the harvest ends (0 to harvest until the granary is empty).
+     */
+    public TeamDriver(int team, StorehouseCCInt storeHouse, StandingCCInt standing, GranaryCCInt granary, int farmers,
+            int cornCobs, int steps, int timeout, long target) {
+        this.team = team;
+        this.storeHouse = storeHouse;
+        this.standing = standing;
+        this.granary = granary;
+        this.farmers = farmers;
+        this.cornCobs = cornCobs;
+        this.steps = steps;
+        this.timeout = timeout;
+        this.target = target;
+    }
+
+    /**
+     * Starts driving the team in a new thread.
+     */
+    public void start() {
+        Thread thread = new Thread(this, "TeamDriver-" + this.team);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Method containing the life-cycle of the driver thread.
+     */
+    @Override
+    public void run() {
+        this.drive();
+    }
+
+    /**
+     * Runs harvest runs back-to-back until the goal is reached, the driver is halted or the simulation ends.
+     * Each harvest run starts once all the farmers of the team are waiting in the storehouse.
+     * @return true if the goal was reached (with all the farmers of the team waiting in the storehouse), false otherwise.
+     */
+    public boolean drive() {
+        while (!this.halted) {
+            try {
+                this.storeHouse.waitAllFarmersReady(this.team);
+                if (this.goalReached()) {
+                    System.out.println("[TeamDriver] Team " + this.team + " finished after " + this.harvests + " harvest runs.");
+                    return true;
+                }
+                this.stored = this.storeHouse.getCornCobs(this.team);
+                if (!this.storeHouse.sendSelectionAndPrepareOrder(this.team, this.farmers, this.cornCobs, this.steps,
+                        this.timeout, () -> this.halted)) {
+                    continue;
+                }
+                this.standing.waitForAllFarmers(this.team);
+                this.checkHalted();
+                this.standing.sendStartOrder(this.team);
+                this.granary.waitAllFarmersReadyToCollect(this.team);
+                this.checkHalted();
+                this.granary.sendCollectOrder(this.team);
+                this.granary.waitAllFarmersCollect(this.team);
+                this.checkHalted();
+                this.granary.sendReturnOrder(this.team);
+                this.harvests++;
+            } catch (StopHarvestException ex) {
+            } catch (EndSimulationException ex) {
+                System.out.println("[TeamDriver] Team " + this.team + " exited after " + this.harvests + " harvest runs.");
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Halts the driver, so that it gives no further orders to the team.
+     * The harvest run in progress must be stopped through the farm areas.
+     */
+    public void halt() {
+        this.halted = true;
+    }
+
+    /**
+     * Auxiliary method to retrieve the number of harvest runs completed by the team.
+     * @return Number of harvest runs completed.
+     */
+    public long getHarvests() {
+        return this.harvests;
+    }
+
+    /**
+     * Checks if the harvest is over: the granary is empty, the storehouse holds the target number of corn cobs or the last
+     * harvest run of the team stored no corn cobs.
+     * @return true if the harvest is over.
+     */
+    private boolean goalReached() {
+        return this.granary.getCornCobs() <= 0 || this.storeHouse.getCornCobs(this.team) == this.stored
+                || (this.target > 0 && this.storeHouse.getCornCobs() >= this.target);
+    }
+
+    /**
+     * Stops giving orders between two steps of a harvest run if the driver was halted.
+     * @throws StopHarvestException if the driver was halted.
+     */
+    private void checkHalted() throws StopHarvestException {
+        if (this.halted) {
+            throw new StopHarvestException();
+        }
+    }
+}